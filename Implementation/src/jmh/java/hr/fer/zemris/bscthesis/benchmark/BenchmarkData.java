@@ -0,0 +1,88 @@
+package hr.fer.zemris.bscthesis.benchmark;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.Cartesian2DDataset;
+import hr.fer.zemris.bscthesis.dataset.Dataset;
+import hr.fer.zemris.bscthesis.dataset.Sample;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared data for benchmarks.
+ *
+ * @author dbrcina
+ */
+final class BenchmarkData {
+
+    private static boolean initialized;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Loads class types and activation functions once per JVM.
+     */
+    static synchronized void init() {
+        if (!initialized) {
+            initialized = true;
+            ClassType.init();
+            ActivationFunction.loadAFunctions();
+        }
+    }
+
+    /**
+     * Parses topology in format <code>2-32-32-3</code>.
+     *
+     * @param topology input + hidden + output layers separated with '-'.
+     * @return layers.
+     */
+    static int[] layers(String topology) {
+        String[] parts = topology.split("-");
+        int[] layers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            layers[i] = Integer.parseInt(parts[i]);
+        }
+        return layers;
+    }
+
+    /**
+     * Generates samples with inputs in <code>[0, 1]</code>, as on the canvas, where each class takes a vertical
+     * stripe of the plane.
+     *
+     * @param numberOfSamples number of samples.
+     * @param seed            seed.
+     * @return new dataset.
+     */
+    static Dataset dataset(int numberOfSamples, long seed) {
+        init();
+        Random rand = new Random(seed);
+        int numberOfClasses = ClassType.numberOfClasses();
+        List<Sample> samples = new ArrayList<>(numberOfSamples);
+        for (int i = 0; i < numberOfSamples; i++) {
+            double[] inputs = {rand.nextDouble(), rand.nextDouble()};
+            int index = Math.min((int) (inputs[0] * numberOfClasses), numberOfClasses - 1);
+            ClassType classType = ClassType.forIndex(index);
+            samples.add(new Sample(inputs, classType.getDesiredOutputs(), classType));
+        }
+        Dataset dataset = new Cartesian2DDataset();
+        dataset.setSamples(samples);
+        return dataset;
+    }
+
+    /**
+     * Replaces {@link System#out}, so that progress messages don't end up in the results.
+     *
+     * @return previous stream.
+     */
+    static PrintStream silenceOutput() {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return out;
+    }
+
+}
@@ -0,0 +1,66 @@
+package hr.fer.zemris.bscthesis.benchmark;
+
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of network outputs to classes and colors.
+ *
+ * @author dbrcina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassTypeBenchmark {
+
+    private static final int NUMBER_OF_OUTPUTS = 1024;
+
+    private double[][] outputs;
+    private double[] flatOutputs;
+    private int numberOfClasses;
+    private int next;
+
+    @Setup
+    public void setup() {
+        BenchmarkData.init();
+        numberOfClasses = ClassType.numberOfClasses();
+        Random rand = new Random(1);
+        outputs = new double[NUMBER_OF_OUTPUTS][numberOfClasses];
+        flatOutputs = new double[NUMBER_OF_OUTPUTS * numberOfClasses];
+        for (int i = 0; i < NUMBER_OF_OUTPUTS; i++) {
+            for (int j = 0; j < numberOfClasses; j++) {
+                // Mostly confident outputs, as after training.
+                double value = rand.nextDouble() < 0.8 ? rand.nextDouble() * 0.1 : 0.9 + rand.nextDouble() * 0.1;
+                outputs[i][j] = value;
+                flatOutputs[i * numberOfClasses + j] = value;
+            }
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (NUMBER_OF_OUTPUTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public ClassType determineFor() {
+        return ClassType.determineFor(outputs[nextIndex()]);
+    }
+
+    @Benchmark
+    public int indexFor() {
+        return ClassType.indexFor(flatOutputs, nextIndex() * numberOfClasses, numberOfClasses);
+    }
+
+    @Benchmark
+    public int rgbFor() {
+        return ClassType.rgbFor(flatOutputs, nextIndex() * numberOfClasses, numberOfClasses);
+    }
+
+}
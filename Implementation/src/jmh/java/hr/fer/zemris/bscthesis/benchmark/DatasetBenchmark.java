@@ -0,0 +1,38 @@
+package hr.fer.zemris.bscthesis.benchmark;
+
+import hr.fer.zemris.bscthesis.dataset.Dataset;
+import hr.fer.zemris.bscthesis.dataset.Sample;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shuffling of a dataset, which is done for every epoch of <b>ONLINE</b> and <b>MINI-BATCH</b> learning.
+ *
+ * @author dbrcina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DatasetBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int numberOfSamples;
+
+    private Dataset dataset;
+
+    @Setup
+    public void setup() {
+        dataset = BenchmarkData.dataset(numberOfSamples, 1);
+    }
+
+    @Benchmark
+    public List<Sample> shuffleSamples() {
+        return dataset.shuffleSamples();
+    }
+
+}
@@ -0,0 +1,91 @@
+package hr.fer.zemris.bscthesis.benchmark;
+
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.gui.DecisionMapRenderer;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless rendering of a decision map, as the canvas does while training. <code>perPixel</code> is the loop which
+ * evaluates and paints every pixel on its own and <code>progressive</code> renders the same map with
+ * {@link DecisionMapRenderer} until its final frame.
+ *
+ * @author dbrcina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class DecisionMapBenchmark {
+
+    @Param({"128", "512"})
+    public int size;
+
+    @Param({"2-32-32-3"})
+    public String topology;
+
+    private ModelSnapshot snapshot;
+    private BufferedImage image;
+    private Graphics2D g2d;
+    private DecisionMapRenderer renderer;
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        BenchmarkData.init();
+        ActivationFunction f = ActivationFunction.allAFunctions().get("Sigmoid");
+        NeuralNetwork nn = new NeuralNetwork(BenchmarkData.layers(topology), f, BenchmarkData.dataset(100, 1));
+        snapshot = nn.getSnapshot();
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        g2d = image.createGraphics();
+        renderer = new DecisionMapRenderer(Runtime.getRuntime().availableProcessors());
+        // Renderer prints statistics of every map.
+        out = BenchmarkData.silenceOutput();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+        renderer.shutdown();
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage perPixel() {
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                double[] inputs = {1.0 * x / size, 1.0 * y / size};
+                double[] outputs = snapshot.feedForward(inputs);
+                ClassType classType = ClassType.determineFor(outputs);
+                g2d.setColor(classType.getColor());
+                g2d.fillRect(x, y, 2, 2);
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage progressive() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        BufferedImage[] result = new BufferedImage[1];
+        renderer.render(snapshot, size, size, frame -> {
+            if (frame.isComplete()) {
+                result[0] = frame.getImage();
+                done.countDown();
+            }
+        });
+        done.await();
+        return result[0];
+    }
+
+}
@@ -0,0 +1,79 @@
+package hr.fer.zemris.bscthesis.benchmark;
+
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed forward of one sample and of a batch across topologies and activation functions.
+ *
+ * @author dbrcina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeedForwardBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"2-8-3", "2-32-32-3", "2-128-128-3"})
+    public String topology;
+
+    @Param({"Sigmoid", "Tanh", "ReLU"})
+    public String aFunction;
+
+    private NeuralNetwork nn;
+    private ModelSnapshot snapshot;
+    private ModelSnapshot.Workspace workspace;
+    private double[] inputs;
+    private double[] batchInputs;
+
+    @Setup
+    public void setup() {
+        BenchmarkData.init();
+        int[] layers = BenchmarkData.layers(topology);
+        ActivationFunction f = ActivationFunction.allAFunctions().get(aFunction);
+        nn = new NeuralNetwork(layers, f, BenchmarkData.dataset(100, 1));
+        snapshot = nn.getSnapshot();
+        workspace = snapshot.newWorkspace();
+        Random rand = new Random(2);
+        inputs = new double[layers[0]];
+        batchInputs = new double[BATCH_SIZE * layers[0]];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = rand.nextDouble();
+        }
+        for (int i = 0; i < batchInputs.length; i++) {
+            batchInputs[i] = rand.nextDouble();
+        }
+    }
+
+    /**
+     * Through the latest snapshot, result is a new array.
+     */
+    @Benchmark
+    public double[] feedForward() {
+        return nn.feedForward(inputs);
+    }
+
+    /**
+     * Through a workspace, without allocations.
+     */
+    @Benchmark
+    public double[] feedForwardWorkspace() {
+        return snapshot.feedForward(inputs, workspace);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double[] feedForwardBatch() {
+        return snapshot.feedForwardBatch(batchInputs, BATCH_SIZE, workspace);
+    }
+
+}
@@ -0,0 +1,104 @@
+package hr.fer.zemris.bscthesis.benchmark;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One training epoch for every learning type. Each invocation also initializes weights and prepares batches, as
+ * {@link NeuralNetwork#train(int, double, double)} does. Batch size is used only by <b>MINI-BATCH</b>, so it is a
+ * parameter of {@link #miniBatchEpoch(MiniBatch)} only, while {@link #epoch(FullBatch)} covers the other learning
+ * types.
+ *
+ * @author dbrcina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingBenchmark {
+
+    private static final double ETA = 0.01;
+
+    /**
+     * Network and silenced output, shared by states of all learning types.
+     */
+    @State(Scope.Thread)
+    public abstract static class Training {
+
+        @Param({"2-32-32-3"})
+        public String topology;
+
+        @Param({"1000"})
+        public int numberOfSamples;
+
+        NeuralNetwork nn;
+        private PrintStream out;
+
+        @Setup
+        public void setup() {
+            BenchmarkData.init();
+            ActivationFunction f = ActivationFunction.allAFunctions().get("Sigmoid");
+            nn = new NeuralNetwork(BenchmarkData.layers(topology), f, BenchmarkData.dataset(numberOfSamples, 1));
+            configure(nn);
+            // Training prints progress for every call.
+            out = BenchmarkData.silenceOutput();
+        }
+
+        @TearDown
+        public void tearDown() {
+            System.setOut(out);
+        }
+
+        abstract void configure(NeuralNetwork nn);
+
+    }
+
+    /**
+     * Learning types which don't use batch size.
+     */
+    @State(Scope.Thread)
+    public static class FullBatch extends Training {
+
+        @Param({"ONLINE", "BATCH"})
+        public NeuralNetwork.LearningType learningType;
+
+        @Override
+        void configure(NeuralNetwork nn) {
+            nn.setLearningType(learningType);
+        }
+
+    }
+
+    /**
+     * <b>MINI-BATCH</b> learning for every batch size.
+     */
+    @State(Scope.Thread)
+    public static class MiniBatch extends Training {
+
+        @Param({"8", "32", "128"})
+        public int batchSize;
+
+        @Override
+        void configure(NeuralNetwork nn) {
+            nn.setLearningType(NeuralNetwork.LearningType.MINI_BATCH);
+            nn.setBatchSize(batchSize);
+        }
+
+    }
+
+    @Benchmark
+    public void epoch(FullBatch state) {
+        state.nn.train(1, 0.0, ETA);
+    }
+
+    @Benchmark
+    public void miniBatchEpoch(MiniBatch state) {
+        state.nn.train(1, 0.0, ETA);
+    }
+
+}
@@ -0,0 +1,11 @@
+/**
+ * This package provides JMH benchmarks. They are compiled only with the <b>jmh</b> Maven profile and can be run with:
+ * <pre>
+ * mvn -Pjmh package
+ * java -jar target/ann-classification-benchmarks.jar [JMH options]
+ * </pre>
+ * GC profiler is always added, so allocation rate is reported next to throughput.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.benchmark;
\ No newline at end of file
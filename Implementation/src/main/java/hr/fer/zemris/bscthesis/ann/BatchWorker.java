@@ -0,0 +1,178 @@
+package hr.fer.zemris.bscthesis.ann;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.jfr.BackpropagationEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.ForwardPassEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.WeightUpdateEvent;
+import hr.fer.zemris.bscthesis.dataset.ColumnarDataset;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Trains one part of a batch on its own {@link Backend}. Samples are gathered by their indexes into row-major
+ * matrices, which are reused between batches, and then the whole part is calculated with batched backend methods.
+ * <br>
+ * Workers of one batch are trained in parallel through {@link ParallelTask}.
+ *
+ * @author dbrcina
+ */
+class BatchWorker {
+
+    private final Backend backend;
+    // Used only for tagging of events.
+    private final NeuralNetwork.LearningType learningType;
+    private double[] inputs = new double[0];
+    private double[] expectedOutputs = new double[0];
+    private double error;
+
+    /**
+     * Constructor.
+     *
+     * @param backend      backend where updates are accumulated.
+     * @param learningType learning type.
+     */
+    BatchWorker(Backend backend, NeuralNetwork.LearningType learningType) {
+        this.backend = backend;
+        this.learningType = learningType;
+    }
+
+    /**
+     * @return workers backend.
+     */
+    Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * @return error accumulated in the last call of
+     * {@link #train(ColumnarDataset, int[], int, int, int[], ActivationFunction, double)}, together with errors of
+     * merged workers.
+     */
+    double getError() {
+        return error;
+    }
+
+    /**
+     * Resets updates and accumulates updates for samples <code>indexes[from]</code>, ...,
+     * <code>indexes[to - 1]</code>. Updates are not applied.
+     *
+     * @param data      dataset.
+     * @param indexes   sample indexes.
+     * @param from      position of the first index, inclusive.
+     * @param to        position of the last index, exclusive.
+     * @param layers    input + hidden + output layers.
+     * @param aFunction activation function.
+     * @param eta       eta constant.
+     */
+    void train(ColumnarDataset data, int[] indexes, int from, int to,
+               int[] layers, ActivationFunction aFunction, double eta) {
+        backend.resetUpdates();
+        error = 0.0;
+        int batchSize = to - from;
+        if (batchSize == 0) return;
+        int inputSize = layers[0];
+        int outputSize = layers[layers.length - 1];
+        if (inputs.length < batchSize * inputSize) {
+            inputs = new double[batchSize * inputSize];
+        }
+        if (expectedOutputs.length < batchSize * outputSize) {
+            expectedOutputs = new double[batchSize * outputSize];
+        }
+        // Every sample is one row.
+        data.copyInputs(indexes, from, to, inputs);
+        data.copyOutputs(indexes, from, to, expectedOutputs);
+        // feed forward whole batch
+        ForwardPassEvent forwardPass = ForwardPassEvent.start(layers, learningType, batchSize);
+        backend.feedForwardBatch(inputs, batchSize, aFunction);
+        ForwardPassEvent.finish(forwardPass);
+        // accumulate error
+        error += backend.errorBatch(expectedOutputs, batchSize);
+        // Calculate all deltas using Backpropagation algorithm.
+        BackpropagationEvent backpropagation = BackpropagationEvent.start(layers, learningType, batchSize);
+        backend.calculateDeltasBatch(expectedOutputs, batchSize);
+        BackpropagationEvent.finish(backpropagation);
+        // Update weights and biases and save to the memory.
+        WeightUpdateEvent weightUpdate = WeightUpdateEvent.start(layers, learningType, batchSize);
+        backend.updateWeightsBiasesBatch(eta, batchSize);
+        WeightUpdateEvent.finish(weightUpdate);
+    }
+
+    /**
+     * Adds updates and error of <code>other</code> worker to this worker.
+     *
+     * @param other other worker.
+     */
+    void merge(BatchWorker other) {
+        backend.mergeUpdates(other.backend);
+        error += other.error;
+    }
+
+    /**
+     * Splits a batch into equal contiguous parts, one per worker, and trains them in parallel. Updates are then
+     * reduced into the first worker through a binary tree whose shape depends only on the number of workers, so the
+     * result is always the same for a fixed number of workers.
+     */
+    static class ParallelTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BatchWorker[] workers;
+        private final int from;
+        private final int to;
+        private final ColumnarDataset data;
+        private final int[] indexes;
+        private final int batchFrom;
+        private final int batchTo;
+        private final int[] layers;
+        private final ActivationFunction aFunction;
+        private final double eta;
+
+        /**
+         * Constructor.
+         *
+         * @param workers   all workers.
+         * @param from      index of the first worker of this task, inclusive.
+         * @param to        index of the last worker of this task, exclusive.
+         * @param data      dataset.
+         * @param indexes   sample indexes.
+         * @param batchFrom position of the first index of the whole batch, inclusive.
+         * @param batchTo   position of the last index of the whole batch, exclusive.
+         * @param layers    input + hidden + output layers.
+         * @param aFunction activation function.
+         * @param eta       eta constant.
+         */
+        ParallelTask(BatchWorker[] workers, int from, int to, ColumnarDataset data, int[] indexes,
+                     int batchFrom, int batchTo, int[] layers, ActivationFunction aFunction, double eta) {
+            this.workers = workers;
+            this.from = from;
+            this.to = to;
+            this.data = data;
+            this.indexes = indexes;
+            this.batchFrom = batchFrom;
+            this.batchTo = batchTo;
+            this.layers = layers;
+            this.aFunction = aFunction;
+            this.eta = eta;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int size = batchTo - batchFrom;
+                int start = batchFrom + (int) ((long) from * size / workers.length);
+                int end = batchFrom + (int) ((long) to * size / workers.length);
+                workers[from].train(data, indexes, start, end, layers, aFunction, eta);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new ParallelTask(workers, from, middle, data, indexes, batchFrom, batchTo, layers, aFunction, eta),
+                    new ParallelTask(workers, middle, to, data, indexes, batchFrom, batchTo, layers, aFunction, eta)
+            );
+            workers[from].merge(workers[middle]);
+        }
+
+    }
+
+}
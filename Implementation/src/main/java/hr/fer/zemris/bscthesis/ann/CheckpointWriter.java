@@ -0,0 +1,197 @@
+package hr.fer.zemris.bscthesis.ann;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link ModelCheckpoint}s on a background thread, so training doesn't wait for the disk. Checkpoints are
+ * immutable, so the training thread only hands them over through {@link #submit(ModelCheckpoint)}, which never blocks.
+ * If the writer is still busy, a newer checkpoint replaces the one which is waiting.
+ * <br>
+ * Each checkpoint is written into a temporary file, which is flushed to the disk and then atomically renamed to
+ * <code>checkpoint-EPOCH.ckpt</code>, so a file with that name is always complete. Afterwards, only the
+ * <code>retention</code> most recently written checkpoints of the directory are kept.
+ *
+ * @author dbrcina
+ */
+public class CheckpointWriter implements AutoCloseable {
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".ckpt";
+
+    private final Path directory;
+    private final int retention;
+    private final BlockingQueue<ModelCheckpoint> pending = new ArrayBlockingQueue<>(1);
+    // Closing marker, it is never written.
+    private final ModelCheckpoint end = new ModelCheckpoint(null, -1, null, null, 0);
+    private final Thread writer;
+    private volatile int written;
+    private volatile int skipped;
+
+    /**
+     * Constructor. Creates provided <code>directory</code> if it doesn't exist and starts the writer thread.
+     *
+     * @param directory directory of checkpoints.
+     * @param retention number of newest checkpoints which are kept.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if <code>retention</code> is not positive.
+     * @throws IOException              if the directory could not be created.
+     */
+    public CheckpointWriter(Path directory, int retention) throws IOException {
+        this.directory = Objects.requireNonNull(directory,
+                "CheckpointWriter::CheckpointWriter(Path, int) null values are not permitted!");
+        if (retention <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "CheckpointWriter::CheckpointWriter(Path, int) invalid retention %d!", retention));
+        }
+        this.retention = retention;
+        Files.createDirectories(directory);
+        writer = new Thread(this::write, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Hands provided <code>checkpoint</code> over to the writer thread without waiting. If another checkpoint is still
+     * waiting to be written, it is skipped.
+     *
+     * @param checkpoint checkpoint.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void submit(ModelCheckpoint checkpoint) {
+        Objects.requireNonNull(checkpoint,
+                "CheckpointWriter::submit(ModelCheckpoint) null values are not permitted!");
+        while (!pending.offer(checkpoint)) {
+            if (pending.poll() != null) {
+                skipped++;
+            }
+        }
+    }
+
+    /**
+     * @return number of written checkpoints.
+     */
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * @return number of checkpoints replaced by newer ones before they were written.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Writes the waiting checkpoint, if any, and stops the writer thread. If the writer thread has died, the waiting
+     * checkpoint is dropped.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                // Writer can die before it takes the waiting checkpoint, so it is never waited for without a limit.
+                if (pending.offer(end, 10, TimeUnit.MILLISECONDS)) {
+                    writer.join();
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        pending.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        while (true) {
+            ModelCheckpoint checkpoint;
+            try {
+                checkpoint = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (checkpoint == end) return;
+            long start = System.nanoTime();
+            try {
+                Path file = writeAtomically(checkpoint);
+                rotate(file);
+                written++;
+                System.out.println(String.format("Wrote %s in %.1f ms.",
+                        file.getFileName(), (System.nanoTime() - start) / 1e6));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Checkpoint of epoch " + checkpoint.getEpochs() + " could not be written: "
+                        + e);
+            }
+        }
+    }
+
+    private Path writeAtomically(ModelCheckpoint checkpoint) throws IOException {
+        Path file = directory.resolve(String.format("%s%09d%s", PREFIX, checkpoint.getEpochs(), SUFFIX));
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        ByteBuffer buffer = checkpoint.encode();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    private void rotate(Path written) throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                checkpoints.add(file);
+            }
+        }
+        if (checkpoints.size() <= retention) return;
+        // Directory can hold checkpoints of earlier trainings with more epochs, so the oldest files are deleted.
+        // Modification times can be coarse, so files of the same time are ordered by epochs.
+        Map<Path, FileTime> modified = new HashMap<>();
+        for (Path file : checkpoints) {
+            modified.put(file, Files.getLastModifiedTime(file));
+        }
+        checkpoints.sort(Comparator.comparing((Path file) -> modified.get(file))
+                .thenComparingLong(CheckpointWriter::epochOf));
+        // Just written checkpoint is always kept.
+        checkpoints.remove(written);
+        for (int i = 0; i < checkpoints.size() - (retention - 1); i++) {
+            Files.deleteIfExists(checkpoints.get(i));
+        }
+    }
+
+    private static long epochOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+}
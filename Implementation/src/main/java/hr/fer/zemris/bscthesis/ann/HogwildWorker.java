@@ -0,0 +1,104 @@
+package hr.fer.zemris.bscthesis.ann;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.jfr.BackpropagationEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.ForwardPassEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.WeightUpdateEvent;
+import hr.fer.zemris.bscthesis.dataset.BatchSampler;
+import hr.fer.zemris.bscthesis.dataset.ColumnarDataset;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Worker used for asynchronous <b>ONLINE</b> learning <i>(Hogwild)</i>. All workers share weights and biases through
+ * their backends and take batches one by one from a shared cursor. Each worker applies its updates right after each
+ * sample without any locking, so updates of different workers can overwrite each other. Since most of the updates
+ * don't overlap, this works well in practice, but the results are not reproducible.
+ *
+ * @author dbrcina
+ */
+class HogwildWorker implements Callable<Double> {
+
+    private static final NeuralNetwork.LearningType LEARNING_TYPE = NeuralNetwork.LearningType.ONLINE;
+
+    private final Backend backend;
+    private final int[] layers;
+    private final AtomicInteger cursor;
+    private final ActivationFunction aFunction;
+    private final double eta;
+    private final BooleanSupplier stopped;
+    private final double[] inputs;
+    private final double[] expectedOutputs;
+    private ColumnarDataset data;
+    private BatchSampler sampler;
+
+    /**
+     * Constructor.
+     *
+     * @param backend   workers backend, which shares weights with other workers.
+     * @param layers    input + hidden + output layers.
+     * @param cursor    index of the next batch, shared between workers.
+     * @param aFunction activation function.
+     * @param eta       eta constant.
+     * @param stopped   tells whether training is stopped.
+     */
+    HogwildWorker(Backend backend, int[] layers, AtomicInteger cursor,
+                  ActivationFunction aFunction, double eta, BooleanSupplier stopped) {
+        this.backend = backend;
+        this.layers = layers;
+        this.cursor = cursor;
+        this.aFunction = aFunction;
+        this.eta = eta;
+        this.stopped = stopped;
+        inputs = new double[layers[0]];
+        expectedOutputs = new double[layers[layers.length - 1]];
+    }
+
+    /**
+     * Sets samples which are trained by following calls.
+     *
+     * @param data    dataset.
+     * @param sampler shuffled batches of samples.
+     */
+    void setSamples(ColumnarDataset data, BatchSampler sampler) {
+        this.data = data;
+        this.sampler = sampler;
+    }
+
+    /**
+     * Trains batches until the shared cursor reaches the end of the sampler.
+     *
+     * @return error accumulated by this worker.
+     */
+    @Override
+    public Double call() {
+        double error = 0.0;
+        int[] indexes = sampler.indexes();
+        int numberOfBatches = sampler.numberOfBatches();
+        int index;
+        while (!stopped.getAsBoolean() && (index = cursor.getAndIncrement()) < numberOfBatches) {
+            for (int s = sampler.batchFrom(index), to = sampler.batchTo(index); s < to; s++) {
+                backend.resetUpdates();
+                data.copyInputs(indexes, s, s + 1, inputs);
+                data.copyOutputs(indexes, s, s + 1, expectedOutputs);
+                ForwardPassEvent forwardPass = ForwardPassEvent.start(layers, LEARNING_TYPE, 1);
+                backend.feedForward(inputs, aFunction);
+                ForwardPassEvent.finish(forwardPass);
+                error += backend.error(expectedOutputs);
+                BackpropagationEvent backpropagation = BackpropagationEvent.start(layers, LEARNING_TYPE, 1);
+                backend.calculateDeltas(expectedOutputs);
+                BackpropagationEvent.finish(backpropagation);
+                WeightUpdateEvent weightUpdate = WeightUpdateEvent.start(layers, LEARNING_TYPE, 1);
+                backend.updateWeightsBiases(eta);
+                WeightUpdateEvent.finish(weightUpdate);
+                // Shared weights are updated without locking.
+                backend.applyUpdates();
+            }
+        }
+        return error;
+    }
+
+}
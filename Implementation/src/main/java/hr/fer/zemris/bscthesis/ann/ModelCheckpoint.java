@@ -0,0 +1,273 @@
+package hr.fer.zemris.bscthesis.ann;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.backend.ArrayBackend;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Saved state of a {@link NeuralNetwork}: weights and biases as a {@link ModelSnapshot}, together with the number of
+ * trained epochs, loss, learning type and batch size, so the training can be resumed. Checkpoints are created through
+ * {@link NeuralNetwork#checkpoint()} and restored through {@link NeuralNetwork#restore(ModelCheckpoint)}.
+ * <br>
+ * Binary format is little-endian:
+ * <ul>
+ *     <li>magic <code>ANNM</code> and version (int),</li>
+ *     <li>CRC32 checksum of everything after it (int),</li>
+ *     <li>number of trained epochs, batch size and number of layers (int) and layers (int each),</li>
+ *     <li>activation function id, loss and learning type names, each as length (int) and UTF-8 bytes,</li>
+ *     <li>padding to a multiple of 8 bytes,</li>
+ *     <li>for each layer, row-major weights followed by biases (double each).</li>
+ * </ul>
+ * Files are read by {@link #load(Path)} through a memory mapping, so the checksum and the weights are read directly
+ * from the page cache, which is shared between all processes which load the same file, without copying the file to
+ * the heap. Only the weights are then copied into the backend of the snapshot.
+ *
+ * @author dbrcina
+ */
+public final class ModelCheckpoint {
+
+    private static final int MAGIC = 'A' | 'N' << 8 | 'N' << 16 | 'M' << 24;
+    private static final int VERSION = 1;
+    // Magic, version and checksum.
+    private static final int CHECKSUM_END = 12;
+
+    private final ModelSnapshot snapshot;
+    private final int epochs;
+    private final Loss loss;
+    private final NeuralNetwork.LearningType learningType;
+    private final int batchSize;
+
+    /**
+     * Constructor.
+     *
+     * @param snapshot     weights and biases.
+     * @param epochs       number of trained epochs.
+     * @param loss         loss.
+     * @param learningType learning type.
+     * @param batchSize    batch size.
+     */
+    ModelCheckpoint(ModelSnapshot snapshot, int epochs, Loss loss, NeuralNetwork.LearningType learningType,
+                    int batchSize) {
+        this.snapshot = snapshot;
+        this.epochs = epochs;
+        this.loss = loss;
+        this.learningType = learningType;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return weights and biases, which can be used for inference.
+     */
+    public ModelSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return number of trained epochs.
+     */
+    public int getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * @return loss.
+     */
+    public Loss getLoss() {
+        return loss;
+    }
+
+    /**
+     * @return learning type.
+     */
+    public NeuralNetwork.LearningType getLearningType() {
+        return learningType;
+    }
+
+    /**
+     * @return batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Writes this checkpoint into provided <code>file</code>. Existing file is overwritten.
+     *
+     * @param file output file.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     * @throws IOException          if the file could not be written.
+     */
+    public void write(Path file) throws IOException {
+        Objects.requireNonNull(file, "ModelCheckpoint::write(Path) null values are not permitted!");
+        ByteBuffer buffer = encode();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Encodes this checkpoint into a new buffer.
+     *
+     * @return buffer with the whole file, ready to be written.
+     */
+    ByteBuffer encode() {
+        int[] layers = snapshot.getLayers();
+        byte[] aFunctionId = snapshot.getAFunction().getId().getBytes(StandardCharsets.UTF_8);
+        byte[] lossName = loss.name().getBytes(StandardCharsets.UTF_8);
+        byte[] learningTypeName = learningType.name().getBytes(StandardCharsets.UTF_8);
+        int metadataSize = CHECKSUM_END + 3 * Integer.BYTES + layers.length * Integer.BYTES
+                + 3 * Integer.BYTES + aFunctionId.length + lossName.length + learningTypeName.length;
+        int parametersOffset = (metadataSize + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        double[][] weightsPerLayer = new double[layers.length - 1][];
+        double[][] biasesPerLayer = new double[layers.length - 1][];
+        long numberOfParameters = 0;
+        for (int k = 0; k < layers.length - 1; k++) {
+            weightsPerLayer[k] = new double[layers[k + 1] * layers[k]];
+            biasesPerLayer[k] = new double[layers[k + 1]];
+            numberOfParameters += weightsPerLayer[k].length + biasesPerLayer[k].length;
+        }
+        snapshot.getParameters(weightsPerLayer, biasesPerLayer);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(parametersOffset + numberOfParameters * Double.BYTES))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(0);
+        buffer.putInt(epochs).putInt(batchSize).putInt(layers.length);
+        for (int layer : layers) {
+            buffer.putInt(layer);
+        }
+        for (byte[] bytes : new byte[][]{aFunctionId, lossName, learningTypeName}) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.position(parametersOffset);
+        DoubleBuffer parameters = buffer.asDoubleBuffer();
+        for (int k = 0; k < layers.length - 1; k++) {
+            parameters.put(weightsPerLayer[k]).put(biasesPerLayer[k]);
+        }
+        buffer.putInt(CHECKSUM_END - Integer.BYTES, checksum(buffer.position(CHECKSUM_END)));
+        return buffer.position(0);
+    }
+
+    /**
+     * Loads a checkpoint from provided <code>file</code> through a memory mapping. Weights are evaluated in double
+     * precision.
+     *
+     * @param file checkpoint file.
+     * @return loaded checkpoint.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if the file is not a valid checkpoint, its checksum doesn't match or its
+     *                                  activation function is unknown.
+     * @throws IOException              if the file could not be read.
+     */
+    public static ModelCheckpoint load(Path file) throws IOException {
+        Objects.requireNonNull(file, "ModelCheckpoint::load(Path) null values are not permitted!");
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Mapping stays valid after the channel is closed.
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < CHECKSUM_END || buffer.getInt(0) != MAGIC) {
+            throw invalid(file, "is not a checkpoint");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw invalid(file, "has unsupported version " + buffer.getInt(4));
+        }
+        if (buffer.getInt(8) != checksum(buffer.duplicate().position(CHECKSUM_END))) {
+            throw invalid(file, "has invalid checksum");
+        }
+        try {
+            return decode(buffer.position(CHECKSUM_END), file);
+        } catch (BufferUnderflowException e) {
+            throw invalid(file, "is truncated");
+        }
+    }
+
+    private static ModelCheckpoint decode(ByteBuffer buffer, Path file) {
+        int epochs = buffer.getInt();
+        int batchSize = buffer.getInt();
+        int numberOfLayers = buffer.getInt();
+        if (numberOfLayers < 2) {
+            throw invalid(file, "has less than 2 layers");
+        }
+        int[] layers = new int[numberOfLayers];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = buffer.getInt();
+            if (layers[i] < 1) {
+                throw invalid(file, "has an empty layer");
+            }
+        }
+        String aFunctionId = readString(buffer);
+        String lossName = readString(buffer);
+        String learningTypeName = readString(buffer);
+        ActivationFunction.loadAFunctions();
+        ActivationFunction aFunction = ActivationFunction.allAFunctions().get(aFunctionId);
+        if (aFunction == null) {
+            throw invalid(file, "has unknown activation function " + aFunctionId);
+        }
+        Loss loss;
+        NeuralNetwork.LearningType learningType;
+        try {
+            loss = Loss.valueOf(lossName);
+            learningType = NeuralNetwork.LearningType.valueOf(learningTypeName);
+        } catch (IllegalArgumentException e) {
+            throw invalid(file, "has unknown loss " + lossName + " or learning type " + learningTypeName);
+        }
+
+        buffer.position((buffer.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES);
+        DoubleBuffer parameters = buffer.asDoubleBuffer();
+        double[][] weightsPerLayer = new double[layers.length - 1][];
+        double[][] biasesPerLayer = new double[layers.length - 1][];
+        for (int k = 0; k < layers.length - 1; k++) {
+            weightsPerLayer[k] = new double[layers[k + 1] * layers[k]];
+            biasesPerLayer[k] = new double[layers[k + 1]];
+            parameters.get(weightsPerLayer[k]).get(biasesPerLayer[k]);
+        }
+        if (parameters.hasRemaining()) {
+            throw invalid(file, "has unexpected data after weights");
+        }
+        Backend backend = new ArrayBackend();
+        backend.setup(layers);
+        backend.setParameters(weightsPerLayer, biasesPerLayer);
+        ModelSnapshot snapshot = new ModelSnapshot(0, layers, aFunction, backend);
+        return new ModelCheckpoint(snapshot, epochs, loss, learningType, batchSize);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+
+    private static IllegalArgumentException invalid(Path file, String reason) {
+        return new IllegalArgumentException(String.format(
+                "ModelCheckpoint::load(Path) %s %s!", file.getFileName(), reason));
+    }
+
+}
@@ -0,0 +1,212 @@
+package hr.fer.zemris.bscthesis.ann;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.backend.ArrayBackend;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.backend.FloatArrayBackend;
+import hr.fer.zemris.bscthesis.ann.jfr.ForwardPassEvent;
+
+import java.util.Objects;
+
+/**
+ * Immutable copy of weights and biases of a {@link NeuralNetwork} at some point of training. Snapshots are published
+ * by the network and can be used for inference from any number of threads while training continues, since the
+ * training never modifies a published snapshot.
+ * <br>
+ * Each thread needs its own {@link Workspace} for intermediate results. It can be created through
+ * {@link #newWorkspace()} or a thread local one, which holds only the last used snapshot, is used through
+ * {@link #feedForward(double[])}.
+ *
+ * @author dbrcina
+ */
+public final class ModelSnapshot {
+
+    // Workspace of the last snapshot which each thread used through feedForward(double[]). A thread local per snapshot
+    // would never be cleared, since its workspace references the snapshot and with it the thread local itself.
+    private static final ThreadLocal<Workspace> WORKSPACES = new ThreadLocal<>();
+
+    private final long version;
+    private final int[] layers;
+    private final ActivationFunction aFunction;
+    // Never modified after construction, workers only read it.
+    private final Backend parameters;
+
+    /**
+     * Constructor. Weights and biases are copied from provided <code>backend</code>. Snapshot of a
+     * {@link FloatArrayBackend} is evaluated in single precision as well, every other one in double precision.
+     *
+     * @param version   snapshots version.
+     * @param layers    input + hidden + output layers.
+     * @param aFunction activation function.
+     * @param backend   backend whose weights and biases are copied.
+     */
+    ModelSnapshot(long version, int[] layers, ActivationFunction aFunction, Backend backend) {
+        this.version = version;
+        this.layers = layers.clone();
+        this.aFunction = aFunction;
+        double[][] weightsPerLayer = new double[layers.length - 1][];
+        double[][] biasesPerLayer = new double[layers.length - 1][];
+        for (int k = 0; k < layers.length - 1; k++) {
+            weightsPerLayer[k] = new double[layers[k + 1] * layers[k]];
+            biasesPerLayer[k] = new double[layers[k + 1]];
+        }
+        backend.getParameters(weightsPerLayer, biasesPerLayer);
+        // Inference doesn't need a master copy.
+        parameters = backend instanceof FloatArrayBackend ? new FloatArrayBackend() : new ArrayBackend();
+        parameters.setup(layers);
+        parameters.setParameters(weightsPerLayer, biasesPerLayer);
+    }
+
+    /**
+     * @return snapshots version. Snapshots published later by the same network have greater versions.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return input + hidden + output layers.
+     */
+    public int[] getLayers() {
+        return layers.clone();
+    }
+
+    /**
+     * @return activation function used for the hidden layers.
+     */
+    public ActivationFunction getAFunction() {
+        return aFunction;
+    }
+
+    /**
+     * Copies weights and biases of this snapshot into provided arrays.
+     *
+     * @param weightsPerLayer destination for weights.
+     * @param biasesPerLayer  destination for biases.
+     * @see Backend#getParameters(double[][], double[][])
+     */
+    public void getParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        parameters.getParameters(weightsPerLayer, biasesPerLayer);
+    }
+
+    /**
+     * Copies weights and biases of this snapshot into provided <code>backend</code>, which needs to be set up for the
+     * same layers.
+     *
+     * @param backend destination backend.
+     */
+    void copyParameters(Backend backend) {
+        double[][] weightsPerLayer = new double[layers.length - 1][];
+        double[][] biasesPerLayer = new double[layers.length - 1][];
+        for (int k = 0; k < layers.length - 1; k++) {
+            weightsPerLayer[k] = new double[layers[k + 1] * layers[k]];
+            biasesPerLayer[k] = new double[layers[k + 1]];
+        }
+        parameters.getParameters(weightsPerLayer, biasesPerLayer);
+        backend.setParameters(weightsPerLayer, biasesPerLayer);
+    }
+
+    /**
+     * Creates a new workspace for this snapshot. Workspace must not be shared between threads.
+     *
+     * @return new workspace.
+     */
+    public Workspace newWorkspace() {
+        return new Workspace(this, parameters.createWorker());
+    }
+
+    /**
+     * Feed forwards provided <code>inputs</code> using a workspace of the current thread. Each thread keeps the
+     * workspace of only the last snapshot it used this way, so switching between snapshots creates new workspaces.
+     *
+     * @param inputs inputs.
+     * @return new array of results.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if number of input elements doesn't fit.
+     */
+    public double[] feedForward(double[] inputs) {
+        Workspace workspace = WORKSPACES.get();
+        if (workspace == null || workspace.snapshot != this) {
+            workspace = newWorkspace();
+            WORKSPACES.set(workspace);
+        }
+        return feedForward(inputs, workspace).clone();
+    }
+
+    /**
+     * Feed forwards provided <code>inputs</code> using provided <code>workspace</code>. Returned array belongs to the
+     * workspace and it is valid only until the next use of the workspace.
+     *
+     * @param inputs    inputs.
+     * @param workspace workspace of this snapshot.
+     * @return results.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if number of input elements doesn't fit or workspace belongs to some other
+     *                                  snapshot.
+     */
+    public double[] feedForward(double[] inputs, Workspace workspace) {
+        Objects.requireNonNull(inputs, "ModelSnapshot::feedForward(double[]) null values are not permitted!");
+        if (inputs.length != layers[0]) {
+            throw new IllegalArgumentException(String.format(
+                    "ModelSnapshot::feedForward(double[]) expected input of %d elements but received %d!",
+                    layers[0], inputs.length));
+        }
+        Backend backend = checkWorkspace(workspace).backend;
+        ForwardPassEvent event = ForwardPassEvent.start(layers, null, 1);
+        double[] outputs = backend.feedForward(inputs, aFunction);
+        ForwardPassEvent.finish(event);
+        return outputs;
+    }
+
+    /**
+     * Feed forwards a batch of inputs using provided <code>workspace</code>. <code>inputs</code> is a row-major
+     * matrix with one sample per row. Returned array belongs to the workspace and it holds row-major matrix of
+     * results at its beginning.
+     *
+     * @param inputs    row-major matrix of inputs.
+     * @param batchSize number of samples.
+     * @param workspace workspace of this snapshot.
+     * @return row-major matrix of results.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if number of input elements doesn't fit or workspace belongs to some other
+     *                                  snapshot.
+     * @see Backend#feedForwardBatch(double[], int, ActivationFunction)
+     */
+    public double[] feedForwardBatch(double[] inputs, int batchSize, Workspace workspace) {
+        Objects.requireNonNull(inputs, "ModelSnapshot::feedForwardBatch(double[], int) null values are not permitted!");
+        if (inputs.length < batchSize * layers[0]) {
+            throw new IllegalArgumentException(String.format(
+                    "ModelSnapshot::feedForwardBatch(double[], int) expected at least %d elements but received %d!",
+                    batchSize * layers[0], inputs.length));
+        }
+        Backend backend = checkWorkspace(workspace).backend;
+        ForwardPassEvent event = ForwardPassEvent.start(layers, null, batchSize);
+        double[] outputs = backend.feedForwardBatch(inputs, batchSize, aFunction);
+        ForwardPassEvent.finish(event);
+        return outputs;
+    }
+
+    private Workspace checkWorkspace(Workspace workspace) {
+        Objects.requireNonNull(workspace, "ModelSnapshot::feedForward null workspace is not permitted!");
+        if (workspace.snapshot != this) {
+            throw new IllegalArgumentException("ModelSnapshot::feedForward workspace belongs to other snapshot!");
+        }
+        return workspace;
+    }
+
+    /**
+     * Memory for intermediate results of one thread. It can be used only with the snapshot which created it.
+     */
+    public static final class Workspace {
+
+        private final ModelSnapshot snapshot;
+        private final Backend backend;
+
+        private Workspace(ModelSnapshot snapshot, Backend backend) {
+            this.snapshot = snapshot;
+            this.backend = backend;
+        }
+
+    }
+
+}
@@ -1,16 +1,32 @@
 package hr.fer.zemris.bscthesis.ann;
 
 import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
-import hr.fer.zemris.bscthesis.ann.afunction.Softmax;
+import hr.fer.zemris.bscthesis.ann.backend.ArrayBackend;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.backend.FloatArrayBackend;
+import hr.fer.zemris.bscthesis.ann.jfr.BackpropagationEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.BatchEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.EpochEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.ForwardPassEvent;
+import hr.fer.zemris.bscthesis.ann.jfr.WeightUpdateEvent;
+import hr.fer.zemris.bscthesis.ann.listener.TrainingEventDispatcher;
+import hr.fer.zemris.bscthesis.ann.listener.TrainingListener;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+import hr.fer.zemris.bscthesis.dataset.BatchSampler;
+import hr.fer.zemris.bscthesis.dataset.BinaryDatasetFile;
+import hr.fer.zemris.bscthesis.dataset.BinaryDatasetStream;
+import hr.fer.zemris.bscthesis.dataset.ColumnarDataset;
 import hr.fer.zemris.bscthesis.dataset.Dataset;
-import hr.fer.zemris.bscthesis.dataset.Sample;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Feed forward neural network <i>(Multilayer perceptron)</i> that uses <b>Backpropagation algorithm</b> as a
@@ -18,9 +34,45 @@ import java.util.*;
  * <br>
  * Default learning type is <b>ONLINE</b>. If the learning type is set to <b>MINI-BATCH</b>, then
  * <code>batchSize</code> needs to be defined, otherwise default value is set to 5.
+ * <br>
+ * All matrices are stored and updated by a {@link Backend}. Default backend is {@link ArrayBackend}, while
+ * {@link FloatArrayBackend} trains and evaluates in single precision.
+ * <br>
+ * Output layer uses softmax and default loss is {@link Loss#MSE}. With {@link Loss#CROSS_ENTROPY}, softmax and
+ * cross entropy are fused, so output deltas don't need derivatives and multi-class problems usually converge in
+ * fewer epochs.
+ * <br>
+ * Samples are reshuffled before every epoch by a {@link BatchSampler} and batches are gathered by sample indexes from
+ * a {@link ColumnarDataset}, so other datasets are copied into columns once per training. Weights initialization and
+ * shuffling use one random number generator, which can be seeded through {@link #setSeed(long)}. Datasets which
+ * don't fit on the heap can be streamed from the disk through {@link #trainStreaming(Path, int, double, double)}.
+ * <br>
+ * Learning types <b>BATCH</b> and <b>MINI-BATCH</b> can be trained in parallel by defining
+ * <code>parallelism</code>. Each batch is then split into that many parts whose updates are calculated in parallel and
+ * reduced in a fixed order, so the results are reproducible for the same <code>parallelism</code>.
+ * <b>ONLINE</b> learning with <code>parallelism</code> greater than 1 uses asynchronous lock-free updates
+ * <i>(Hogwild)</i>, whose results are not reproducible.
+ * <br>
+ * Weights are periodically published as immutable {@link ModelSnapshot}s during training. Inference
+ * through {@link #feedForward(double[])} uses the latest snapshot, so it can be called from any thread while training
+ * is in progress. Setters and {@link #train(int, double, double)} are not thread-safe.
+ * <br>
+ * Progress of training can be observed through {@link TrainingListener}s. Events are delivered on a separate thread,
+ * so slow listeners don't slow down training.
+ * <br>
+ * Weights and the state needed to resume training can be saved and restored through {@link ModelCheckpoint}s, which
+ * can also be written periodically during training without waiting for the disk, see
+ * {@link #setCheckpointing(Path, int, long, int)}.
+ * <br>
+ * Training and inference emit JDK Flight Recorder events from package {@link hr.fer.zemris.bscthesis.ann.jfr}.
  *
  * @author dbrcina
  * @see LearningType
+ * @see Backend
+ * @see Loss
+ * @see ModelSnapshot
+ * @see TrainingListener
+ * @see ModelCheckpoint
  */
 public class NeuralNetwork {
 
@@ -54,29 +106,47 @@ public class NeuralNetwork {
     private int[] layers;
     // Used only for the hidden layers.
     private ActivationFunction aFunction;
-    // Used only for output layer.
-    private ActivationFunction outputAFunction;
     private Dataset dataset;
     private LearningType learningType = LearningType.ONLINE;
     private int batchSize = 5;
-    /* ---------------------------------------------------- */
-
-    /* ------- ALL MATRICES USED IN TRAINING PROCESS ------ */
-    private RealMatrix[] weightsPerLayer;
-    private RealMatrix[] biasesPerLayer;
-    private RealMatrix[] outputsPerLayer;
-    private RealMatrix[] derivativesPerLayer;
-    private RealMatrix[] deltasPerLayer;
-    // Next two arrays of matrices are needed for updating certain
-    // weights/biases in a memory before the real updates take place.
-    // This is very necessary!!!
-    private RealMatrix[] weightsUpdatesPerLayer;
-    private RealMatrix[] biasesUpdatesPerLayer;
+    private Loss loss = Loss.MSE;
+    private Backend backend = new ArrayBackend();
+    private int parallelism = 1;
+    // Checkpoints are written only if the directory is defined.
+    private Path checkpointDirectory;
+    private int checkpointEveryNEpochs;
+    private long checkpointIntervalNanos;
+    private int checkpointRetention;
     /* ---------------------------------------------------- */
 
     /* ----------------- HELPER VARIABLES ----------------- */
     private final Random rand = new Random();
     private boolean matricesRandomized;
+    // Used for learning types BATCH and MINI_BATCH.
+    private BatchWorker[] workers;
+    // Used for learning type ONLINE when parallelism is greater than 1.
+    private List<HogwildWorker> hogwildWorkers;
+    private final AtomicInteger hogwildCursor = new AtomicInteger();
+    private ForkJoinPool pool;
+    // Latest published weights, used for inference.
+    private volatile ModelSnapshot snapshot;
+    private long snapshotVersion;
+    private long snapshotTime;
+    // During training, snapshots are published at most once per 50 ms.
+    private static final long SNAPSHOT_INTERVAL_NANOS = 50_000_000L;
+    private final List<TrainingListener> listeners = new ArrayList<>();
+    // Used for learning type ONLINE with one worker.
+    private double[] sampleInputs;
+    private double[] sampleOutputs;
+    // Index of the next batch and gradient norm of the last batch of the current epoch, unknown for Hogwild.
+    private int batchIndex;
+    private double gradientNorm;
+    // Norms are full passes over all parameters, so batch events refresh them only once per this many batches.
+    private static final int BATCH_NORMS_INTERVAL = 64;
+    private double parametersNorm;
+    // Number of epochs trained so far and whether weights were restored from a checkpoint since the last training.
+    private volatile int completedEpochs;
+    private boolean restored;
     /* ---------------------------------------------------- */
 
     /* ------------------- CONSTRUCTOR -------------------- */
@@ -90,6 +160,9 @@ public class NeuralNetwork {
      * @see #setDataset(Dataset)
      * @see #setLearningType(LearningType)
      * @see #setBatchSize(int)
+     * @see #setLoss(Loss)
+     * @see #setBackend(Backend)
+     * @see #setParallelism(int)
      */
     public NeuralNetwork() {
     }
@@ -143,6 +216,7 @@ public class NeuralNetwork {
     public void setAFunction(ActivationFunction aFunction) {
         this.aFunction = Objects.requireNonNull(aFunction,
                 "NeuralNetwork::setAFunction(ActivationFunction) null values are not permitted!");
+        snapshot = null;
     }
 
     /**
@@ -178,59 +252,245 @@ public class NeuralNetwork {
         if (batchSize <= 0) return;
         this.batchSize = batchSize;
     }
+
+    /**
+     * Setter for loss. Default value is {@link Loss#MSE}.
+     *
+     * @param loss loss.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void setLoss(Loss loss) {
+        this.loss = Objects.requireNonNull(loss,
+                "NeuralNetwork::setLoss(Loss) null values are not permitted!");
+    }
+
+    /**
+     * Setter for backend. Default value is {@link ArrayBackend}. If layers are already defined, memory for the new
+     * backend is allocated and weights need to be randomized again.
+     *
+     * @param backend backend.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void setBackend(Backend backend) {
+        this.backend = Objects.requireNonNull(backend,
+                "NeuralNetwork::setBackend(Backend) null values are not permitted!");
+        if (layers != null) {
+            setupMatrices();
+        }
+    }
+
+    /**
+     * Setter for number of parallel workers. Provided <code>parallelism</code> will be used only if backend supports
+     * workers. For {@link LearningType#BATCH} and {@link LearningType#MINI_BATCH} each batch is split between workers,
+     * while for {@link LearningType#ONLINE} workers train samples asynchronously <i>(Hogwild)</i>. Default value is 1.
+     * If provided <code>parallelism</code> is <= 0, it will be set to default value.
+     *
+     * @param parallelism number of parallel workers.
+     * @see Backend#createWorker()
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) return;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Setter for periodic checkpoints during training. Checkpoints are written into provided <code>directory</code>
+     * by a {@link CheckpointWriter} on a background thread and at the end of training. After an epoch, a checkpoint is
+     * written if the number of trained epochs is a multiple of <code>everyNEpochs</code> or if at least
+     * <code>everyMillis</code> milliseconds passed since the last checkpoint, whichever comes first, so a time limit
+     * doesn't delay checkpoints of epochs. Non-positive <code>everyNEpochs</code> or <code>everyMillis</code> disables
+     * that condition. Only the newest <code>retention</code> checkpoints are kept. By default, checkpoints are not
+     * written.
+     *
+     * @param directory    directory of checkpoints or <code>null</code> to disable checkpoints.
+     * @param everyNEpochs number of epochs between checkpoints.
+     * @param everyMillis  number of milliseconds since the last checkpoint after which the next one is written.
+     * @param retention    number of kept checkpoints.
+     * @throws IllegalArgumentException if <code>retention</code> is not positive.
+     */
+    public void setCheckpointing(Path directory, int everyNEpochs, long everyMillis, int retention) {
+        if (directory != null && retention <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "NeuralNetwork::setCheckpointing(Path, int, long, int) invalid retention %d!", retention));
+        }
+        checkpointDirectory = directory;
+        checkpointEveryNEpochs = everyNEpochs;
+        checkpointIntervalNanos = everyMillis * 1_000_000L;
+        checkpointRetention = retention;
+    }
+
+    /**
+     * Seeds the random number generator used for weights initialization and shuffling of samples, so trainings with
+     * the same seed and the same parameters give the same results, except asynchronous <b>ONLINE</b> learning.
+     *
+     * @param seed seed.
+     */
+    public void setSeed(long seed) {
+        rand.setSeed(seed);
+    }
+
+    /**
+     * Adds a training listener, which receives events of all following trainings.
+     *
+     * @param listener training listener.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void addTrainingListener(TrainingListener listener) {
+        listeners.add(Objects.requireNonNull(listener,
+                "NeuralNetwork::addTrainingListener(TrainingListener) null values are not permitted!"));
+    }
+
+    /**
+     * Removes a training listener.
+     *
+     * @param listener training listener.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void removeTrainingListener(TrainingListener listener) {
+        listeners.remove(Objects.requireNonNull(listener,
+                "NeuralNetwork::removeTrainingListener(TrainingListener) null values are not permitted!"));
+    }
     /* ---------------------------------------------------- */
 
     /* ---------- MEMORY ALLOCATION FOR MATRICES ---------- */
     private void setupMatrices() {
         matricesRandomized = false;
-        weightsPerLayer = new RealMatrix[layers.length - 1];
-        biasesPerLayer = new RealMatrix[layers.length - 1];
-        outputsPerLayer = new RealMatrix[layers.length];
-        derivativesPerLayer = new RealMatrix[layers.length - 1];
-        deltasPerLayer = new RealMatrix[layers.length - 1];
-        weightsUpdatesPerLayer = new RealMatrix[layers.length - 1];
-        biasesUpdatesPerLayer = new RealMatrix[layers.length - 1];
-        for (int k = 0; k < layers.length; k++) {
-            if (k != layers.length - 1) {
-                weightsPerLayer[k] = MatrixUtils.createRealMatrix(layers[k + 1], layers[k]);
-                biasesPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
-                derivativesPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
-                deltasPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
-                weightsUpdatesPerLayer[k] = MatrixUtils.createRealMatrix(layers[k + 1], layers[k]);
-                biasesUpdatesPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
-            }
-            outputsPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k]]);
-        }
+        snapshot = null;
+        backend.setup(layers);
     }
     /* ---------------------------------------------------- */
 
     /* -------------- XAVIER INITIALIZATION --------------- */
-    private void randomizeMatrices() {
+    private synchronized void randomizeMatrices() {
         if (!matricesRandomized) {
             matricesRandomized = true;
         }
-        for (int k = 0; k < weightsPerLayer.length; k++) {
-            RealMatrix weightsLayerK = weightsPerLayer[k];
-            RealMatrix biasesLayerK = biasesPerLayer[k];
-            // Here we take row dimension because weights and biases matrices
-            // have the same row dimension
-            for (int i = 0; i < weightsLayerK.getRowDimension(); i++) {
-                for (int j = 0; j < weightsLayerK.getColumnDimension(); j++) {
-                    double weight = rand.nextGaussian();
-                    weight *= Math.sqrt(2.0 / weightsLayerK.getColumnDimension());
-                    weightsLayerK.setEntry(i, j, weight);
+        backend.randomize(rand);
+        publishSnapshot();
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---------- PUBLISH WEIGHTS FOR INFERENCE ----------- */
+    private synchronized void publishSnapshot() {
+        snapshot = new ModelSnapshot(++snapshotVersion, layers, aFunction, backend);
+        snapshotTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the latest published snapshot of weights and biases. During training, a new snapshot is published after
+     * an epoch if at least 50 ms passed since the last one, before every redraw of the canvas and at the end of
+     * training. If weights are not initialized yet, they are initialized first.
+     *
+     * @return latest snapshot.
+     */
+    public ModelSnapshot getSnapshot() {
+        ModelSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                if (!matricesRandomized) {
+                    randomizeMatrices();
+                } else {
+                    publishSnapshot();
                 }
-                double bias = rand.nextGaussian();
-                bias *= Math.sqrt(2.0 / weightsLayerK.getColumnDimension());
-                // Biases matrices are column matrices, so we use 0 as column index
-                biasesLayerK.setEntry(i, 0, bias);
             }
+            return snapshot;
         }
     }
     /* ---------------------------------------------------- */
 
+    /* ------------- CHECKPOINTS OF TRAINING ------------- */
+
     /**
-     * Feed forwards provided <code>inputs</code> and returns outputs as an array.
+     * Creates a checkpoint of the latest snapshot, together with the number of trained epochs and parameters needed to
+     * resume the training. It can be called from any thread, but during training the snapshot can be slightly older
+     * than the number of epochs.
+     *
+     * @return new checkpoint.
+     * @see #getSnapshot()
+     */
+    public ModelCheckpoint checkpoint() {
+        return new ModelCheckpoint(getSnapshot(), completedEpochs, loss, learningType, batchSize);
+    }
+
+    /**
+     * Restores layers, activation function, weights and biases, loss, learning type and batch size from provided
+     * <code>checkpoint</code>. Next call of {@link #train(int, double, double)} resumes the training with these
+     * weights instead of randomizing them, starting from the epoch after the last trained one. Dataset, backend and
+     * parallelism are not changed.
+     *
+     * @param checkpoint checkpoint.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void restore(ModelCheckpoint checkpoint) {
+        Objects.requireNonNull(checkpoint,
+                "NeuralNetwork::restore(ModelCheckpoint) null values are not permitted!");
+        ModelSnapshot restoredSnapshot = checkpoint.getSnapshot();
+        setLayers(restoredSnapshot.getLayers());
+        setAFunction(restoredSnapshot.getAFunction());
+        setLoss(checkpoint.getLoss());
+        setLearningType(checkpoint.getLearningType());
+        setBatchSize(checkpoint.getBatchSize());
+        restoredSnapshot.copyParameters(backend);
+        matricesRandomized = true;
+        completedEpochs = checkpoint.getEpochs();
+        restored = true;
+        publishSnapshot();
+    }
+
+    /**
+     * Writes a checkpoint of this network into provided <code>file</code>.
+     *
+     * @param file output file.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     * @throws IOException          if the file could not be written.
+     * @see #checkpoint()
+     * @see ModelCheckpoint#write(Path)
+     */
+    public void saveCheckpoint(Path file) throws IOException {
+        checkpoint().write(file);
+    }
+
+    /**
+     * Restores this network from a checkpoint in provided <code>file</code>.
+     *
+     * @param file checkpoint file.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if the file is not a valid checkpoint.
+     * @throws IOException              if the file could not be read.
+     * @see #restore(ModelCheckpoint)
+     * @see ModelCheckpoint#load(Path)
+     */
+    public void loadCheckpoint(Path file) throws IOException {
+        restore(ModelCheckpoint.load(file));
+    }
+
+    private CheckpointWriter openCheckpointWriter() {
+        if (checkpointDirectory == null) return null;
+        try {
+            return new CheckpointWriter(checkpointDirectory, checkpointRetention);
+        } catch (IOException e) {
+            throw new UncheckedIOException("NeuralNetwork::train checkpoint directory could not be created!", e);
+        }
+    }
+
+    // Returns time for which the training thread was stalled.
+    private long submitCheckpoint(CheckpointWriter checkpoints) {
+        long start = System.nanoTime();
+        publishSnapshot();
+        checkpoints.submit(checkpoint());
+        long stall = System.nanoTime() - start;
+        System.out.println(String.format("Checkpoint of epoch %d submitted, training stalled for %.3f ms.",
+                completedEpochs, stall / 1e6));
+        return stall;
+    }
+    /* ---------------------------------------------------- */
+
+    /**
+     * Feed forwards provided <code>inputs</code> through the latest snapshot and returns outputs as an array. It can
+     * be called from any thread.
      *
      * @param inputs inputs.
      * @return results.
@@ -245,32 +505,45 @@ public class NeuralNetwork {
                     "NeuralNetwork::feedForward(double[]) expected input of %d elements but received %d!",
                     layers[0], inputs.length));
         }
-        if (!matricesRandomized) {
-            randomizeMatrices();
-        }
-        // Outputs per layer are in column matrix.
-        outputsPerLayer[0].setColumn(0, inputs);
-        for (int k = 0; k < weightsPerLayer.length; k++) {
-            RealMatrix weightsLayerK = weightsPerLayer[k];
-            RealMatrix biasesLayerK = biasesPerLayer[k];
-            RealMatrix outputsLayerK = outputsPerLayer[k];
-            // Column matrix.
-            RealMatrix outputsLayerK1 = (weightsLayerK.multiply(outputsLayerK)).add(biasesLayerK);
-            double[] weightedSums = outputsLayerK1.getColumn(0);
-            boolean isOutputLayer = k == weightsPerLayer.length - 1;
-            for (int i = 0; i < weightedSums.length; i++) {
-                double weightedSum = weightedSums[i];
-                if (isOutputLayer) {
-                    outputAFunction = new Softmax(weightedSums);
-                }
-                // Differentiate hidden layers from output layer!!!
-                outputsPerLayer[k + 1].setEntry(i, 0, isOutputLayer ?
-                        outputAFunction.value(weightedSum) : aFunction.value(weightedSum));
-                derivativesPerLayer[k].setEntry(i, 0, isOutputLayer ?
-                        outputAFunction.derivativeValue(weightedSum) : aFunction.derivativeValue(weightedSum));
+        return getSnapshot().feedForward(inputs);
+    }
+
+    /**
+     * Feed forwards provided batch of <code>inputs</code>, where each row is one sample, through the latest snapshot
+     * and returns outputs for each sample. The whole batch is calculated with one matrix-matrix product per layer.
+     * It can be called from any thread.
+     *
+     * @param inputs batch of inputs.
+     * @return results, one row per sample.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if number of input elements of some sample doesn't fit.
+     */
+    public double[][] feedForwardBatch(double[][] inputs) {
+        Objects.requireNonNull(
+                inputs, "NeuralNetwork::feedForwardBatch(double[][]) null values are not permitted!");
+        int inputSize = layers[0];
+        double[] flatInputs = new double[inputs.length * inputSize];
+        for (int s = 0; s < inputs.length; s++) {
+            Objects.requireNonNull(
+                    inputs[s], "NeuralNetwork::feedForwardBatch(double[][]) null values are not permitted!");
+            if (inputs[s].length != inputSize) {
+                throw new IllegalArgumentException(String.format(
+                        "NeuralNetwork::feedForwardBatch(double[][]) expected input of %d elements but received %d!",
+                        inputSize, inputs[s].length));
             }
+            System.arraycopy(inputs[s], 0, flatInputs, s * inputSize, inputSize);
         }
-        return outputsPerLayer[outputsPerLayer.length - 1].getColumn(0);
+        int outputSize = layers[layers.length - 1];
+        double[][] results = new double[inputs.length][];
+        if (inputs.length == 0) {
+            return results;
+        }
+        ModelSnapshot current = getSnapshot();
+        double[] flatOutputs = current.feedForwardBatch(flatInputs, inputs.length, current.newWorkspace());
+        for (int s = 0; s < inputs.length; s++) {
+            results[s] = Arrays.copyOfRange(flatOutputs, s * outputSize, (s + 1) * outputSize);
+        }
+        return results;
     }
 
     /**
@@ -279,177 +552,363 @@ public class NeuralNetwork {
      * @param epochs   number of epochs.
      * @param maxError maximum error.
      * @param eta      eta constant.
+     * @throws IllegalArgumentException if samples don't have as many inputs as the input layer has neurons.
      */
     public void train(int epochs, double maxError, double eta) {
-        stop = false;
-        System.out.println("Starting " + learningType + " Backpropagation algorithm.");
+        // Prepare batches based on the learning type, they are reshuffled before every epoch.
+        ColumnarDataset data = ColumnarDataset.of(dataset);
+        int numberOfSamples = data.numberOfSamples();
+        checkInputSize(data.inputSize(), numberOfSamples, "NeuralNetwork::train(int, double, double)");
+        BatchSampler sampler = new BatchSampler(numberOfSamples, samplesPerBatch(numberOfSamples), rand);
+        train(data, sampler, null, numberOfSamples, epochs, maxError, eta);
+    }
 
-        // Randomize weights and biases.
-        randomizeMatrices();
+    /**
+     * Performs artificial neural network training on samples of provided binary dataset <code>file</code>, which are
+     * streamed from the disk instead of being held on the heap, so the dataset can be larger than the memory. Dataset
+     * of this network is not used.
+     * <br>
+     * Samples are read in blocks of about {@link BinaryDatasetStream#DEFAULT_BLOCK_SIZE} samples by a background
+     * thread while previous blocks are trained. Each epoch visits blocks in a random order and shuffles samples within
+     * each block. For {@link LearningType#BATCH}, each block is one batch.
+     *
+     * @param file     binary dataset file.
+     * @param epochs   number of epochs.
+     * @param maxError maximum error.
+     * @param eta      eta constant.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if the file is not a valid dataset file or its samples don't have as many
+     *                                  inputs as the input layer has neurons.
+     * @throws IOException              if the file could not be read.
+     * @see BinaryDatasetFile
+     */
+    public void trainStreaming(Path file, int epochs, double maxError, double eta) throws IOException {
+        Objects.requireNonNull(file, "NeuralNetwork::trainStreaming(Path) null values are not permitted!");
+        int blockSize = BinaryDatasetStream.DEFAULT_BLOCK_SIZE;
+        if (learningType == LearningType.MINI_BATCH) {
+            // Only the last block of an epoch has a smaller batch.
+            blockSize = Math.max(1, blockSize / batchSize) * batchSize;
+        }
+        try (BinaryDatasetStream stream = new BinaryDatasetStream(file, blockSize, samplesPerBatch(blockSize),
+                BinaryDatasetStream.DEFAULT_CAPACITY, new Random(rand.nextLong()))) {
+            checkInputSize(stream.inputSize(), stream.numberOfSamples(), "NeuralNetwork::trainStreaming(Path)");
+            train(null, null, stream, stream.numberOfSamples(), epochs, maxError, eta);
+        }
+    }
 
-        // Prepare batches based on the learning type.
-        Collection<Collection<Sample>> batches = prepareBatches();
-        int numberOfSamples = dataset.numberOfSamples();
+    private void checkInputSize(int inputSize, int numberOfSamples, String method) {
+        if (numberOfSamples > 0 && inputSize != layers[0]) {
+            throw new IllegalArgumentException(String.format(
+                    "%s expected samples of %d inputs but received %d!", method, layers[0], inputSize));
+        }
+    }
 
-        // Start epochs.
-        for (int epoch = 0; epoch < epochs && !stop; epoch++) {
+    // Samples are either in memory, when data and sampler are provided, or streamed.
+    private void train(ColumnarDataset data, BatchSampler sampler, BinaryDatasetStream stream, int numberOfSamples,
+                       int epochs, double maxError, double eta) {
+        stop = false;
+        System.out.println("Starting " + learningType + " Backpropagation algorithm, loss = " + loss + ".");
+
+        // Randomize weights and biases, unless training is resumed from a checkpoint.
+        int firstEpoch = 0;
+        if (restored) {
+            restored = false;
+            firstEpoch = completedEpochs;
+            System.out.println("Resuming from epoch " + firstEpoch + ".");
+        } else {
+            completedEpochs = 0;
+            randomizeMatrices();
+        }
 
-            /* Next part is used for continuous updates on GUI */
-            if (canvas != null) {
-                if ((epoch + 1) % redrawEveryNEpoch == 0) {
-                    SwingUtilities.invokeLater(() -> canvas.repaint());
+        // Prepare workers for batches, they inherit the loss.
+        backend.setLoss(loss);
+        prepareWorkers(eta);
+
+        // Used for throughput report.
+        long trainingTime = 0;
+        long trainedSamples = 0;
+        double lastError = Double.NaN;
+
+        // Events are published only if somebody listens.
+        TrainingEventDispatcher events = null;
+        // Checkpoints are written in the background, training only waits for a snapshot.
+        CheckpointWriter checkpoints = null;
+        int checkpointEpoch = firstEpoch;
+        long checkpointTime = System.nanoTime();
+        long checkpointStall = 0;
+
+        // Workers, dispatcher and writer have threads, which are stopped even if training fails.
+        try {
+            events = listeners.isEmpty() ? null : new TrainingEventDispatcher(listeners);
+            checkpoints = openCheckpointWriter();
+
+            // Start epochs.
+            for (int epoch = firstEpoch; epoch < firstEpoch + epochs && !stop; epoch++) {
+
+                /* Next part is used for continuous updates on GUI */
+                if (canvas != null) {
+                    if ((epoch + 1) % redrawEveryNEpoch == 0) {
+                        publishSnapshot();
+                        SwingUtilities.invokeLater(() -> canvas.repaint());
+                        try {
+                            Thread.sleep(500);
+                        } catch (InterruptedException e) {
+                            System.out.println("Error occurred while tread was sleeping...");
+                        }
+                    }
+                }
+                /* ----------------------------------------------- */
+
+                // Variable for accumulating the error.
+                double error = 0.0;
+                EpochEvent epochEvent = EpochEvent.start(layers, learningType, epoch + 1);
+
+                /* Go through every batch */
+                long start = System.nanoTime();
+                batchIndex = 0;
+                gradientNorm = Double.NaN;
+                if (stream == null) {
+                    sampler.shuffle();
+                    error += trainBlock(data, sampler, epoch, eta, events);
+                } else {
                     try {
-                        Thread.sleep(500);
+                        BinaryDatasetStream.Block block;
+                        while (!stop && (block = stream.next()) != null) {
+                            error += trainBlock(block.data(), block.sampler(), epoch, eta, events);
+                            stream.release(block);
+                        }
                     } catch (InterruptedException e) {
-                        System.out.println("Error occurred while tread was sleeping...");
+                        System.out.println("Error occurred while waiting for samples...");
+                        stop = true;
                     }
                 }
-            }
-            /* ----------------------------------------------- */
-
-            // Variable for accumulating the error.
-            double error = 0.0;
+                long epochTime = System.nanoTime() - start;
+                trainingTime += epochTime;
+                if (System.nanoTime() - snapshotTime >= SNAPSHOT_INTERVAL_NANOS) {
+                    publishSnapshot();
+                }
+                /* ---------------------- */
 
-            /* Go through every batch */
-            for (Collection<Sample> batch : batches) {
+                /* Check accumulated error and print results */
                 if (stop) break;
-                // Reset updates matrices.
-                resetUpdates();
-                // For every sample:
-                for (Sample sample : batch) {
-                    if (stop) break;
-                    // feed forward sample
-                    double[] predictedOutputs = feedForward(sample.getInputs());
-                    double[] expectedOutputs = sample.getOutputs();
-                    // accumulate error
-                    for (int i = 0; i < expectedOutputs.length; i++) {
-                        double subtract = expectedOutputs[i] - predictedOutputs[i];
-                        error += subtract * subtract;
+                error = error / numberOfSamples;
+                trainedSamples += numberOfSamples;
+                lastError = error;
+                completedEpochs = epoch + 1;
+                EpochEvent.finish(epochEvent, numberOfSamples, error);
+                if (events != null) {
+                    events.epochFinished(epoch + 1, error, numberOfSamples, epochTime,
+                            gradientNorm, backend.parametersNorm());
+                }
+                boolean checkpointDue = checkpointEveryNEpochs > 0 && (epoch + 1) % checkpointEveryNEpochs == 0
+                        || checkpointIntervalNanos > 0 && System.nanoTime() - checkpointTime >= checkpointIntervalNanos;
+                if (checkpoints != null && checkpointDue) {
+                    checkpointStall += submitCheckpoint(checkpoints);
+                    checkpointEpoch = completedEpochs;
+                    checkpointTime = System.nanoTime();
+                }
+                boolean exit = error < maxError;
+                if (epoch == firstEpoch || exit || (epoch + 1) % 1000 == 0) {
+                    System.out.println("Epoch " + (epoch + 1) + "., error = " + error);
+                    if (exit) {
+                        System.out.println("Found closest error! Exiting...");
+                        break;
                     }
-                    // Calculate all deltas using Backpropagation algorithm.
-                    calculateDeltasPerLayer(expectedOutputs);
-                    // Update weights and biases and save to the memory.
-                    updateWeightsBiases(eta);
                 }
-                // Apply updates for weights and biases.
-                System.arraycopy(
-                        weightsUpdatesPerLayer, 0, weightsPerLayer, 0, weightsUpdatesPerLayer.length);
-                System.arraycopy(
-                        biasesUpdatesPerLayer, 0, biasesPerLayer, 0, biasesUpdatesPerLayer.length);
+                /* ----------------------------------------- */
             }
-            /* ---------------------- */
 
-            /* Check accumulated error and print results */
-            if (stop) break;
-            error = error / (2 * numberOfSamples);
-            boolean exit = error < maxError;
-            if (epoch == 0 || exit || (epoch + 1) % 1000 == 0) {
-                System.out.println("Epoch " + (epoch + 1) + "., error = " + error);
-                if (exit) {
-                    System.out.println("Found closest error! Exiting...");
-                    break;
-                }
+            publishSnapshot();
+            if (checkpoints != null && completedEpochs != checkpointEpoch) {
+                checkpointStall += submitCheckpoint(checkpoints);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+            if (events != null) {
+                events.close();
+            }
+            if (checkpoints != null) {
+                checkpoints.close();
             }
-            /* ----------------------------------------- */
         }
-
+        if (checkpoints != null) {
+            System.out.println(String.format(
+                    "Wrote %d checkpoint(s), skipped %d, training stalled for %.3f ms in total.",
+                    checkpoints.getWritten(), checkpoints.getSkipped(), checkpointStall / 1e6));
+        }
+        if (trainedSamples > 0) {
+            double seconds = trainingTime / 1e9;
+            System.out.println(String.format(
+                    "Trained %d samples in %.3f s (%.0f samples/s) with %d worker(s), final error = %s",
+                    trainedSamples, seconds, trainedSamples / seconds, numberOfWorkers(), lastError));
+        }
         if (stop) {
             System.out.println("Stopped.");
         }
     }
 
-    /* PREPARE BATCHES OF SAMPLES BASED ON THE LEARNING TYPE */
-    private Collection<Collection<Sample>> prepareBatches() {
-        Collection<Collection<Sample>> batches = new ArrayList<>();
-        List<Sample> samples = dataset.shuffleSamples();
-        if (learningType == LearningType.BATCH) {
-            batches.add(samples);
-        } else if (learningType == LearningType.ONLINE) {
-            samples.forEach(s -> batches.add(List.of(s)));
-        } else {
-            int numberOfBatches = samples.size() / batchSize;
-            int offset = 0;
-            for (int i = 0; i < numberOfBatches; i++) {
-                List<Sample> batch = new ArrayList<>();
-                do {
-                    batch.add(samples.get(offset++));
-                } while (offset % batchSize != 0);
-                batches.add(batch);
+    /* ------ TRAIN SHUFFLED BATCHES, RETURNS ERROR ------- */
+    private double trainBlock(ColumnarDataset data, BatchSampler sampler, int epoch, double eta,
+                              TrainingEventDispatcher events) {
+        if (hogwildWorkers != null) {
+            return trainHogwild(data, sampler);
+        }
+        boolean batchEvents = events != null && events.wantsBatchEvents();
+        int[] indexes = sampler.indexes();
+        double error = 0.0;
+        for (int b = 0, numberOfBatches = sampler.numberOfBatches(); b < numberOfBatches; b++, batchIndex++) {
+            if (stop) break;
+            int from = sampler.batchFrom(b);
+            int to = sampler.batchTo(b);
+            int size = to - from;
+            long batchStart = batchEvents ? System.nanoTime() : 0;
+            BatchEvent batchEvent = BatchEvent.start(layers, learningType, epoch + 1, batchIndex, size);
+            double batchError;
+            Backend updated;
+            if (learningType == LearningType.ONLINE) {
+                // Reset updates matrices.
+                backend.resetUpdates();
+                batchError = trainSamples(data, indexes, from, to, eta);
+                updated = backend;
+            } else {
+                batchError = trainBatch(data, indexes, from, to, eta);
+                // Workers share weights and all updates are reduced into the first one.
+                updated = workers[0].getBackend();
+            }
+            boolean norms = batchEvents && batchIndex % BATCH_NORMS_INTERVAL == 0;
+            if (norms || (events != null && b == numberOfBatches - 1)) {
+                gradientNorm = updated.updatesNorm() / eta;
             }
-            int numOfSamplesLeft = samples.size() % batchSize;
-            if (numOfSamplesLeft != 0) {
-                List<Sample> samplesLeft = new ArrayList<>();
-                for (int i = offset; i < samples.size(); i++) {
-                    samplesLeft.add(samples.get(i));
+            // Apply updates for weights and biases.
+            updated.applyUpdates();
+            error += batchError;
+            BatchEvent.finish(batchEvent, batchError / size);
+            if (batchEvents) {
+                if (norms) {
+                    parametersNorm = backend.parametersNorm();
                 }
-                batches.add(samplesLeft);
+                events.batchFinished(epoch + 1, batchIndex, batchError / size, size,
+                        System.nanoTime() - batchStart, gradientNorm, parametersNorm);
             }
         }
-        return batches;
+        return error;
     }
     /* ---------------------------------------------------- */
 
-    /* -------------- RESETS UPDATE MATRICES -------------- */
-    private void resetUpdates() {
-        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
-            weightsUpdatesPerLayer[k] = weightsPerLayer[k].copy();
-            biasesUpdatesPerLayer[k] = biasesPerLayer[k].copy();
+    /* ---- TRAIN BATCH SAMPLE BY SAMPLE, RETURNS ERROR --- */
+    private double trainSamples(ColumnarDataset data, int[] indexes, int from, int to, double eta) {
+        double error = 0.0;
+        // For every sample:
+        for (int s = from; s < to; s++) {
+            if (stop) break;
+            data.copyInputs(indexes, s, s + 1, sampleInputs);
+            data.copyOutputs(indexes, s, s + 1, sampleOutputs);
+            // feed forward sample
+            ForwardPassEvent forwardPass = ForwardPassEvent.start(layers, learningType, 1);
+            backend.feedForward(sampleInputs, aFunction);
+            ForwardPassEvent.finish(forwardPass);
+            double[] expectedOutputs = sampleOutputs;
+            // accumulate error
+            error += backend.error(expectedOutputs);
+            // Calculate all deltas using Backpropagation algorithm.
+            BackpropagationEvent backpropagation = BackpropagationEvent.start(layers, learningType, 1);
+            backend.calculateDeltas(expectedOutputs);
+            BackpropagationEvent.finish(backpropagation);
+            // Update weights and biases and save to the memory.
+            WeightUpdateEvent weightUpdate = WeightUpdateEvent.start(layers, learningType, 1);
+            backend.updateWeightsBiases(eta);
+            WeightUpdateEvent.finish(weightUpdate);
         }
+        return error;
     }
     /* ---------------------------------------------------- */
 
-    /* --- CALCULATE DELTAS - BACKPROPAGATION ALGORITHM --- */
-    private void calculateDeltasPerLayer(double[] expectedOutputs) {
-        // Calculate deltas for output layer.
-        RealVector target = new ArrayRealVector(expectedOutputs);
-        RealVector actual = outputsPerLayer[outputsPerLayer.length - 1].getColumnVector(0);
-        RealVector subtraction = target.subtract(actual);
-        // Apply derivatives.
-        RealVector derivativesOutputLayer = derivativesPerLayer[deltasPerLayer.length - 1].getColumnVector(0);
-        for (int i = 0; i < subtraction.getDimension(); i++) {
-            subtraction.setEntry(i, derivativesOutputLayer.getEntry(i) * subtraction.getEntry(i));
-        }
-        deltasPerLayer[deltasPerLayer.length - 1].setColumnVector(0, subtraction);
-        // Calculate deltas for hidden layers.
-        for (int k = deltasPerLayer.length - 2; k >= 0; k--) {
-            RealVector derivativesLayerK = derivativesPerLayer[k].getColumnVector(0);
-            RealMatrix weightsLayerK1 = weightsPerLayer[k + 1];
-            RealVector biasesLayerK1 = biasesPerLayer[k + 1].getColumnVector(0);
-            RealMatrix deltasLayerK1 = deltasPerLayer[k + 1];
-            RealMatrix deltasLayerK = deltasPerLayer[k];
-            double[] weightedSums = (weightsLayerK1.transpose()).multiply(deltasLayerK1).getColumn(0);
-            // Add biases.
-            for (int i = 0; i < weightedSums.length; i++) {
-                for (int j = 0; j < biasesLayerK1.getDimension(); j++) {
-                    weightedSums[i] += biasesLayerK1.getEntry(j) * deltasLayerK1.getEntry(j, 0);
-                }
-            }
-            // Apply derivatives.
-            for (int i = 0; i < deltasLayerK.getRowDimension(); i++) {
-                deltasLayerK.setEntry(i, 0, derivativesLayerK.getEntry(i) * weightedSums[i]);
+    /* ----- TRAIN BATCH AS ONE MATRIX, RETURNS ERROR ----- */
+    private double trainBatch(ColumnarDataset data, int[] indexes, int from, int to, double eta) {
+        if (workers.length == 1) {
+            workers[0].train(data, indexes, from, to, layers, aFunction, eta);
+        } else {
+            pool.invoke(new BatchWorker.ParallelTask(
+                    workers, 0, workers.length, data, indexes, from, to, layers, aFunction, eta));
+        }
+        return workers[0].getError();
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------ TRAIN SAMPLES ASYNCHRONOUSLY, HOGWILD ------- */
+    private double trainHogwild(ColumnarDataset data, BatchSampler sampler) {
+        hogwildCursor.set(0);
+        for (HogwildWorker worker : hogwildWorkers) {
+            worker.setSamples(data, sampler);
+        }
+        double error = 0.0;
+        try {
+            // Errors are summed in the same order, although updates are not.
+            for (Future<Double> result : pool.invokeAll(hogwildWorkers)) {
+                error += result.get();
             }
+        } catch (InterruptedException e) {
+            System.out.println("Error occurred while waiting for workers...");
+            stop = true;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("NeuralNetwork::train(int, double, double) worker failed!", e.getCause());
         }
+        return error;
     }
     /* ---------------------------------------------------- */
 
-    /* ---- UPDATE WEIGHTS AND BIASES AFTER ONE SAMPLE ---- */
-    private void updateWeightsBiases(double eta) {
-        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
-            RealMatrix updatesWeightsLayerK = weightsUpdatesPerLayer[k];
-            RealMatrix updatesBiasesLayerK = biasesUpdatesPerLayer[k];
-            RealVector outputsLayerK = outputsPerLayer[k].getColumnVector(0);
-            RealVector deltasLayerK1 = deltasPerLayer[k].getColumnVector(0);
-            for (int i = 0; i < updatesWeightsLayerK.getRowDimension(); i++) {
-                for (int j = 0; j < updatesWeightsLayerK.getColumnDimension(); j++) {
-                    double weight = updatesWeightsLayerK.getEntry(i, j);
-                    weight += eta * outputsLayerK.getEntry(j) * deltasLayerK1.getEntry(i);
-                    updatesWeightsLayerK.setEntry(i, j, weight);
-                }
-                double bias = updatesBiasesLayerK.getEntry(i, 0);
-                bias += eta * deltasLayerK1.getEntry(i);
-                updatesBiasesLayerK.setEntry(i, 0, bias);
+    /* ----------- PREPARE WORKERS FOR TRAINING ----------- */
+    private void prepareWorkers(double eta) {
+        // Pool of a failed training could still be alive.
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        workers = new BatchWorker[]{new BatchWorker(backend, learningType)};
+        hogwildWorkers = null;
+        sampleInputs = new double[layers[0]];
+        sampleOutputs = new double[layers[layers.length - 1]];
+        if (parallelism == 1) return;
+        Backend[] backends = new Backend[parallelism];
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                backends[i] = backend.createWorker();
             }
+        } catch (UnsupportedOperationException e) {
+            System.out.println(e.getMessage() + " Using one worker.");
+            return;
+        }
+        if (learningType == LearningType.ONLINE) {
+            hogwildWorkers = new ArrayList<>();
+            for (Backend workerBackend : backends) {
+                hogwildWorkers.add(new HogwildWorker(
+                        workerBackend, layers, hogwildCursor, aFunction, eta, () -> stop));
+            }
+        } else {
+            workers = new BatchWorker[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                workers[i] = new BatchWorker(backends[i], learningType);
+            }
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    private int numberOfWorkers() {
+        return hogwildWorkers != null ? hogwildWorkers.size() : workers.length;
+    }
+    /* ---------------------------------------------------- */
+
+    /* PREPARE BATCHES OF SAMPLES BASED ON THE LEARNING TYPE */
+    private int samplesPerBatch(int numberOfSamples) {
+        if (learningType == LearningType.BATCH) {
+            return Math.max(numberOfSamples, 1);
+        } else if (learningType == LearningType.ONLINE) {
+            return 1;
         }
+        return batchSize;
     }
     /* ---------------------------------------------------- */
 
@@ -48,6 +48,98 @@ public abstract class ActivationFunction {
      */
     public abstract double derivativeValue(double x);
 
+    /**
+     * Calculates values for all elements of <code>in</code> and stores them into <code>out</code>.
+     *
+     * @param in  points.
+     * @param out destination for values, it can be the same array as <code>in</code>.
+     * @see #apply(double[], double[], int, int)
+     */
+    public void apply(double[] in, double[] out) {
+        apply(in, out, 0, in.length);
+    }
+
+    /**
+     * Calculates values for <code>length</code> elements of <code>in</code>, starting at <code>offset</code>, and
+     * stores them into <code>out</code> at the same positions. Elements of the range are treated as one layer, which
+     * matters for functions like {@link Softmax}.
+     * <br>
+     * Default implementation calls {@link #value(double)} for each element, subclasses should override it when values
+     * can be calculated faster for the whole layer.
+     *
+     * @param in     points.
+     * @param out    destination for values, it can be the same array as <code>in</code>.
+     * @param offset index of the first element.
+     * @param length number of elements.
+     */
+    public void apply(double[] in, double[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = value(in[i]);
+        }
+    }
+
+    /**
+     * Calculates derivative values for all elements of <code>in</code> and stores them into
+     * <code>derivatives</code>.
+     *
+     * @param in          points.
+     * @param out         values at the points, calculated by {@link #apply(double[], double[])}.
+     * @param derivatives destination for derivative values, it can be the same array as <code>in</code>.
+     * @see #derivative(double[], double[], double[], int, int)
+     */
+    public void derivative(double[] in, double[] out, double[] derivatives) {
+        derivative(in, out, derivatives, 0, in.length);
+    }
+
+    /**
+     * Calculates derivative values for <code>length</code> elements of <code>in</code>, starting at
+     * <code>offset</code>, and stores them into <code>derivatives</code> at the same positions. <code>out</code> must
+     * hold values at the same points, as calculated by {@link #apply(double[], double[], int, int)}, so
+     * implementations can calculate derivatives from them instead of calculating the function again.
+     * <br>
+     * Default implementation calls {@link #derivativeValue(double)} for each element.
+     *
+     * @param in          points.
+     * @param out         values at the points.
+     * @param derivatives destination for derivative values, it can be the same array as <code>in</code>.
+     * @param offset      index of the first element.
+     * @param length      number of elements.
+     */
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            derivatives[i] = derivativeValue(in[i]);
+        }
+    }
+
+    /**
+     * Single precision version of {@link #apply(double[], double[], int, int)}.
+     *
+     * @param in     points.
+     * @param out    destination for values, it can be the same array as <code>in</code>.
+     * @param offset index of the first element.
+     * @param length number of elements.
+     */
+    public void apply(float[] in, float[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (float) value(in[i]);
+        }
+    }
+
+    /**
+     * Single precision version of {@link #derivative(double[], double[], double[], int, int)}.
+     *
+     * @param in          points.
+     * @param out         values at the points.
+     * @param derivatives destination for derivative values, it can be the same array as <code>in</code>.
+     * @param offset      index of the first element.
+     * @param length      number of elements.
+     */
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            derivatives[i] = (float) derivativeValue(in[i]);
+        }
+    }
+
     /**
      * @return map where key is activation functions id and value a class instance.
      */
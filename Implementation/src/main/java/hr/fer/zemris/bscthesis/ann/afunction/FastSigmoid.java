@@ -0,0 +1,63 @@
+package hr.fer.zemris.bscthesis.ann.afunction;
+
+/**
+ * An implementation of {@link ActivationFunction}. It represents an approximation of <b>SIGMOID</b> activation
+ * function which doesn't call {@link Math#exp(double)}.
+ * <br>
+ * Values are calculated through the identity <code>sigmoid(x) = (1 + tanh(x / 2)) / 2</code>, where tangent
+ * hyperbolic is approximated as in {@link FastTanh}. Maximum absolute error is therefore below <code>1.25e-7</code>.
+ * Derivatives are calculated from approximated values, as in {@link Sigmoid}.
+ * <br>
+ * As in {@link FastTanh}, it is faster only with scalar kernels.
+ *
+ * @author dbrcina
+ * @see Sigmoid
+ */
+public class FastSigmoid extends ActivationFunction {
+
+    public FastSigmoid() {
+        super("FastSigmoid");
+    }
+
+    @Override
+    public double value(double x) {
+        return 0.5 + 0.5 * FastTanh.approximate(0.5 * x);
+    }
+
+    @Override
+    public double derivativeValue(double x) {
+        double sigma = value(x);
+        return sigma * (1 - sigma);
+    }
+
+    @Override
+    public void apply(double[] in, double[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = 0.5 + 0.5 * FastTanh.approximate(0.5 * in[i]);
+        }
+    }
+
+    @Override
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double sigma = out[i];
+            derivatives[i] = sigma * (1 - sigma);
+        }
+    }
+
+    @Override
+    public void apply(float[] in, float[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (float) (0.5 + 0.5 * FastTanh.approximate(0.5 * in[i]));
+        }
+    }
+
+    @Override
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float sigma = out[i];
+            derivatives[i] = sigma * (1 - sigma);
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package hr.fer.zemris.bscthesis.ann.afunction;
+
+/**
+ * An implementation of {@link ActivationFunction}. It represents an approximation of <b>TANGENT HYPERBOLIC</b>
+ * activation function which doesn't call {@link Math#tanh(double)}.
+ * <br>
+ * Values on <code>[0, 8)</code> are calculated with cubic Hermite interpolation between points of a table with a
+ * step of <code>1/16</code>, where derivatives in the points are known exactly. Negative points use the symmetry
+ * <code>tanh(-x) = -tanh(x)</code> and points outside of the table are mapped to <code>-1</code> or <code>1</code>.
+ * <br>
+ * Maximum absolute error is below <code>2.5e-7</code>, at the edge of the table. Derivatives are calculated from
+ * approximated values, as in {@link Tanh}.
+ * <br>
+ * Table lookups are not vectorized, so the approximation is faster only with scalar kernels. With kernels based on the
+ * Vector API, {@link Tanh} is usually faster.
+ *
+ * @author dbrcina
+ * @see Tanh
+ */
+public class FastTanh extends ActivationFunction {
+
+    private static final int RANGE = 8;
+    private static final int STEPS_PER_UNIT = 16;
+    // Four coefficients of the cubic polynomial for each step.
+    private static final double[] COEFFICIENTS = new double[4 * RANGE * STEPS_PER_UNIT];
+
+    static {
+        double step = 1.0 / STEPS_PER_UNIT;
+        for (int i = 0; i < RANGE * STEPS_PER_UNIT; i++) {
+            double y0 = Math.tanh(i * step);
+            double y1 = Math.tanh((i + 1) * step);
+            double d0 = (1 - y0 * y0) * step;
+            double d1 = (1 - y1 * y1) * step;
+            COEFFICIENTS[4 * i] = y0;
+            COEFFICIENTS[4 * i + 1] = d0;
+            COEFFICIENTS[4 * i + 2] = 3 * (y1 - y0) - 2 * d0 - d1;
+            COEFFICIENTS[4 * i + 3] = 2 * (y0 - y1) + d0 + d1;
+        }
+    }
+
+    public FastTanh() {
+        super("FastTanh");
+    }
+
+    @Override
+    public double value(double x) {
+        return approximate(x);
+    }
+
+    @Override
+    public double derivativeValue(double x) {
+        double tanh = value(x);
+        return 1 - tanh * tanh;
+    }
+
+    @Override
+    public void apply(double[] in, double[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = approximate(in[i]);
+        }
+    }
+
+    @Override
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double tanh = out[i];
+            derivatives[i] = 1 - tanh * tanh;
+        }
+    }
+
+    @Override
+    public void apply(float[] in, float[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (float) approximate(in[i]);
+        }
+    }
+
+    @Override
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float tanh = out[i];
+            derivatives[i] = 1 - tanh * tanh;
+        }
+    }
+
+    // Shared with FastSigmoid.
+    static double approximate(double x) {
+        double abs = Math.abs(x);
+        if (!(abs < RANGE)) {
+            return Double.isNaN(x) ? x : Math.copySign(1.0, x);
+        }
+        double position = abs * STEPS_PER_UNIT;
+        int i = (int) position;
+        double u = position - i;
+        int c = 4 * i;
+        double y = COEFFICIENTS[c] + u * (COEFFICIENTS[c + 1] + u * (COEFFICIENTS[c + 2] + u * COEFFICIENTS[c + 3]));
+        return Math.copySign(y, x);
+    }
+
+}
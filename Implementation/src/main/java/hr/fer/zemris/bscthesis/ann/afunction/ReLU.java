@@ -1,5 +1,7 @@
 package hr.fer.zemris.bscthesis.ann.afunction;
 
+import hr.fer.zemris.bscthesis.ann.kernel.Kernels;
+
 /**
  * An implementation of {@link ActivationFunction}. It represents <b>RECTIFIED LINEAR UNIT</b> activation function.
  *
@@ -7,6 +9,8 @@ package hr.fer.zemris.bscthesis.ann.afunction;
  */
 public class ReLU extends ActivationFunction {
 
+    private static final Kernels KERNELS = Kernels.get();
+
     public ReLU() {
         super("ReLU");
     }
@@ -21,4 +25,31 @@ public class ReLU extends ActivationFunction {
         return x > 0 ? 1 : 0;
     }
 
+    @Override
+    public void apply(double[] in, double[] out, int offset, int length) {
+        KERNELS.relu(in, out, offset, length);
+    }
+
+    @Override
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        // Output is positive exactly when the input is positive.
+        for (int i = offset; i < offset + length; i++) {
+            derivatives[i] = out[i] > 0 ? 1 : 0;
+        }
+    }
+
+    @Override
+    public void apply(float[] in, float[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = Math.max(0, in[i]);
+        }
+    }
+
+    @Override
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            derivatives[i] = out[i] > 0 ? 1 : 0;
+        }
+    }
+
 }
@@ -1,5 +1,7 @@
 package hr.fer.zemris.bscthesis.ann.afunction;
 
+import hr.fer.zemris.bscthesis.ann.kernel.Kernels;
+
 /**
  * An implementation of {@link ActivationFunction}. It represents <b>SIGMOID</b> activation function.
  *
@@ -7,6 +9,8 @@ package hr.fer.zemris.bscthesis.ann.afunction;
  */
 public class Sigmoid extends ActivationFunction {
 
+    private static final Kernels KERNELS = Kernels.get();
+
     public Sigmoid() {
         super("Sigmoid");
     }
@@ -22,4 +26,32 @@ public class Sigmoid extends ActivationFunction {
         return sigma * (1 - sigma);
     }
 
+    @Override
+    public void apply(double[] in, double[] out, int offset, int length) {
+        KERNELS.sigmoid(in, out, offset, length);
+    }
+
+    @Override
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double sigma = out[i];
+            derivatives[i] = sigma * (1 - sigma);
+        }
+    }
+
+    @Override
+    public void apply(float[] in, float[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (float) (1 / (1 + Math.exp(-in[i])));
+        }
+    }
+
+    @Override
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float sigma = out[i];
+            derivatives[i] = sigma * (1 - sigma);
+        }
+    }
+
 }
@@ -4,38 +4,114 @@ import java.util.Arrays;
 
 /**
  * An implementation of {@link ActivationFunction}. It represents <b>SOFTMAX</b> activation function.
+ * <br>
+ * Softmax depends on the whole layer, so {@link #apply(double[], double[], int, int)} treats the provided range as one
+ * layer and calculates it in a single pass. Scalar methods are available only if the instance is created for a
+ * specific vector through {@link #Softmax(double[])}.
+ * <br>
+ * The greatest value of a layer is subtracted before exponentiation, which doesn't change the result, but
+ * <code>Math.exp</code> can't overflow.
  *
  * @author dbrcina
  */
 public class Softmax extends ActivationFunction {
 
+    private final double max;
     private final double sum;
 
+    /**
+     * Creates softmax which can be used only through array methods.
+     */
+    public Softmax() {
+        super("Softmax");
+        max = Double.NaN;
+        sum = Double.NaN;
+    }
+
     /**
      * It expects a vector of values from which sum is calculated as follows:
      * <pre>
      *     vector: [a1, a2, ..., an]
-     *     sum = Math.exp(a1) + Math.exp(a2) + ... + Math.exp(an)
+     *     max = max(a1, a2, ..., an)
+     *     sum = Math.exp(a1 - max) + Math.exp(a2 - max) + ... + Math.exp(an - max)
      * </pre>
      *
      * @param vector vector.
      */
     public Softmax(double[] vector) {
         super("Softmax");
+        max = Arrays.stream(vector).max().orElse(0.0);
         sum = Arrays.stream(vector)
-                .map(Math::exp)
+                .map(a -> Math.exp(a - max))
                 .sum();
     }
 
+    /**
+     * @throws UnsupportedOperationException if the instance isn't created for a vector.
+     */
     @Override
     public double value(double x) {
-        return Math.exp(x) / sum;
+        if (Double.isNaN(sum)) {
+            throw new UnsupportedOperationException("Softmax::value(double) is supported only for a vector.");
+        }
+        return Math.exp(x - max) / sum;
     }
 
+    /**
+     * @throws UnsupportedOperationException if the instance isn't created for a vector.
+     */
     @Override
     public double derivativeValue(double x) {
         double temp = value(x);
         return temp * (1 - temp);
     }
 
+    @Override
+    public void apply(double[] in, double[] out, int offset, int length) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; i++) {
+            max = Math.max(max, in[i]);
+        }
+        double sum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            double exp = Math.exp(in[i] - max);
+            out[i] = exp;
+            sum += exp;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            out[i] /= sum;
+        }
+    }
+
+    @Override
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double temp = out[i];
+            derivatives[i] = temp * (1 - temp);
+        }
+    }
+
+    @Override
+    public void apply(float[] in, float[] out, int offset, int length) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; i++) {
+            max = Math.max(max, in[i]);
+        }
+        double sum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += Math.exp(in[i] - max);
+        }
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (float) (Math.exp(in[i] - max) / sum);
+        }
+    }
+
+    @Override
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float temp = out[i];
+            derivatives[i] = temp * (1 - temp);
+        }
+    }
+
 }
@@ -1,5 +1,7 @@
 package hr.fer.zemris.bscthesis.ann.afunction;
 
+import hr.fer.zemris.bscthesis.ann.kernel.Kernels;
+
 /**
  * An implementation of {@link ActivationFunction}. It represents <b>TANGENT HYPERBOLIC</b> activation function.
  *
@@ -7,6 +9,8 @@ package hr.fer.zemris.bscthesis.ann.afunction;
  */
 public class Tanh extends ActivationFunction {
 
+    private static final Kernels KERNELS = Kernels.get();
+
     public Tanh() {
         super("Tanh");
     }
@@ -22,4 +26,32 @@ public class Tanh extends ActivationFunction {
         return 1 - tanh * tanh;
     }
 
+    @Override
+    public void apply(double[] in, double[] out, int offset, int length) {
+        KERNELS.tanh(in, out, offset, length);
+    }
+
+    @Override
+    public void derivative(double[] in, double[] out, double[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            double tanh = out[i];
+            derivatives[i] = 1 - tanh * tanh;
+        }
+    }
+
+    @Override
+    public void apply(float[] in, float[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = (float) Math.tanh(in[i]);
+        }
+    }
+
+    @Override
+    public void derivative(float[] in, float[] out, float[] derivatives, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float tanh = out[i];
+            derivatives[i] = 1 - tanh * tanh;
+        }
+    }
+
 }
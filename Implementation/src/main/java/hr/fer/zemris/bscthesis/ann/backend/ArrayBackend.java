@@ -0,0 +1,383 @@
+package hr.fer.zemris.bscthesis.ann.backend;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.afunction.Softmax;
+import hr.fer.zemris.bscthesis.ann.kernel.Kernels;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * An implementation of {@link Backend} which stores every matrix as a flat array of doubles. Weights of layer
+ * <code>k</code> are stored in <b>row-major</b> order, so that an entry <code>(i, j)</code> is at index
+ * <code>i * layers[k] + j</code>. All other matrices are column matrices, so they are stored as plain arrays.
+ * <br>
+ * Updates are accumulated as differences and added to weights and biases in {@link #applyUpdates()}, so no copies of
+ * weights are made between batches.
+ * <br>
+ * Batched methods keep one row-major matrix per layer whose rows are samples, so every layer is calculated with one
+ * matrix-matrix product. Samples are summed in the same order as in the per sample methods, so both ways give the
+ * same results.
+ * <br>
+ * All matrix products are calculated by {@link Kernels}, so they use the Vector API when it is available.
+ *
+ * @author dbrcina
+ */
+public class ArrayBackend implements Backend {
+
+    // Softmax has no state, so one instance is used for all output layers.
+    private static final Softmax SOFTMAX = new Softmax();
+    private static final Kernels KERNELS = Kernels.get();
+
+    /* ------- ALL MATRICES USED IN TRAINING PROCESS ------ */
+    private int[] layers;
+    private double[][] weightsPerLayer;
+    private double[][] biasesPerLayer;
+    private double[][] outputsPerLayer;
+    private double[][] derivativesPerLayer;
+    private double[][] deltasPerLayer;
+    private double[][] weightsUpdatesPerLayer;
+    private double[][] biasesUpdatesPerLayer;
+    /* ---------------------------------------------------- */
+
+    /* ------ BATCH MATRICES, ONE SAMPLE PER EACH ROW ----- */
+    private int batchCapacity;
+    private double[][] batchOutputsPerLayer;
+    private double[][] batchDerivativesPerLayer;
+    private double[][] batchDeltasPerLayer;
+    /* ---------------------------------------------------- */
+
+    // If the loss doesn't need derivatives of the output layer, weighted sums of
+    // the output layer are left in their place and used for the error.
+    private Loss loss = Loss.MSE;
+
+    /* ---------- MEMORY ALLOCATION FOR MATRICES ---------- */
+    public ArrayBackend() {
+    }
+
+    // Worker shares weights and biases with its parent.
+    private ArrayBackend(ArrayBackend parent) {
+        layers = parent.layers;
+        weightsPerLayer = parent.weightsPerLayer;
+        biasesPerLayer = parent.biasesPerLayer;
+        loss = parent.loss;
+        allocateWorkspace();
+    }
+
+    @Override
+    public void setup(int[] layers) {
+        this.layers = layers.clone();
+        weightsPerLayer = new double[layers.length - 1][];
+        biasesPerLayer = new double[layers.length - 1][];
+        for (int k = 0; k < layers.length - 1; k++) {
+            weightsPerLayer[k] = new double[layers[k + 1] * layers[k]];
+            biasesPerLayer[k] = new double[layers[k + 1]];
+        }
+        allocateWorkspace();
+    }
+
+    @Override
+    public void setLoss(Loss loss) {
+        this.loss = loss;
+    }
+
+    private void allocateWorkspace() {
+        outputsPerLayer = new double[layers.length][];
+        derivativesPerLayer = new double[layers.length - 1][];
+        deltasPerLayer = new double[layers.length - 1][];
+        weightsUpdatesPerLayer = new double[layers.length - 1][];
+        biasesUpdatesPerLayer = new double[layers.length - 1][];
+        for (int k = 0; k < layers.length; k++) {
+            if (k != layers.length - 1) {
+                derivativesPerLayer[k] = new double[layers[k + 1]];
+                deltasPerLayer[k] = new double[layers[k + 1]];
+                weightsUpdatesPerLayer[k] = new double[layers[k + 1] * layers[k]];
+                biasesUpdatesPerLayer[k] = new double[layers[k + 1]];
+            }
+            outputsPerLayer[k] = new double[layers[k]];
+        }
+        batchCapacity = 0;
+        batchOutputsPerLayer = new double[layers.length][];
+        batchDerivativesPerLayer = new double[layers.length - 1][];
+        batchDeltasPerLayer = new double[layers.length - 1][];
+    }
+
+    private void ensureBatchCapacity(int batchSize) {
+        if (batchSize <= batchCapacity) return;
+        batchCapacity = batchSize;
+        for (int k = 0; k < layers.length; k++) {
+            if (k != layers.length - 1) {
+                batchDerivativesPerLayer[k] = new double[batchSize * layers[k + 1]];
+                batchDeltasPerLayer[k] = new double[batchSize * layers[k + 1]];
+            }
+            batchOutputsPerLayer[k] = new double[batchSize * layers[k]];
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* -------------- XAVIER INITIALIZATION --------------- */
+    @Override
+    public void randomize(Random rand) {
+        // Same order of random numbers as in RealMatrixBackend, so both backends
+        // start from the same weights for the same seed.
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            double[] weightsLayerK = weightsPerLayer[k];
+            double[] biasesLayerK = biasesPerLayer[k];
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    double weight = rand.nextGaussian();
+                    weight *= Math.sqrt(2.0 / cols);
+                    weightsLayerK[i * cols + j] = weight;
+                }
+                double bias = rand.nextGaussian();
+                bias *= Math.sqrt(2.0 / cols);
+                biasesLayerK[i] = bias;
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------- COPY WEIGHTS AND BIASES -------------- */
+    @Override
+    public void getParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        for (int k = 0; k < this.weightsPerLayer.length; k++) {
+            System.arraycopy(this.weightsPerLayer[k], 0, weightsPerLayer[k], 0, this.weightsPerLayer[k].length);
+            System.arraycopy(this.biasesPerLayer[k], 0, biasesPerLayer[k], 0, this.biasesPerLayer[k].length);
+        }
+    }
+
+    @Override
+    public void setParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        for (int k = 0; k < this.weightsPerLayer.length; k++) {
+            System.arraycopy(weightsPerLayer[k], 0, this.weightsPerLayer[k], 0, this.weightsPerLayer[k].length);
+            System.arraycopy(biasesPerLayer[k], 0, this.biasesPerLayer[k], 0, this.biasesPerLayer[k].length);
+        }
+    }
+
+    @Override
+    public double parametersNorm() {
+        return norm(weightsPerLayer, biasesPerLayer);
+    }
+    /* ---------------------------------------------------- */
+
+    @Override
+    public double[] feedForward(double[] inputs, ActivationFunction aFunction) {
+        System.arraycopy(inputs, 0, outputsPerLayer[0], 0, inputs.length);
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            double[] outputsLayerK1 = outputsPerLayer[k + 1];
+            double[] derivativesLayerK = derivativesPerLayer[k];
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            // Weighted sums are stored into the derivatives, which are calculated from them later.
+            KERNELS.multiplyTransposed(outputsPerLayer[k], weightsPerLayer[k], derivativesLayerK, 1, cols, rows);
+            KERNELS.add(derivativesLayerK, biasesPerLayer[k]);
+            // Differentiate hidden layers from output layer!!!
+            boolean isOutputLayer = k == weightsPerLayer.length - 1;
+            ActivationFunction f = isOutputLayer ? SOFTMAX : aFunction;
+            f.apply(derivativesLayerK, outputsLayerK1, 0, rows);
+            if (!isOutputLayer || loss.needsDerivatives()) {
+                f.derivative(derivativesLayerK, outputsLayerK1, derivativesLayerK, 0, rows);
+            }
+        }
+        return outputsPerLayer[outputsPerLayer.length - 1];
+    }
+
+    @Override
+    public double error(double[] expectedOutputs) {
+        int last = derivativesPerLayer.length - 1;
+        return loss.error(expectedOutputs, outputsPerLayer[last + 1], derivativesPerLayer[last], 0, layers[last + 1]);
+    }
+
+    /* -------------- RESETS UPDATE MATRICES -------------- */
+    @Override
+    public void resetUpdates() {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            Arrays.fill(weightsUpdatesPerLayer[k], 0.0);
+            Arrays.fill(biasesUpdatesPerLayer[k], 0.0);
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* --- CALCULATE DELTAS - BACKPROPAGATION ALGORITHM --- */
+    @Override
+    public void calculateDeltas(double[] expectedOutputs) {
+        // Calculate deltas for output layer.
+        int last = deltasPerLayer.length - 1;
+        double[] actual = outputsPerLayer[last + 1];
+        double[] derivativesOutputLayer = derivativesPerLayer[last];
+        double[] deltasOutputLayer = deltasPerLayer[last];
+        loss.outputDeltas(expectedOutputs, actual, derivativesOutputLayer, deltasOutputLayer, 0,
+                deltasOutputLayer.length);
+        // Calculate deltas for hidden layers.
+        for (int k = last - 1; k >= 0; k--) {
+            double[] derivativesLayerK = derivativesPerLayer[k];
+            double[] biasesLayerK1 = biasesPerLayer[k + 1];
+            double[] deltasLayerK1 = deltasPerLayer[k + 1];
+            double[] deltasLayerK = deltasPerLayer[k];
+            int rows = layers[k + 2];
+            int cols = layers[k + 1];
+            // Biases contribution is the same for every neuron.
+            double biasesSum = 0.0;
+            for (int j = 0; j < rows; j++) {
+                biasesSum += biasesLayerK1[j] * deltasLayerK1[j];
+            }
+            // Transposed product is accumulated row by row, so weights are read sequentially.
+            KERNELS.multiply(deltasLayerK1, weightsPerLayer[k + 1], deltasLayerK, 1, rows, cols);
+            // Apply derivatives.
+            for (int i = 0; i < cols; i++) {
+                deltasLayerK[i] = derivativesLayerK[i] * (deltasLayerK[i] + biasesSum);
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---- UPDATE WEIGHTS AND BIASES AFTER ONE SAMPLE ---- */
+    @Override
+    public void updateWeightsBiases(double eta) {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            // dW += eta * delta * o^T, outer product
+            KERNELS.multiplyTransposedAdd(deltasPerLayer[k], outputsPerLayer[k], weightsUpdatesPerLayer[k],
+                    biasesUpdatesPerLayer[k], eta, 1, layers[k + 1], layers[k]);
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------- FEED FORWARD WHOLE BATCH ------------- */
+    @Override
+    public double[] feedForwardBatch(double[] inputs, int batchSize, ActivationFunction aFunction) {
+        ensureBatchCapacity(batchSize);
+        System.arraycopy(inputs, 0, batchOutputsPerLayer[0], 0, batchSize * layers[0]);
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            double[] outputsLayerK1 = batchOutputsPerLayer[k + 1];
+            double[] derivativesLayerK = batchDerivativesPerLayer[k];
+            // Z = O * W^T + b, stored into the derivatives
+            KERNELS.multiplyTransposed(batchOutputsPerLayer[k], weightsPerLayer[k], derivativesLayerK,
+                    batchSize, cols, rows);
+            KERNELS.addRowVector(derivativesLayerK, biasesPerLayer[k], batchSize, rows);
+            if (k == weightsPerLayer.length - 1) {
+                // Differentiate hidden layers from output layer!!! Softmax is calculated for each sample separately.
+                for (int offset = 0; offset < batchSize * rows; offset += rows) {
+                    SOFTMAX.apply(derivativesLayerK, outputsLayerK1, offset, rows);
+                    if (loss.needsDerivatives()) {
+                        SOFTMAX.derivative(derivativesLayerK, outputsLayerK1, derivativesLayerK, offset, rows);
+                    }
+                }
+            } else {
+                aFunction.apply(derivativesLayerK, outputsLayerK1, 0, batchSize * rows);
+                aFunction.derivative(derivativesLayerK, outputsLayerK1, derivativesLayerK, 0, batchSize * rows);
+            }
+        }
+        return batchOutputsPerLayer[batchOutputsPerLayer.length - 1];
+    }
+
+    @Override
+    public double errorBatch(double[] expectedOutputs, int batchSize) {
+        int last = batchDerivativesPerLayer.length - 1;
+        int rows = layers[last + 1];
+        double error = 0.0;
+        for (int offset = 0; offset < batchSize * rows; offset += rows) {
+            error += loss.error(expectedOutputs, batchOutputsPerLayer[last + 1], batchDerivativesPerLayer[last],
+                    offset, rows);
+        }
+        return error;
+    }
+    /* ---------------------------------------------------- */
+
+    /* - CALCULATE DELTAS FOR WHOLE BATCH - BACKPROPAGATION */
+    @Override
+    public void calculateDeltasBatch(double[] expectedOutputs, int batchSize) {
+        // Calculate deltas for output layer.
+        int last = batchDeltasPerLayer.length - 1;
+        double[] actual = batchOutputsPerLayer[last + 1];
+        double[] derivativesOutputLayer = batchDerivativesPerLayer[last];
+        double[] deltasOutputLayer = batchDeltasPerLayer[last];
+        loss.outputDeltas(expectedOutputs, actual, derivativesOutputLayer, deltasOutputLayer, 0,
+                batchSize * layers[last + 1]);
+        // Calculate deltas for hidden layers.
+        for (int k = last - 1; k >= 0; k--) {
+            double[] derivativesLayerK = batchDerivativesPerLayer[k];
+            double[] biasesLayerK1 = biasesPerLayer[k + 1];
+            double[] deltasLayerK1 = batchDeltasPerLayer[k + 1];
+            double[] deltasLayerK = batchDeltasPerLayer[k];
+            int rows = layers[k + 2];
+            int cols = layers[k + 1];
+            // D(k) = D(k + 1) * W(k + 1)
+            KERNELS.multiply(deltasLayerK1, weightsPerLayer[k + 1], deltasLayerK, batchSize, rows, cols);
+            for (int s = 0; s < batchSize; s++) {
+                // Biases contribution is the same for every neuron of one sample.
+                double biasesSum = 0.0;
+                for (int j = 0, offset = s * rows; j < rows; j++) {
+                    biasesSum += biasesLayerK1[j] * deltasLayerK1[offset + j];
+                }
+                // Apply derivatives.
+                for (int i = s * cols, end = i + cols; i < end; i++) {
+                    deltasLayerK[i] = derivativesLayerK[i] * (deltasLayerK[i] + biasesSum);
+                }
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* --- UPDATE WEIGHTS AND BIASES AFTER WHOLE BATCH ---- */
+    @Override
+    public void updateWeightsBiasesBatch(double eta, int batchSize) {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            // dW += eta * D^T * O
+            KERNELS.multiplyTransposedAdd(batchDeltasPerLayer[k], batchOutputsPerLayer[k], weightsUpdatesPerLayer[k],
+                    biasesUpdatesPerLayer[k], eta, batchSize, layers[k + 1], layers[k]);
+        }
+    }
+
+    @Override
+    public double updatesNorm() {
+        return norm(weightsUpdatesPerLayer, biasesUpdatesPerLayer);
+    }
+
+    private static double norm(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        double sum = 0.0;
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            for (double weight : weightsPerLayer[k]) {
+                sum += weight * weight;
+            }
+            for (double bias : biasesPerLayer[k]) {
+                sum += bias * bias;
+            }
+        }
+        return Math.sqrt(sum);
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---- APPLY UPDATES AFTER A BATCH, MERGE WORKERS ---- */
+    @Override
+    public void applyUpdates() {
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            KERNELS.add(weightsPerLayer[k], weightsUpdatesPerLayer[k]);
+            KERNELS.add(biasesPerLayer[k], biasesUpdatesPerLayer[k]);
+        }
+    }
+
+    @Override
+    public Backend createWorker() {
+        return new ArrayBackend(this);
+    }
+
+    @Override
+    public void mergeUpdates(Backend worker) {
+        if (!(worker instanceof ArrayBackend) || ((ArrayBackend) worker).weightsPerLayer != weightsPerLayer) {
+            throw new IllegalArgumentException(
+                    "ArrayBackend::mergeUpdates(Backend) worker doesn't share weights with this backend!");
+        }
+        ArrayBackend other = (ArrayBackend) worker;
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            KERNELS.add(weightsUpdatesPerLayer[k], other.weightsUpdatesPerLayer[k]);
+            KERNELS.add(biasesUpdatesPerLayer[k], other.biasesUpdatesPerLayer[k]);
+        }
+    }
+    /* ---------------------------------------------------- */
+
+}
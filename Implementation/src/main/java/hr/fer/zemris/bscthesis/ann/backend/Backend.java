@@ -0,0 +1,191 @@
+package hr.fer.zemris.bscthesis.ann.backend;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+
+import java.util.Random;
+
+/**
+ * Model of a numerical backend used by {@link hr.fer.zemris.bscthesis.ann.NeuralNetwork}. Backend owns all matrices
+ * used in training process (weights, biases, outputs, derivatives, deltas and updates) and performs all of the
+ * arithmetic on them.
+ * <br>
+ * Training of one batch is done through the following calls:
+ * <ol>
+ *     <li>{@link #resetUpdates()},</li>
+ *     <li>{@link #feedForward(double[], ActivationFunction)}, {@link #calculateDeltas(double[])} and
+ *     {@link #updateWeightsBiases(double)} for every sample in a batch,</li>
+ *     <li>{@link #applyUpdates()}.</li>
+ * </ol>
+ * When the whole batch is available in advance, step 2. can be replaced with
+ * {@link #feedForwardBatch(double[], int, ActivationFunction)}, {@link #calculateDeltasBatch(double[], int)} and
+ * {@link #updateWeightsBiasesBatch(double, int)}, which treat the batch as one matrix whose rows are samples. Both ways
+ * result in the same updates.
+ * <br>
+ * For parallel training, {@link #createWorker()} creates backends which share weights and biases, so that each
+ * worker can accumulate updates for its part of a batch. Updates are then collected with
+ * {@link #mergeUpdates(Backend)} and applied once.
+ *
+ * @author dbrcina
+ * @see RealMatrixBackend
+ * @see ArrayBackend
+ */
+public interface Backend {
+
+    /**
+     * Allocates memory for all matrices based on provided <code>layers</code>. Previous state is discarded.
+     *
+     * @param layers input + hidden + output layers.
+     */
+    void setup(int[] layers);
+
+    /**
+     * Sets loss which determines deltas of the output layer and errors. Default loss is {@link Loss#MSE}. Workers
+     * created afterwards use the same loss.
+     *
+     * @param loss loss.
+     */
+    void setLoss(Loss loss);
+
+    /**
+     * Initializes weights and biases with Xavier initialization.
+     *
+     * @param rand random number generator.
+     */
+    void randomize(Random rand);
+
+    /**
+     * Copies weights and biases into provided arrays. Weights of layer <code>k</code> are copied in row-major order
+     * into <code>weightsPerLayer[k]</code>, which needs to have <code>layers[k + 1] * layers[k]</code> elements.
+     *
+     * @param weightsPerLayer destination for weights.
+     * @param biasesPerLayer  destination for biases.
+     */
+    void getParameters(double[][] weightsPerLayer, double[][] biasesPerLayer);
+
+    /**
+     * Copies provided weights and biases into this backend. Arrays are expected in the same format as in
+     * {@link #getParameters(double[][], double[][])}.
+     *
+     * @param weightsPerLayer row-major weights.
+     * @param biasesPerLayer  biases.
+     */
+    void setParameters(double[][] weightsPerLayer, double[][] biasesPerLayer);
+
+    /**
+     * @return Euclidean norm of all weights and biases.
+     */
+    double parametersNorm();
+
+    /**
+     * Feed forwards provided <code>inputs</code>. Returned array is backends internal buffer, so it must not be
+     * modified and it is valid only until the next call of this method.
+     *
+     * @param inputs    inputs.
+     * @param aFunction activation function used for the hidden layers.
+     * @return outputs of the output layer.
+     */
+    double[] feedForward(double[] inputs, ActivationFunction aFunction);
+
+    /**
+     * Calculates error of the last sample, as defined by the loss. It expects that
+     * {@link #feedForward(double[], ActivationFunction)} was called before for the same sample.
+     *
+     * @param expectedOutputs expected outputs.
+     * @return error of the sample.
+     * @see Loss#error(double[], double[], double[], int, int)
+     */
+    double error(double[] expectedOutputs);
+
+    /**
+     * Resets memory used for accumulating updates of weights and biases.
+     */
+    void resetUpdates();
+
+    /**
+     * Calculates deltas for every layer using Backpropagation algorithm. It expects that
+     * {@link #feedForward(double[], ActivationFunction)} was called before for the same sample.
+     *
+     * @param expectedOutputs expected outputs.
+     */
+    void calculateDeltas(double[] expectedOutputs);
+
+    /**
+     * Accumulates updates of weights and biases for the last sample in a memory.
+     *
+     * @param eta eta constant.
+     */
+    void updateWeightsBiases(double eta);
+
+    /**
+     * Feed forwards a whole batch of samples. <code>inputs</code> is a row-major matrix of
+     * <code>batchSize x layers[0]</code> elements, one sample per row. Returned array is backends internal buffer
+     * holding a row-major matrix of <code>batchSize x layers[layers.length - 1]</code> outputs at its beginning, so it
+     * must not be modified and it is valid only until the next call of this method.
+     *
+     * @param inputs    row-major matrix of inputs.
+     * @param batchSize number of samples in a batch.
+     * @param aFunction activation function used for the hidden layers.
+     * @return row-major matrix of outputs of the output layer.
+     */
+    double[] feedForwardBatch(double[] inputs, int batchSize, ActivationFunction aFunction);
+
+    /**
+     * Calculates sum of errors of all samples in a batch, as defined by the loss. It expects that
+     * {@link #feedForwardBatch(double[], int, ActivationFunction)} was called before for the same batch.
+     *
+     * @param expectedOutputs row-major matrix of expected outputs, one sample per row.
+     * @param batchSize       number of samples in a batch.
+     * @return sum of errors of the samples.
+     */
+    double errorBatch(double[] expectedOutputs, int batchSize);
+
+    /**
+     * Calculates deltas for every layer and every sample in a batch using Backpropagation algorithm. It expects that
+     * {@link #feedForwardBatch(double[], int, ActivationFunction)} was called before for the same batch.
+     *
+     * @param expectedOutputs row-major matrix of expected outputs, one sample per row.
+     * @param batchSize       number of samples in a batch.
+     */
+    void calculateDeltasBatch(double[] expectedOutputs, int batchSize);
+
+    /**
+     * Accumulates updates of weights and biases for the whole batch in a memory.
+     *
+     * @param eta       eta constant.
+     * @param batchSize number of samples in a batch.
+     */
+    void updateWeightsBiasesBatch(double eta, int batchSize);
+
+    /**
+     * Calculates Euclidean norm of all updates of weights and biases accumulated since the last
+     * {@link #resetUpdates()}. Divided by eta, it is the norm of the gradient of accumulated samples.
+     *
+     * @return norm of accumulated updates.
+     */
+    double updatesNorm();
+
+    /**
+     * Applies accumulated updates to weights and biases.
+     */
+    void applyUpdates();
+
+    /**
+     * Creates a worker backend which shares weights and biases with this backend, but has its own memory for
+     * everything else. Workers are valid until the next call of {@link #setup(int[])}.
+     *
+     * @return new worker backend.
+     * @throws UnsupportedOperationException if backend doesn't support workers.
+     */
+    Backend createWorker();
+
+    /**
+     * Adds updates accumulated in provided <code>worker</code> to updates of this backend.
+     *
+     * @param worker worker whose updates are added.
+     * @throws IllegalArgumentException      if <code>worker</code> is not compatible with this backend.
+     * @throws UnsupportedOperationException if backend doesn't support workers.
+     */
+    void mergeUpdates(Backend worker);
+
+}
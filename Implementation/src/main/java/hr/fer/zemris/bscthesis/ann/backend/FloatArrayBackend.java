@@ -0,0 +1,614 @@
+package hr.fer.zemris.bscthesis.ann.backend;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.afunction.Softmax;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Single precision version of {@link ArrayBackend}. Weights, biases and all matrices of the hidden layers are stored as
+ * flat arrays of floats in the same layout as in {@link ArrayBackend}, so they take half of the memory and half of the
+ * memory bandwidth. Inputs are converted to floats on entry.
+ * <br>
+ * Output layer is converted back to doubles after its weighted sums are calculated, so softmax, errors and deltas of
+ * the output layer are calculated in double precision with the same {@link Loss} as in other backends.
+ * <br>
+ * Optionally, backend keeps a <b>master copy</b> of weights and biases in double precision. Updates are then added to
+ * the master copy and weights are rounded to floats afterwards, so small updates are not lost to rounding of weights.
+ * Master copy doubles the memory of weights and biases, but not of anything used in feed forward.
+ *
+ * @author dbrcina
+ * @see ArrayBackend
+ */
+public class FloatArrayBackend implements Backend {
+
+    // Softmax has no state, so one instance is used for all output layers.
+    private static final Softmax SOFTMAX = new Softmax();
+
+    private final boolean masterCopy;
+
+    /* ------- ALL MATRICES USED IN TRAINING PROCESS ------ */
+    private int[] layers;
+    private float[][] weightsPerLayer;
+    private float[][] biasesPerLayer;
+    private double[][] masterWeightsPerLayer;
+    private double[][] masterBiasesPerLayer;
+    private float[][] outputsPerLayer;
+    private float[][] derivativesPerLayer;
+    private float[][] deltasPerLayer;
+    private float[][] weightsUpdatesPerLayer;
+    private float[][] biasesUpdatesPerLayer;
+    /* ---------------------------------------------------- */
+
+    /* ----- OUTPUT LAYER, KEPT IN DOUBLE PRECISION ------- */
+    private double[] outputs;
+    private double[] outputWeightedSums;
+    private double[] outputDeltas;
+    /* ---------------------------------------------------- */
+
+    /* ------ BATCH MATRICES, ONE SAMPLE PER EACH ROW ----- */
+    private int batchCapacity;
+    private float[][] batchOutputsPerLayer;
+    private float[][] batchDerivativesPerLayer;
+    private float[][] batchDeltasPerLayer;
+    private double[] batchOutputs;
+    private double[] batchOutputWeightedSums;
+    private double[] batchOutputDeltas;
+    /* ---------------------------------------------------- */
+
+    // If the loss doesn't need derivatives of the output layer, weighted sums of
+    // the output layer are left in their place and used for the error.
+    private Loss loss = Loss.MSE;
+
+    /* ---------- MEMORY ALLOCATION FOR MATRICES ---------- */
+
+    /**
+     * Constructor. Backend doesn't keep a master copy of weights and biases.
+     */
+    public FloatArrayBackend() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param masterCopy whether updates are applied to a double precision copy of weights and biases.
+     */
+    public FloatArrayBackend(boolean masterCopy) {
+        this.masterCopy = masterCopy;
+    }
+
+    // Worker shares weights, biases and the master copy with its parent.
+    private FloatArrayBackend(FloatArrayBackend parent) {
+        masterCopy = parent.masterCopy;
+        layers = parent.layers;
+        weightsPerLayer = parent.weightsPerLayer;
+        biasesPerLayer = parent.biasesPerLayer;
+        masterWeightsPerLayer = parent.masterWeightsPerLayer;
+        masterBiasesPerLayer = parent.masterBiasesPerLayer;
+        loss = parent.loss;
+        allocateWorkspace();
+    }
+
+    /**
+     * @return whether updates are applied to a double precision copy of weights and biases.
+     */
+    public boolean hasMasterCopy() {
+        return masterCopy;
+    }
+
+    @Override
+    public void setup(int[] layers) {
+        this.layers = layers.clone();
+        weightsPerLayer = new float[layers.length - 1][];
+        biasesPerLayer = new float[layers.length - 1][];
+        masterWeightsPerLayer = masterCopy ? new double[layers.length - 1][] : null;
+        masterBiasesPerLayer = masterCopy ? new double[layers.length - 1][] : null;
+        for (int k = 0; k < layers.length - 1; k++) {
+            weightsPerLayer[k] = new float[layers[k + 1] * layers[k]];
+            biasesPerLayer[k] = new float[layers[k + 1]];
+            if (masterCopy) {
+                masterWeightsPerLayer[k] = new double[layers[k + 1] * layers[k]];
+                masterBiasesPerLayer[k] = new double[layers[k + 1]];
+            }
+        }
+        allocateWorkspace();
+    }
+
+    @Override
+    public void setLoss(Loss loss) {
+        this.loss = loss;
+    }
+
+    private void allocateWorkspace() {
+        // Outputs of the output layer are stored only in double precision.
+        outputsPerLayer = new float[layers.length - 1][];
+        derivativesPerLayer = new float[layers.length - 1][];
+        deltasPerLayer = new float[layers.length - 1][];
+        weightsUpdatesPerLayer = new float[layers.length - 1][];
+        biasesUpdatesPerLayer = new float[layers.length - 1][];
+        for (int k = 0; k < layers.length - 1; k++) {
+            outputsPerLayer[k] = new float[layers[k]];
+            derivativesPerLayer[k] = new float[layers[k + 1]];
+            deltasPerLayer[k] = new float[layers[k + 1]];
+            weightsUpdatesPerLayer[k] = new float[layers[k + 1] * layers[k]];
+            biasesUpdatesPerLayer[k] = new float[layers[k + 1]];
+        }
+        int outputSize = layers[layers.length - 1];
+        outputs = new double[outputSize];
+        outputWeightedSums = new double[outputSize];
+        outputDeltas = new double[outputSize];
+        batchCapacity = 0;
+        batchOutputsPerLayer = new float[layers.length - 1][];
+        batchDerivativesPerLayer = new float[layers.length - 1][];
+        batchDeltasPerLayer = new float[layers.length - 1][];
+    }
+
+    private void ensureBatchCapacity(int batchSize) {
+        if (batchSize <= batchCapacity) return;
+        batchCapacity = batchSize;
+        for (int k = 0; k < layers.length - 1; k++) {
+            batchOutputsPerLayer[k] = new float[batchSize * layers[k]];
+            batchDerivativesPerLayer[k] = new float[batchSize * layers[k + 1]];
+            batchDeltasPerLayer[k] = new float[batchSize * layers[k + 1]];
+        }
+        int outputSize = layers[layers.length - 1];
+        batchOutputs = new double[batchSize * outputSize];
+        batchOutputWeightedSums = new double[batchSize * outputSize];
+        batchOutputDeltas = new double[batchSize * outputSize];
+    }
+    /* ---------------------------------------------------- */
+
+    /* -------------- XAVIER INITIALIZATION --------------- */
+    @Override
+    public void randomize(Random rand) {
+        // Same order of random numbers as in ArrayBackend, so all backends
+        // start from the same weights for the same seed.
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    double weight = rand.nextGaussian();
+                    weight *= Math.sqrt(2.0 / cols);
+                    setWeight(k, i * cols + j, weight);
+                }
+                double bias = rand.nextGaussian();
+                bias *= Math.sqrt(2.0 / cols);
+                setBias(k, i, bias);
+            }
+        }
+    }
+
+    private void setWeight(int k, int index, double weight) {
+        weightsPerLayer[k][index] = (float) weight;
+        if (masterCopy) {
+            masterWeightsPerLayer[k][index] = weight;
+        }
+    }
+
+    private void setBias(int k, int index, double bias) {
+        biasesPerLayer[k][index] = (float) bias;
+        if (masterCopy) {
+            masterBiasesPerLayer[k][index] = bias;
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------- COPY WEIGHTS AND BIASES -------------- */
+    @Override
+    public void getParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        for (int k = 0; k < this.weightsPerLayer.length; k++) {
+            if (masterCopy) {
+                System.arraycopy(masterWeightsPerLayer[k], 0, weightsPerLayer[k], 0, masterWeightsPerLayer[k].length);
+                System.arraycopy(masterBiasesPerLayer[k], 0, biasesPerLayer[k], 0, masterBiasesPerLayer[k].length);
+            } else {
+                toDouble(this.weightsPerLayer[k], weightsPerLayer[k], 0, this.weightsPerLayer[k].length);
+                toDouble(this.biasesPerLayer[k], biasesPerLayer[k], 0, this.biasesPerLayer[k].length);
+            }
+        }
+    }
+
+    @Override
+    public void setParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        for (int k = 0; k < this.weightsPerLayer.length; k++) {
+            for (int i = 0; i < this.weightsPerLayer[k].length; i++) {
+                setWeight(k, i, weightsPerLayer[k][i]);
+            }
+            for (int i = 0; i < this.biasesPerLayer[k].length; i++) {
+                setBias(k, i, biasesPerLayer[k][i]);
+            }
+        }
+    }
+
+    @Override
+    public double parametersNorm() {
+        return norm(weightsPerLayer, biasesPerLayer);
+    }
+    /* ---------------------------------------------------- */
+
+    @Override
+    public double[] feedForward(double[] inputs, ActivationFunction aFunction) {
+        toFloat(inputs, outputsPerLayer[0], 0, inputs.length);
+        int last = weightsPerLayer.length - 1;
+        for (int k = 0; k <= last; k++) {
+            float[] weightsLayerK = weightsPerLayer[k];
+            float[] biasesLayerK = biasesPerLayer[k];
+            float[] outputsLayerK = outputsPerLayer[k];
+            float[] derivativesLayerK = derivativesPerLayer[k];
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            // Weighted sums are stored into the derivatives, which are calculated from them later.
+            for (int i = 0, offset = 0; i < rows; i++, offset += cols) {
+                float weightedSum = 0f;
+                for (int j = 0; j < cols; j++) {
+                    weightedSum += weightsLayerK[offset + j] * outputsLayerK[j];
+                }
+                derivativesLayerK[i] = weightedSum + biasesLayerK[i];
+            }
+            // Differentiate hidden layers from output layer!!!
+            if (k != last) {
+                aFunction.apply(derivativesLayerK, outputsPerLayer[k + 1], 0, rows);
+                aFunction.derivative(derivativesLayerK, outputsPerLayer[k + 1], derivativesLayerK, 0, rows);
+            }
+        }
+        toDouble(derivativesPerLayer[last], outputWeightedSums, 0, outputWeightedSums.length);
+        SOFTMAX.apply(outputWeightedSums, outputs, 0, outputs.length);
+        if (loss.needsDerivatives()) {
+            SOFTMAX.derivative(outputWeightedSums, outputs, outputWeightedSums, 0, outputs.length);
+        }
+        return outputs;
+    }
+
+    @Override
+    public double error(double[] expectedOutputs) {
+        return loss.error(expectedOutputs, outputs, outputWeightedSums, 0, outputs.length);
+    }
+
+    /* -------------- RESETS UPDATE MATRICES -------------- */
+    @Override
+    public void resetUpdates() {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            Arrays.fill(weightsUpdatesPerLayer[k], 0f);
+            Arrays.fill(biasesUpdatesPerLayer[k], 0f);
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* --- CALCULATE DELTAS - BACKPROPAGATION ALGORITHM --- */
+    @Override
+    public void calculateDeltas(double[] expectedOutputs) {
+        // Calculate deltas for output layer.
+        int last = deltasPerLayer.length - 1;
+        loss.outputDeltas(expectedOutputs, outputs, outputWeightedSums, outputDeltas, 0, outputDeltas.length);
+        toFloat(outputDeltas, deltasPerLayer[last], 0, outputDeltas.length);
+        // Calculate deltas for hidden layers.
+        for (int k = last - 1; k >= 0; k--) {
+            float[] derivativesLayerK = derivativesPerLayer[k];
+            float[] weightsLayerK1 = weightsPerLayer[k + 1];
+            float[] biasesLayerK1 = biasesPerLayer[k + 1];
+            float[] deltasLayerK1 = deltasPerLayer[k + 1];
+            float[] deltasLayerK = deltasPerLayer[k];
+            int rows = layers[k + 2];
+            int cols = layers[k + 1];
+            // Biases contribution is the same for every neuron.
+            float biasesSum = 0f;
+            for (int j = 0; j < rows; j++) {
+                biasesSum += biasesLayerK1[j] * deltasLayerK1[j];
+            }
+            // Transposed product is accumulated row by row, so weights are read sequentially.
+            Arrays.fill(deltasLayerK, 0f);
+            for (int j = 0, offset = 0; j < rows; j++, offset += cols) {
+                float delta = deltasLayerK1[j];
+                for (int i = 0; i < cols; i++) {
+                    deltasLayerK[i] += weightsLayerK1[offset + i] * delta;
+                }
+            }
+            // Apply derivatives.
+            for (int i = 0; i < cols; i++) {
+                deltasLayerK[i] = derivativesLayerK[i] * (deltasLayerK[i] + biasesSum);
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---- UPDATE WEIGHTS AND BIASES AFTER ONE SAMPLE ---- */
+    @Override
+    public void updateWeightsBiases(double eta) {
+        float etaF = (float) eta;
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            float[] updatesWeightsLayerK = weightsUpdatesPerLayer[k];
+            float[] updatesBiasesLayerK = biasesUpdatesPerLayer[k];
+            float[] outputsLayerK = outputsPerLayer[k];
+            float[] deltasLayerK1 = deltasPerLayer[k];
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            for (int i = 0, offset = 0; i < rows; i++, offset += cols) {
+                float etaDelta = etaF * deltasLayerK1[i];
+                for (int j = 0; j < cols; j++) {
+                    updatesWeightsLayerK[offset + j] += etaDelta * outputsLayerK[j];
+                }
+                updatesBiasesLayerK[i] += etaDelta;
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------- FEED FORWARD WHOLE BATCH ------------- */
+    @Override
+    public double[] feedForwardBatch(double[] inputs, int batchSize, ActivationFunction aFunction) {
+        ensureBatchCapacity(batchSize);
+        toFloat(inputs, batchOutputsPerLayer[0], 0, batchSize * layers[0]);
+        int last = weightsPerLayer.length - 1;
+        for (int k = 0; k <= last; k++) {
+            int rows = layers[k + 1];
+            int cols = layers[k];
+            float[] derivativesLayerK = batchDerivativesPerLayer[k];
+            // Z = O * W^T + b, stored into the derivatives
+            multiplyTransposed(batchOutputsPerLayer[k], weightsPerLayer[k], derivativesLayerK, batchSize, cols, rows);
+            addRowVector(derivativesLayerK, biasesPerLayer[k], batchSize, rows);
+            // Differentiate hidden layers from output layer!!!
+            if (k != last) {
+                float[] outputsLayerK1 = batchOutputsPerLayer[k + 1];
+                aFunction.apply(derivativesLayerK, outputsLayerK1, 0, batchSize * rows);
+                aFunction.derivative(derivativesLayerK, outputsLayerK1, derivativesLayerK, 0, batchSize * rows);
+            }
+        }
+        // Softmax is calculated for each sample separately.
+        int rows = layers[last + 1];
+        toDouble(batchDerivativesPerLayer[last], batchOutputWeightedSums, 0, batchSize * rows);
+        for (int offset = 0; offset < batchSize * rows; offset += rows) {
+            SOFTMAX.apply(batchOutputWeightedSums, batchOutputs, offset, rows);
+            if (loss.needsDerivatives()) {
+                SOFTMAX.derivative(batchOutputWeightedSums, batchOutputs, batchOutputWeightedSums, offset, rows);
+            }
+        }
+        return batchOutputs;
+    }
+
+    @Override
+    public double errorBatch(double[] expectedOutputs, int batchSize) {
+        int rows = layers[layers.length - 1];
+        double error = 0.0;
+        for (int offset = 0; offset < batchSize * rows; offset += rows) {
+            error += loss.error(expectedOutputs, batchOutputs, batchOutputWeightedSums, offset, rows);
+        }
+        return error;
+    }
+    /* ---------------------------------------------------- */
+
+    /* - CALCULATE DELTAS FOR WHOLE BATCH - BACKPROPAGATION */
+    @Override
+    public void calculateDeltasBatch(double[] expectedOutputs, int batchSize) {
+        // Calculate deltas for output layer.
+        int last = batchDeltasPerLayer.length - 1;
+        int outputSize = layers[last + 1];
+        loss.outputDeltas(expectedOutputs, batchOutputs, batchOutputWeightedSums, batchOutputDeltas, 0,
+                batchSize * outputSize);
+        toFloat(batchOutputDeltas, batchDeltasPerLayer[last], 0, batchSize * outputSize);
+        // Calculate deltas for hidden layers.
+        for (int k = last - 1; k >= 0; k--) {
+            float[] derivativesLayerK = batchDerivativesPerLayer[k];
+            float[] biasesLayerK1 = biasesPerLayer[k + 1];
+            float[] deltasLayerK1 = batchDeltasPerLayer[k + 1];
+            float[] deltasLayerK = batchDeltasPerLayer[k];
+            int rows = layers[k + 2];
+            int cols = layers[k + 1];
+            // D(k) = D(k + 1) * W(k + 1)
+            multiply(deltasLayerK1, weightsPerLayer[k + 1], deltasLayerK, batchSize, rows, cols);
+            for (int s = 0; s < batchSize; s++) {
+                // Biases contribution is the same for every neuron of one sample.
+                float biasesSum = 0f;
+                for (int j = 0, offset = s * rows; j < rows; j++) {
+                    biasesSum += biasesLayerK1[j] * deltasLayerK1[offset + j];
+                }
+                // Apply derivatives.
+                for (int i = s * cols, end = i + cols; i < end; i++) {
+                    deltasLayerK[i] = derivativesLayerK[i] * (deltasLayerK[i] + biasesSum);
+                }
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* --- UPDATE WEIGHTS AND BIASES AFTER WHOLE BATCH ---- */
+    @Override
+    public void updateWeightsBiasesBatch(double eta, int batchSize) {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            // dW += eta * D^T * O
+            multiplyTransposedAdd(batchDeltasPerLayer[k], batchOutputsPerLayer[k], weightsUpdatesPerLayer[k],
+                    biasesUpdatesPerLayer[k], (float) eta, batchSize, layers[k + 1], layers[k]);
+        }
+    }
+
+    @Override
+    public double updatesNorm() {
+        return norm(weightsUpdatesPerLayer, biasesUpdatesPerLayer);
+    }
+
+    // Squares are summed in double precision.
+    private static double norm(float[][] weightsPerLayer, float[][] biasesPerLayer) {
+        double sum = 0.0;
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            for (float weight : weightsPerLayer[k]) {
+                sum += (double) weight * weight;
+            }
+            for (float bias : biasesPerLayer[k]) {
+                sum += (double) bias * bias;
+            }
+        }
+        return Math.sqrt(sum);
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------------ MATRIX KERNELS ------------------ */
+    // Same kernels as in ArrayBackend, only on floats.
+
+    // c(n x m) = a(n x l) * b(m x l)^T
+    private static void multiplyTransposed(float[] a, float[] b, float[] c, int n, int l, int m) {
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * l, a1 = a0 + l, a2 = a1 + l, a3 = a2 + l;
+            int c0 = s * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m;
+            for (int i = 0, bOffset = 0; i < m; i++, bOffset += l) {
+                float sum0 = 0f, sum1 = 0f, sum2 = 0f, sum3 = 0f;
+                for (int j = 0; j < l; j++) {
+                    float weight = b[bOffset + j];
+                    sum0 += weight * a[a0 + j];
+                    sum1 += weight * a[a1 + j];
+                    sum2 += weight * a[a2 + j];
+                    sum3 += weight * a[a3 + j];
+                }
+                c[c0 + i] = sum0;
+                c[c1 + i] = sum1;
+                c[c2 + i] = sum2;
+                c[c3 + i] = sum3;
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * l;
+            int cOffset = s * m;
+            for (int i = 0, bOffset = 0; i < m; i++, bOffset += l) {
+                float sum = 0f;
+                for (int j = 0; j < l; j++) {
+                    sum += b[bOffset + j] * a[aOffset + j];
+                }
+                c[cOffset + i] = sum;
+            }
+        }
+    }
+
+    // c(n x m) = a(n x l) * b(l x m)
+    private static void multiply(float[] a, float[] b, float[] c, int n, int l, int m) {
+        Arrays.fill(c, 0, n * m, 0f);
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * l, a1 = a0 + l, a2 = a1 + l, a3 = a2 + l;
+            int c0 = s * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m;
+            for (int j = 0, bOffset = 0; j < l; j++, bOffset += m) {
+                float value0 = a[a0 + j], value1 = a[a1 + j], value2 = a[a2 + j], value3 = a[a3 + j];
+                for (int i = 0; i < m; i++) {
+                    float weight = b[bOffset + i];
+                    c[c0 + i] += weight * value0;
+                    c[c1 + i] += weight * value1;
+                    c[c2 + i] += weight * value2;
+                    c[c3 + i] += weight * value3;
+                }
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * l;
+            int cOffset = s * m;
+            for (int j = 0, bOffset = 0; j < l; j++, bOffset += m) {
+                float value = a[aOffset + j];
+                for (int i = 0; i < m; i++) {
+                    c[cOffset + i] += b[bOffset + i] * value;
+                }
+            }
+        }
+    }
+
+    // c(m x l) += alpha * a(n x m)^T * b(n x l) and d(m) += alpha * column sums of a
+    private static void multiplyTransposedAdd(float[] a, float[] b, float[] c, float[] d,
+                                              float alpha, int n, int m, int l) {
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * m, a1 = a0 + m, a2 = a1 + m, a3 = a2 + m;
+            int b0 = s * l, b1 = b0 + l, b2 = b1 + l, b3 = b2 + l;
+            for (int i = 0, cOffset = 0; i < m; i++, cOffset += l) {
+                float value0 = alpha * a[a0 + i];
+                float value1 = alpha * a[a1 + i];
+                float value2 = alpha * a[a2 + i];
+                float value3 = alpha * a[a3 + i];
+                for (int j = 0; j < l; j++) {
+                    c[cOffset + j] = c[cOffset + j] + value0 * b[b0 + j] + value1 * b[b1 + j]
+                            + value2 * b[b2 + j] + value3 * b[b3 + j];
+                }
+                d[i] = d[i] + value0 + value1 + value2 + value3;
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * m;
+            int bOffset = s * l;
+            for (int i = 0, cOffset = 0; i < m; i++, cOffset += l) {
+                float value = alpha * a[aOffset + i];
+                for (int j = 0; j < l; j++) {
+                    c[cOffset + j] += value * b[bOffset + j];
+                }
+                d[i] += value;
+            }
+        }
+    }
+
+    private static void addRowVector(float[] a, float[] v, int n, int m) {
+        for (int s = 0, offset = 0; s < n; s++, offset += m) {
+            for (int i = 0; i < m; i++) {
+                a[offset + i] += v[i];
+            }
+        }
+    }
+
+    private static void toFloat(double[] source, float[] destination, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            destination[i] = (float) source[i];
+        }
+    }
+
+    private static void toDouble(float[] source, double[] destination, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            destination[i] = source[i];
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---- APPLY UPDATES AFTER A BATCH, MERGE WORKERS ---- */
+    @Override
+    public void applyUpdates() {
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            if (masterCopy) {
+                add(masterWeightsPerLayer[k], weightsUpdatesPerLayer[k], weightsPerLayer[k]);
+                add(masterBiasesPerLayer[k], biasesUpdatesPerLayer[k], biasesPerLayer[k]);
+            } else {
+                add(weightsPerLayer[k], weightsUpdatesPerLayer[k]);
+                add(biasesPerLayer[k], biasesUpdatesPerLayer[k]);
+            }
+        }
+    }
+
+    @Override
+    public Backend createWorker() {
+        return new FloatArrayBackend(this);
+    }
+
+    @Override
+    public void mergeUpdates(Backend worker) {
+        if (!(worker instanceof FloatArrayBackend)
+                || ((FloatArrayBackend) worker).weightsPerLayer != weightsPerLayer) {
+            throw new IllegalArgumentException(
+                    "FloatArrayBackend::mergeUpdates(Backend) worker doesn't share weights with this backend!");
+        }
+        FloatArrayBackend other = (FloatArrayBackend) worker;
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            add(weightsUpdatesPerLayer[k], other.weightsUpdatesPerLayer[k]);
+            add(biasesUpdatesPerLayer[k], other.biasesUpdatesPerLayer[k]);
+        }
+    }
+
+    private static void add(float[] destination, float[] source) {
+        for (int i = 0; i < destination.length; i++) {
+            destination[i] += source[i];
+        }
+    }
+
+    // Adds source to the master copy and rounds the result into destination.
+    private static void add(double[] master, float[] source, float[] destination) {
+        for (int i = 0; i < master.length; i++) {
+            master[i] += source[i];
+            destination[i] = (float) master[i];
+        }
+    }
+    /* ---------------------------------------------------- */
+
+}
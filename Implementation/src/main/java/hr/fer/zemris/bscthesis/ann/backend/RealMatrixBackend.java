@@ -0,0 +1,385 @@
+package hr.fer.zemris.bscthesis.ann.backend;
+
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.afunction.Softmax;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * An implementation of {@link Backend} which stores every matrix as commons-math3 {@link RealMatrix}. It is kept as
+ * the reference implementation against which other backends can be compared.
+ *
+ * @author dbrcina
+ */
+public class RealMatrixBackend implements Backend {
+
+    /* ------- ALL MATRICES USED IN TRAINING PROCESS ------ */
+    private RealMatrix[] weightsPerLayer;
+    private RealMatrix[] biasesPerLayer;
+    private RealMatrix[] outputsPerLayer;
+    private RealMatrix[] derivativesPerLayer;
+    private RealMatrix[] deltasPerLayer;
+    // Next two arrays of matrices are needed for updating certain
+    // weights/biases in a memory before the real updates take place.
+    // This is very necessary!!!
+    private RealMatrix[] weightsUpdatesPerLayer;
+    private RealMatrix[] biasesUpdatesPerLayer;
+    /* ---------------------------------------------------- */
+
+    /* ------ BATCH MATRICES, ONE SAMPLE PER EACH ROW ----- */
+    private RealMatrix[] batchOutputsPerLayer;
+    private RealMatrix[] batchDerivativesPerLayer;
+    private RealMatrix[] batchDeltasPerLayer;
+    /* ---------------------------------------------------- */
+
+    // Weighted sums of the output layer, needed by some losses.
+    private Loss loss = Loss.MSE;
+    private double[] outputWeightedSums;
+    private double[] batchOutputWeightedSums;
+
+    /* ---------- MEMORY ALLOCATION FOR MATRICES ---------- */
+    @Override
+    public void setup(int[] layers) {
+        weightsPerLayer = new RealMatrix[layers.length - 1];
+        biasesPerLayer = new RealMatrix[layers.length - 1];
+        outputsPerLayer = new RealMatrix[layers.length];
+        derivativesPerLayer = new RealMatrix[layers.length - 1];
+        deltasPerLayer = new RealMatrix[layers.length - 1];
+        weightsUpdatesPerLayer = new RealMatrix[layers.length - 1];
+        biasesUpdatesPerLayer = new RealMatrix[layers.length - 1];
+        for (int k = 0; k < layers.length; k++) {
+            if (k != layers.length - 1) {
+                weightsPerLayer[k] = MatrixUtils.createRealMatrix(layers[k + 1], layers[k]);
+                biasesPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
+                derivativesPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
+                deltasPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
+                weightsUpdatesPerLayer[k] = MatrixUtils.createRealMatrix(layers[k + 1], layers[k]);
+                biasesUpdatesPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k + 1]]);
+            }
+            outputsPerLayer[k] = MatrixUtils.createColumnRealMatrix(new double[layers[k]]);
+        }
+        batchOutputsPerLayer = new RealMatrix[layers.length];
+        batchDerivativesPerLayer = new RealMatrix[layers.length - 1];
+        batchDeltasPerLayer = new RealMatrix[layers.length - 1];
+    }
+
+    @Override
+    public void setLoss(Loss loss) {
+        this.loss = loss;
+    }
+    /* ---------------------------------------------------- */
+
+    /* -------------- XAVIER INITIALIZATION --------------- */
+    @Override
+    public void randomize(Random rand) {
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            RealMatrix weightsLayerK = weightsPerLayer[k];
+            RealMatrix biasesLayerK = biasesPerLayer[k];
+            // Here we take row dimension because weights and biases matrices
+            // have the same row dimension
+            for (int i = 0; i < weightsLayerK.getRowDimension(); i++) {
+                for (int j = 0; j < weightsLayerK.getColumnDimension(); j++) {
+                    double weight = rand.nextGaussian();
+                    weight *= Math.sqrt(2.0 / weightsLayerK.getColumnDimension());
+                    weightsLayerK.setEntry(i, j, weight);
+                }
+                double bias = rand.nextGaussian();
+                bias *= Math.sqrt(2.0 / weightsLayerK.getColumnDimension());
+                // Biases matrices are column matrices, so we use 0 as column index
+                biasesLayerK.setEntry(i, 0, bias);
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------- COPY WEIGHTS AND BIASES -------------- */
+    @Override
+    public void getParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        for (int k = 0; k < this.weightsPerLayer.length; k++) {
+            RealMatrix weightsLayerK = this.weightsPerLayer[k];
+            int cols = weightsLayerK.getColumnDimension();
+            for (int i = 0; i < weightsLayerK.getRowDimension(); i++) {
+                System.arraycopy(weightsLayerK.getRow(i), 0, weightsPerLayer[k], i * cols, cols);
+            }
+            System.arraycopy(this.biasesPerLayer[k].getColumn(0), 0, biasesPerLayer[k], 0, biasesPerLayer[k].length);
+        }
+    }
+
+    @Override
+    public void setParameters(double[][] weightsPerLayer, double[][] biasesPerLayer) {
+        for (int k = 0; k < this.weightsPerLayer.length; k++) {
+            RealMatrix weightsLayerK = this.weightsPerLayer[k];
+            int cols = weightsLayerK.getColumnDimension();
+            for (int i = 0; i < weightsLayerK.getRowDimension(); i++) {
+                weightsLayerK.setRow(i, Arrays.copyOfRange(weightsPerLayer[k], i * cols, (i + 1) * cols));
+            }
+            this.biasesPerLayer[k].setColumn(0, biasesPerLayer[k]);
+        }
+    }
+
+    @Override
+    public double parametersNorm() {
+        double sum = 0.0;
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            sum += Math.pow(weightsPerLayer[k].getFrobeniusNorm(), 2);
+            sum += Math.pow(biasesPerLayer[k].getFrobeniusNorm(), 2);
+        }
+        return Math.sqrt(sum);
+    }
+    /* ---------------------------------------------------- */
+
+    @Override
+    public double[] feedForward(double[] inputs, ActivationFunction aFunction) {
+        // Outputs per layer are in column matrix.
+        outputsPerLayer[0].setColumn(0, inputs);
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            RealMatrix weightsLayerK = weightsPerLayer[k];
+            RealMatrix biasesLayerK = biasesPerLayer[k];
+            RealMatrix outputsLayerK = outputsPerLayer[k];
+            // Column matrix.
+            RealMatrix outputsLayerK1 = (weightsLayerK.multiply(outputsLayerK)).add(biasesLayerK);
+            double[] weightedSums = outputsLayerK1.getColumn(0);
+            boolean isOutputLayer = k == weightsPerLayer.length - 1;
+            if (isOutputLayer) {
+                outputWeightedSums = weightedSums;
+            }
+            ActivationFunction outputAFunction = null;
+            for (int i = 0; i < weightedSums.length; i++) {
+                double weightedSum = weightedSums[i];
+                if (isOutputLayer) {
+                    outputAFunction = new Softmax(weightedSums);
+                }
+                // Differentiate hidden layers from output layer!!!
+                outputsPerLayer[k + 1].setEntry(i, 0, isOutputLayer ?
+                        outputAFunction.value(weightedSum) : aFunction.value(weightedSum));
+                derivativesPerLayer[k].setEntry(i, 0, isOutputLayer ?
+                        outputAFunction.derivativeValue(weightedSum) : aFunction.derivativeValue(weightedSum));
+            }
+        }
+        return outputsPerLayer[outputsPerLayer.length - 1].getColumn(0);
+    }
+
+    @Override
+    public double error(double[] expectedOutputs) {
+        double[] actual = outputsPerLayer[outputsPerLayer.length - 1].getColumn(0);
+        return loss.error(expectedOutputs, actual, outputWeightedSums, 0, actual.length);
+    }
+
+    /* -------------- RESETS UPDATE MATRICES -------------- */
+    @Override
+    public void resetUpdates() {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            weightsUpdatesPerLayer[k] = weightsPerLayer[k].copy();
+            biasesUpdatesPerLayer[k] = biasesPerLayer[k].copy();
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* --- CALCULATE DELTAS - BACKPROPAGATION ALGORITHM --- */
+    @Override
+    public void calculateDeltas(double[] expectedOutputs) {
+        // Calculate deltas for output layer.
+        double[] actual = outputsPerLayer[outputsPerLayer.length - 1].getColumn(0);
+        double[] derivativesOutputLayer = derivativesPerLayer[deltasPerLayer.length - 1].getColumn(0);
+        double[] deltasOutputLayer = new double[actual.length];
+        loss.outputDeltas(expectedOutputs, actual, derivativesOutputLayer, deltasOutputLayer, 0, actual.length);
+        deltasPerLayer[deltasPerLayer.length - 1].setColumn(0, deltasOutputLayer);
+        // Calculate deltas for hidden layers.
+        for (int k = deltasPerLayer.length - 2; k >= 0; k--) {
+            RealVector derivativesLayerK = derivativesPerLayer[k].getColumnVector(0);
+            RealMatrix weightsLayerK1 = weightsPerLayer[k + 1];
+            RealVector biasesLayerK1 = biasesPerLayer[k + 1].getColumnVector(0);
+            RealMatrix deltasLayerK1 = deltasPerLayer[k + 1];
+            RealMatrix deltasLayerK = deltasPerLayer[k];
+            double[] weightedSums = (weightsLayerK1.transpose()).multiply(deltasLayerK1).getColumn(0);
+            // Add biases.
+            for (int i = 0; i < weightedSums.length; i++) {
+                for (int j = 0; j < biasesLayerK1.getDimension(); j++) {
+                    weightedSums[i] += biasesLayerK1.getEntry(j) * deltasLayerK1.getEntry(j, 0);
+                }
+            }
+            // Apply derivatives.
+            for (int i = 0; i < deltasLayerK.getRowDimension(); i++) {
+                deltasLayerK.setEntry(i, 0, derivativesLayerK.getEntry(i) * weightedSums[i]);
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---- UPDATE WEIGHTS AND BIASES AFTER ONE SAMPLE ---- */
+    @Override
+    public void updateWeightsBiases(double eta) {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            RealMatrix updatesWeightsLayerK = weightsUpdatesPerLayer[k];
+            RealMatrix updatesBiasesLayerK = biasesUpdatesPerLayer[k];
+            RealVector outputsLayerK = outputsPerLayer[k].getColumnVector(0);
+            RealVector deltasLayerK1 = deltasPerLayer[k].getColumnVector(0);
+            for (int i = 0; i < updatesWeightsLayerK.getRowDimension(); i++) {
+                for (int j = 0; j < updatesWeightsLayerK.getColumnDimension(); j++) {
+                    double weight = updatesWeightsLayerK.getEntry(i, j);
+                    weight += eta * outputsLayerK.getEntry(j) * deltasLayerK1.getEntry(i);
+                    updatesWeightsLayerK.setEntry(i, j, weight);
+                }
+                double bias = updatesBiasesLayerK.getEntry(i, 0);
+                bias += eta * deltasLayerK1.getEntry(i);
+                updatesBiasesLayerK.setEntry(i, 0, bias);
+            }
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------- FEED FORWARD WHOLE BATCH ------------- */
+    @Override
+    public double[] feedForwardBatch(double[] inputs, int batchSize, ActivationFunction aFunction) {
+        int inputSize = weightsPerLayer[0].getColumnDimension();
+        RealMatrix inputsMatrix = new Array2DRowRealMatrix(batchSize, inputSize);
+        for (int s = 0; s < batchSize; s++) {
+            for (int j = 0; j < inputSize; j++) {
+                inputsMatrix.setEntry(s, j, inputs[s * inputSize + j]);
+            }
+        }
+        batchOutputsPerLayer[0] = inputsMatrix;
+        batchOutputWeightedSums = new double[batchSize * weightsPerLayer[weightsPerLayer.length - 1].getRowDimension()];
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            RealMatrix weightsLayerK = weightsPerLayer[k];
+            RealVector biasesLayerK = biasesPerLayer[k].getColumnVector(0);
+            // Every row is one sample.
+            RealMatrix weightedSums = batchOutputsPerLayer[k].multiply(weightsLayerK.transpose());
+            RealMatrix outputsLayerK1 = weightedSums.createMatrix(batchSize, weightsLayerK.getRowDimension());
+            RealMatrix derivativesLayerK = weightedSums.createMatrix(batchSize, weightsLayerK.getRowDimension());
+            boolean isOutputLayer = k == weightsPerLayer.length - 1;
+            for (int s = 0; s < batchSize; s++) {
+                RealVector weightedSumsS = weightedSums.getRowVector(s).add(biasesLayerK);
+                if (isOutputLayer) {
+                    System.arraycopy(weightedSumsS.toArray(), 0, batchOutputWeightedSums,
+                            s * weightedSumsS.getDimension(), weightedSumsS.getDimension());
+                }
+                // Differentiate hidden layers from output layer!!!
+                ActivationFunction f = isOutputLayer ? new Softmax(weightedSumsS.toArray()) : aFunction;
+                for (int i = 0; i < weightedSumsS.getDimension(); i++) {
+                    double weightedSum = weightedSumsS.getEntry(i);
+                    outputsLayerK1.setEntry(s, i, f.value(weightedSum));
+                    derivativesLayerK.setEntry(s, i, f.derivativeValue(weightedSum));
+                }
+            }
+            batchOutputsPerLayer[k + 1] = outputsLayerK1;
+            batchDerivativesPerLayer[k] = derivativesLayerK;
+        }
+        RealMatrix outputs = batchOutputsPerLayer[batchOutputsPerLayer.length - 1];
+        double[] result = new double[batchSize * outputs.getColumnDimension()];
+        for (int s = 0; s < batchSize; s++) {
+            System.arraycopy(outputs.getRow(s), 0, result, s * outputs.getColumnDimension(),
+                    outputs.getColumnDimension());
+        }
+        return result;
+    }
+
+    @Override
+    public double errorBatch(double[] expectedOutputs, int batchSize) {
+        RealMatrix outputs = batchOutputsPerLayer[batchOutputsPerLayer.length - 1];
+        int cols = outputs.getColumnDimension();
+        double error = 0.0;
+        for (int s = 0; s < batchSize; s++) {
+            error += loss.error(Arrays.copyOfRange(expectedOutputs, s * cols, (s + 1) * cols), outputs.getRow(s),
+                    Arrays.copyOfRange(batchOutputWeightedSums, s * cols, (s + 1) * cols), 0, cols);
+        }
+        return error;
+    }
+    /* ---------------------------------------------------- */
+
+    /* - CALCULATE DELTAS FOR WHOLE BATCH - BACKPROPAGATION */
+    @Override
+    public void calculateDeltasBatch(double[] expectedOutputs, int batchSize) {
+        // Calculate deltas for output layer.
+        int last = batchDeltasPerLayer.length - 1;
+        RealMatrix actual = batchOutputsPerLayer[last + 1];
+        RealMatrix derivativesOutputLayer = batchDerivativesPerLayer[last];
+        RealMatrix deltasOutputLayer = actual.createMatrix(batchSize, actual.getColumnDimension());
+        int cols = actual.getColumnDimension();
+        for (int s = 0; s < batchSize; s++) {
+            double[] deltas = new double[cols];
+            loss.outputDeltas(Arrays.copyOfRange(expectedOutputs, s * cols, (s + 1) * cols),
+                    actual.getRow(s), derivativesOutputLayer.getRow(s), deltas, 0, cols);
+            deltasOutputLayer.setRow(s, deltas);
+        }
+        batchDeltasPerLayer[last] = deltasOutputLayer;
+        // Calculate deltas for hidden layers.
+        for (int k = last - 1; k >= 0; k--) {
+            RealMatrix derivativesLayerK = batchDerivativesPerLayer[k];
+            RealMatrix deltasLayerK1 = batchDeltasPerLayer[k + 1];
+            RealMatrix weightedSums = deltasLayerK1.multiply(weightsPerLayer[k + 1]);
+            // Add biases.
+            RealVector biasesSums = deltasLayerK1.operate(biasesPerLayer[k + 1].getColumnVector(0));
+            // Apply derivatives.
+            RealMatrix deltasLayerK = weightedSums.createMatrix(batchSize, weightedSums.getColumnDimension());
+            for (int s = 0; s < batchSize; s++) {
+                for (int i = 0; i < weightedSums.getColumnDimension(); i++) {
+                    double weightedSum = weightedSums.getEntry(s, i) + biasesSums.getEntry(s);
+                    deltasLayerK.setEntry(s, i, derivativesLayerK.getEntry(s, i) * weightedSum);
+                }
+            }
+            batchDeltasPerLayer[k] = deltasLayerK;
+        }
+    }
+    /* ---------------------------------------------------- */
+
+    /* --- UPDATE WEIGHTS AND BIASES AFTER WHOLE BATCH ---- */
+    @Override
+    public void updateWeightsBiasesBatch(double eta, int batchSize) {
+        for (int k = 0; k < weightsUpdatesPerLayer.length; k++) {
+            RealMatrix deltasLayerK1 = batchDeltasPerLayer[k];
+            RealMatrix weightsGradient = deltasLayerK1.transpose().multiply(batchOutputsPerLayer[k]);
+            weightsUpdatesPerLayer[k] = weightsUpdatesPerLayer[k].add(weightsGradient.scalarMultiply(eta));
+            for (int i = 0; i < deltasLayerK1.getColumnDimension(); i++) {
+                double bias = biasesUpdatesPerLayer[k].getEntry(i, 0);
+                for (int s = 0; s < batchSize; s++) {
+                    bias += eta * deltasLayerK1.getEntry(s, i);
+                }
+                biasesUpdatesPerLayer[k].setEntry(i, 0, bias);
+            }
+        }
+    }
+
+    @Override
+    public double updatesNorm() {
+        // Updates matrices hold already updated weights and biases.
+        double sum = 0.0;
+        for (int k = 0; k < weightsPerLayer.length; k++) {
+            sum += Math.pow(weightsUpdatesPerLayer[k].subtract(weightsPerLayer[k]).getFrobeniusNorm(), 2);
+            sum += Math.pow(biasesUpdatesPerLayer[k].subtract(biasesPerLayer[k]).getFrobeniusNorm(), 2);
+        }
+        return Math.sqrt(sum);
+    }
+    /* ---------------------------------------------------- */
+
+    /* ------------ APPLY UPDATES AFTER A BATCH ----------- */
+    @Override
+    public void applyUpdates() {
+        System.arraycopy(
+                weightsUpdatesPerLayer, 0, weightsPerLayer, 0, weightsUpdatesPerLayer.length);
+        System.arraycopy(
+                biasesUpdatesPerLayer, 0, biasesPerLayer, 0, biasesUpdatesPerLayer.length);
+    }
+    /* ---------------------------------------------------- */
+
+    /* ---------- WORKERS ARE NOT SUPPORTED HERE ---------- */
+    @Override
+    public Backend createWorker() {
+        throw new UnsupportedOperationException(
+                "RealMatrixBackend::createWorker() reference backend doesn't support parallel training.");
+    }
+
+    @Override
+    public void mergeUpdates(Backend worker) {
+        throw new UnsupportedOperationException(
+                "RealMatrixBackend::mergeUpdates(Backend) reference backend doesn't support parallel training.");
+    }
+    /* ---------------------------------------------------- */
+
+}
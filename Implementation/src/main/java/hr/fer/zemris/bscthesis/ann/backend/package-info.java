@@ -0,0 +1,6 @@
+/**
+ * This package holds the code for numerical backends which store and update artificial neural network matrices.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.ann.backend;
\ No newline at end of file
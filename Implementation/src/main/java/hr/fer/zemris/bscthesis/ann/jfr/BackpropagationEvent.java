@@ -0,0 +1,60 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Calculation of deltas of one sample or a batch of samples.
+ *
+ * @author dbrcina
+ */
+@Name("hr.fer.zemris.bscthesis.Backpropagation")
+@Label("Backpropagation")
+@Category({"Neural Network", "Phases"})
+@Description("Calculation of deltas of one sample or a batch of samples.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class BackpropagationEvent extends NetworkEvent {
+
+    private static final EventType TYPE = EventType.getEventType(BackpropagationEvent.class);
+
+    @Label("Samples")
+    int samples;
+
+    private BackpropagationEvent() {
+    }
+
+    /**
+     * Starts an event if it is enabled.
+     *
+     * @param layers       input + hidden + output layers.
+     * @param learningType learning type, <code>null</code> outside of training.
+     * @param samples      number of samples.
+     * @return started event, or <code>null</code> if it is disabled.
+     */
+    public static BackpropagationEvent start(int[] layers, NeuralNetwork.LearningType learningType, int samples) {
+        if (!TYPE.isEnabled()) return null;
+        BackpropagationEvent event = new BackpropagationEvent();
+        event.samples = samples;
+        event.start(layers, learningType);
+        return event;
+    }
+
+    /**
+     * Commits provided <code>event</code>, if it is not <code>null</code>.
+     *
+     * @param event event.
+     */
+    public static void finish(BackpropagationEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One batch of training, including application of updates.
+ *
+ * @author dbrcina
+ */
+@Name("hr.fer.zemris.bscthesis.Batch")
+@Label("Batch")
+@Category({"Neural Network", "Training"})
+@Description("One batch of training, including application of updates.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class BatchEvent extends NetworkEvent {
+
+    private static final EventType TYPE = EventType.getEventType(BatchEvent.class);
+
+    @Label("Epoch")
+    @Description("Epoch, starting from 1.")
+    int epoch;
+
+    @Label("Batch")
+    @Description("Index of the batch in its epoch, starting from 0.")
+    int batch;
+
+    @Label("Samples")
+    int samples;
+
+    @Label("Loss")
+    @Description("Mean error per sample.")
+    double loss;
+
+    private BatchEvent() {
+    }
+
+    /**
+     * Starts an event if it is enabled.
+     *
+     * @param layers       input + hidden + output layers.
+     * @param learningType learning type.
+     * @param epoch        epoch, starting from 1.
+     * @param batch        index of the batch in its epoch, starting from 0.
+     * @param samples      number of samples in the batch.
+     * @return started event, or <code>null</code> if it is disabled.
+     */
+    public static BatchEvent start(int[] layers, NeuralNetwork.LearningType learningType,
+                                   int epoch, int batch, int samples) {
+        if (!TYPE.isEnabled()) return null;
+        BatchEvent event = new BatchEvent();
+        event.epoch = epoch;
+        event.batch = batch;
+        event.samples = samples;
+        event.start(layers, learningType);
+        return event;
+    }
+
+    /**
+     * Commits provided <code>event</code>, if it is not <code>null</code>.
+     *
+     * @param event event.
+     * @param loss  mean error per sample.
+     */
+    public static void finish(BatchEvent event, double loss) {
+        if (event == null) return;
+        event.loss = loss;
+        event.commit();
+    }
+
+}
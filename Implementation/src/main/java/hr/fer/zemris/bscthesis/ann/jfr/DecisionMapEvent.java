@@ -0,0 +1,82 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Rendering of one decision map, from the first to the last rendered frame.
+ *
+ * @author dbrcina
+ */
+@Name("hr.fer.zemris.bscthesis.DecisionMap")
+@Label("Decision Map")
+@Category({"Neural Network", "Rendering"})
+@Description("Rendering of one decision map, from the first to the last rendered frame.")
+@StackTrace(false)
+public final class DecisionMapEvent extends NetworkEvent {
+
+    private static final EventType TYPE = EventType.getEventType(DecisionMapEvent.class);
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Snapshot Version")
+    long snapshotVersion;
+
+    @Label("Evaluations")
+    @Description("Number of evaluated points.")
+    int evaluations;
+
+    @Label("Frames")
+    int frames;
+
+    @Label("Complete")
+    @Description("Whether the map was refined to single pixels or abandoned because of a newer request.")
+    boolean complete;
+
+    private DecisionMapEvent() {
+    }
+
+    /**
+     * Starts an event if it is enabled.
+     *
+     * @param layers          input + hidden + output layers.
+     * @param width           width of the map in pixels.
+     * @param height          height of the map in pixels.
+     * @param snapshotVersion version of the rendered snapshot.
+     * @return started event, or <code>null</code> if it is disabled.
+     */
+    public static DecisionMapEvent start(int[] layers, int width, int height, long snapshotVersion) {
+        if (!TYPE.isEnabled()) return null;
+        DecisionMapEvent event = new DecisionMapEvent();
+        event.width = width;
+        event.height = height;
+        event.snapshotVersion = snapshotVersion;
+        event.start(layers, null);
+        return event;
+    }
+
+    /**
+     * Commits provided <code>event</code>, if it is not <code>null</code>.
+     *
+     * @param event       event.
+     * @param evaluations number of evaluated points.
+     * @param frames      number of rendered frames.
+     * @param complete    whether the map was refined to single pixels.
+     */
+    public static void finish(DecisionMapEvent event, int evaluations, int frames, boolean complete) {
+        if (event == null) return;
+        event.evaluations = evaluations;
+        event.frames = frames;
+        event.complete = complete;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,69 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One epoch of training.
+ *
+ * @author dbrcina
+ */
+@Name("hr.fer.zemris.bscthesis.Epoch")
+@Label("Epoch")
+@Category({"Neural Network", "Training"})
+@Description("One epoch of training.")
+@StackTrace(false)
+public final class EpochEvent extends NetworkEvent {
+
+    private static final EventType TYPE = EventType.getEventType(EpochEvent.class);
+
+    @Label("Epoch")
+    @Description("Epoch, starting from 1.")
+    int epoch;
+
+    @Label("Samples")
+    int samples;
+
+    @Label("Loss")
+    @Description("Mean error per sample.")
+    double loss;
+
+    private EpochEvent() {
+    }
+
+    /**
+     * Starts an event if it is enabled.
+     *
+     * @param layers       input + hidden + output layers.
+     * @param learningType learning type.
+     * @param epoch        epoch, starting from 1.
+     * @return started event, or <code>null</code> if it is disabled.
+     */
+    public static EpochEvent start(int[] layers, NeuralNetwork.LearningType learningType, int epoch) {
+        if (!TYPE.isEnabled()) return null;
+        EpochEvent event = new EpochEvent();
+        event.epoch = epoch;
+        event.start(layers, learningType);
+        return event;
+    }
+
+    /**
+     * Commits provided <code>event</code>, if it is not <code>null</code>.
+     *
+     * @param event   event.
+     * @param samples number of trained samples.
+     * @param loss    mean error per sample.
+     */
+    public static void finish(EpochEvent event, int samples, double loss) {
+        if (event == null) return;
+        event.samples = samples;
+        event.loss = loss;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,60 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Feed forward of one sample or a batch of samples, during training or inference.
+ *
+ * @author dbrcina
+ */
+@Name("hr.fer.zemris.bscthesis.ForwardPass")
+@Label("Forward Pass")
+@Category({"Neural Network", "Phases"})
+@Description("Feed forward of one sample or a batch of samples, during training or inference.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class ForwardPassEvent extends NetworkEvent {
+
+    private static final EventType TYPE = EventType.getEventType(ForwardPassEvent.class);
+
+    @Label("Samples")
+    int samples;
+
+    private ForwardPassEvent() {
+    }
+
+    /**
+     * Starts an event if it is enabled.
+     *
+     * @param layers       input + hidden + output layers.
+     * @param learningType learning type, <code>null</code> outside of training.
+     * @param samples      number of samples.
+     * @return started event, or <code>null</code> if it is disabled.
+     */
+    public static ForwardPassEvent start(int[] layers, NeuralNetwork.LearningType learningType, int samples) {
+        if (!TYPE.isEnabled()) return null;
+        ForwardPassEvent event = new ForwardPassEvent();
+        event.samples = samples;
+        event.start(layers, learningType);
+        return event;
+    }
+
+    /**
+     * Commits provided <code>event</code>, if it is not <code>null</code>.
+     *
+     * @param event event.
+     */
+    public static void finish(ForwardPassEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+}
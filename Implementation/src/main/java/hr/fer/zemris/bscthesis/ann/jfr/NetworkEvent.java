@@ -0,0 +1,45 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Base of all neural network events, tagged with layer sizes and learning type. Events are not created directly, but
+ * through static <code>start</code> methods of subclasses, which return <code>null</code> if the event is disabled,
+ * and they are committed through matching static <code>finish</code> methods, which accept <code>null</code>.
+ *
+ * @author dbrcina
+ */
+public abstract class NetworkEvent extends Event {
+
+    @Label("Layers")
+    @Description("Sizes of input, hidden and output layers.")
+    String layers;
+
+    @Label("Learning Type")
+    @Description("Learning type, missing outside of training.")
+    String learningType;
+
+    NetworkEvent() {
+    }
+
+    /**
+     * Sets tags and starts timing of this event.
+     *
+     * @param layers       input + hidden + output layers.
+     * @param learningType learning type, <code>null</code> outside of training.
+     */
+    void start(int[] layers, NeuralNetwork.LearningType learningType) {
+        StringBuilder sb = new StringBuilder();
+        for (int layer : layers) {
+            if (sb.length() > 0) sb.append('-');
+            sb.append(layer);
+        }
+        this.layers = sb.toString();
+        this.learningType = learningType == null ? null : learningType.toString();
+        begin();
+    }
+
+}
@@ -0,0 +1,60 @@
+package hr.fer.zemris.bscthesis.ann.jfr;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Accumulation of updates of weights and biases for one sample or a batch of samples.
+ *
+ * @author dbrcina
+ */
+@Name("hr.fer.zemris.bscthesis.WeightUpdate")
+@Label("Weight Update")
+@Category({"Neural Network", "Phases"})
+@Description("Accumulation of updates of weights and biases for one sample or a batch of samples.")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class WeightUpdateEvent extends NetworkEvent {
+
+    private static final EventType TYPE = EventType.getEventType(WeightUpdateEvent.class);
+
+    @Label("Samples")
+    int samples;
+
+    private WeightUpdateEvent() {
+    }
+
+    /**
+     * Starts an event if it is enabled.
+     *
+     * @param layers       input + hidden + output layers.
+     * @param learningType learning type, <code>null</code> outside of training.
+     * @param samples      number of samples.
+     * @return started event, or <code>null</code> if it is disabled.
+     */
+    public static WeightUpdateEvent start(int[] layers, NeuralNetwork.LearningType learningType, int samples) {
+        if (!TYPE.isEnabled()) return null;
+        WeightUpdateEvent event = new WeightUpdateEvent();
+        event.samples = samples;
+        event.start(layers, learningType);
+        return event;
+    }
+
+    /**
+     * Commits provided <code>event</code>, if it is not <code>null</code>.
+     *
+     * @param event event.
+     */
+    public static void finish(WeightUpdateEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+}
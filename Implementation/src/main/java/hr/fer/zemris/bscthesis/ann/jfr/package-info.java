@@ -0,0 +1,11 @@
+/**
+ * This package holds JDK Flight Recorder events of an artificial neural network. Events are created only while a
+ * recording with them enabled is running, so they cost a single check otherwise.
+ * <br>
+ * Epoch and decision map events are recorded always, while batch, forward pass, backpropagation and weight update
+ * events are recorded only if they take at least 1 ms. Threshold can be changed through recording settings, for
+ * example <code>-XX:StartFlightRecording</code> with a custom <code>.jfc</code> file.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.ann.jfr;
\ No newline at end of file
@@ -0,0 +1,120 @@
+package hr.fer.zemris.bscthesis.ann.kernel;
+
+/**
+ * Model of low level kernels used by {@link hr.fer.zemris.bscthesis.ann.backend.ArrayBackend} and activation
+ * functions. All matrices are flat arrays in <b>row-major</b> order.
+ * <br>
+ * Implementation is picked once at runtime through {@link #get()}. Kernels based on the Vector API are used if they
+ * are compiled and module <code>jdk.incubator.vector</code> is available, otherwise {@link ScalarKernels} are used.
+ * Choice can be forced with system property <code>ann.kernels</code> whose value is <code>scalar</code> or
+ * <code>vector</code>.
+ * <br>
+ * Kernels which only add products element by element give the same results in every implementation. Kernels which
+ * sum products, such as {@link #multiplyTransposed(double[], double[], double[], int, int, int)}, and activation
+ * functions can differ in the last few bits.
+ *
+ * @author dbrcina
+ * @see ScalarKernels
+ */
+public interface Kernels {
+
+    /**
+     * @return kernels picked for this JVM.
+     */
+    static Kernels get() {
+        return KernelsLoader.KERNELS;
+    }
+
+    /**
+     * @return name of the implementation.
+     */
+    String name();
+
+    /**
+     * Calculates <code>c(n x m) = a(n x l) * b(m x l)^T</code>.
+     *
+     * @param a matrix with <code>n</code> rows of <code>l</code> elements.
+     * @param b matrix with <code>m</code> rows of <code>l</code> elements.
+     * @param c destination for <code>n x m</code> matrix.
+     * @param n number of rows of <code>a</code>.
+     * @param l number of columns of <code>a</code> and <code>b</code>.
+     * @param m number of rows of <code>b</code>.
+     */
+    void multiplyTransposed(double[] a, double[] b, double[] c, int n, int l, int m);
+
+    /**
+     * Calculates <code>c(n x m) = a(n x l) * b(l x m)</code>.
+     *
+     * @param a matrix with <code>n</code> rows of <code>l</code> elements.
+     * @param b matrix with <code>l</code> rows of <code>m</code> elements.
+     * @param c destination for <code>n x m</code> matrix.
+     * @param n number of rows of <code>a</code>.
+     * @param l number of columns of <code>a</code> and rows of <code>b</code>.
+     * @param m number of columns of <code>b</code>.
+     */
+    void multiply(double[] a, double[] b, double[] c, int n, int l, int m);
+
+    /**
+     * Calculates <code>c(m x l) += alpha * a(n x m)^T * b(n x l)</code> and adds <code>alpha</code> times column sums
+     * of <code>a</code> to <code>d(m)</code>. With <code>n = 1</code> it is an outer product update.
+     *
+     * @param a     matrix with <code>n</code> rows of <code>m</code> elements.
+     * @param b     matrix with <code>n</code> rows of <code>l</code> elements.
+     * @param c     matrix with <code>m</code> rows of <code>l</code> elements.
+     * @param d     vector of <code>m</code> elements.
+     * @param alpha scale.
+     * @param n     number of rows of <code>a</code> and <code>b</code>.
+     * @param m     number of columns of <code>a</code>.
+     * @param l     number of columns of <code>b</code>.
+     */
+    void multiplyTransposedAdd(double[] a, double[] b, double[] c, double[] d, double alpha, int n, int m, int l);
+
+    /**
+     * Adds vector <code>v(m)</code> to every row of <code>a(n x m)</code>.
+     *
+     * @param a matrix with <code>n</code> rows of <code>m</code> elements.
+     * @param v vector of <code>m</code> elements.
+     * @param n number of rows.
+     * @param m number of columns.
+     */
+    void addRowVector(double[] a, double[] v, int n, int m);
+
+    /**
+     * Adds <code>source</code> to <code>destination</code> element by element.
+     *
+     * @param destination destination.
+     * @param source      source of the same length.
+     */
+    void add(double[] destination, double[] source);
+
+    /**
+     * Calculates sigmoid of <code>in</code> into <code>out</code>.
+     *
+     * @param in     points.
+     * @param out    destination for values, it can be the same array as <code>in</code>.
+     * @param offset index of the first element.
+     * @param length number of elements.
+     */
+    void sigmoid(double[] in, double[] out, int offset, int length);
+
+    /**
+     * Calculates hyperbolic tangent of <code>in</code> into <code>out</code>.
+     *
+     * @param in     points.
+     * @param out    destination for values, it can be the same array as <code>in</code>.
+     * @param offset index of the first element.
+     * @param length number of elements.
+     */
+    void tanh(double[] in, double[] out, int offset, int length);
+
+    /**
+     * Calculates rectified linear unit of <code>in</code> into <code>out</code>.
+     *
+     * @param in     points.
+     * @param out    destination for values, it can be the same array as <code>in</code>.
+     * @param offset index of the first element.
+     * @param length number of elements.
+     */
+    void relu(double[] in, double[] out, int offset, int length);
+
+}
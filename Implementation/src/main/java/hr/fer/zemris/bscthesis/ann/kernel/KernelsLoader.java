@@ -0,0 +1,43 @@
+package hr.fer.zemris.bscthesis.ann.kernel;
+
+/**
+ * Picks {@link Kernels} implementation when they are used for the first time. Picked implementation is printed only
+ * if it is requested through system property <code>ann.kernels</code>.
+ *
+ * @author dbrcina
+ */
+final class KernelsLoader {
+
+    private static final String PROPERTY = "ann.kernels";
+    // Compiled only with the vector profile, so it is loaded through reflection.
+    private static final String VECTOR_KERNELS = "hr.fer.zemris.bscthesis.ann.kernel.VectorKernels";
+
+    static final Kernels KERNELS = load();
+
+    private KernelsLoader() {
+    }
+
+    private static Kernels load() {
+        String requested = System.getProperty(PROPERTY, "auto");
+        Kernels kernels = null;
+        if (!requested.equals("scalar")) {
+            try {
+                kernels = (Kernels) Class.forName(VECTOR_KERNELS).getConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not compiled, module is not added or the CPU has no useful vector width.
+                if (requested.equals("vector")) {
+                    System.out.println("Vector kernels are not available (" + e + "), using scalar kernels.");
+                }
+            }
+        }
+        if (kernels == null) {
+            kernels = new ScalarKernels();
+        }
+        // Automatic choice is silent, so it doesn't clutter the output of tools.
+        if (!requested.equals("auto")) {
+            System.out.println("Using " + kernels.name() + " kernels.");
+        }
+        return kernels;
+    }
+
+}
@@ -0,0 +1,157 @@
+package hr.fer.zemris.bscthesis.ann.kernel;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of {@link Kernels} written with plain loops. It is always available and it is used when kernels
+ * based on the Vector API can't be used.
+ * <br>
+ * Matrix kernels process four rows of samples at once, so every row of <code>b</code> is loaded once per four
+ * samples. Each element is still summed in the same order as with one sample at a time.
+ *
+ * @author dbrcina
+ */
+public class ScalarKernels implements Kernels {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    // c(n x m) = a(n x l) * b(m x l)^T
+    @Override
+    public void multiplyTransposed(double[] a, double[] b, double[] c, int n, int l, int m) {
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * l, a1 = a0 + l, a2 = a1 + l, a3 = a2 + l;
+            int c0 = s * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m;
+            for (int i = 0, bOffset = 0; i < m; i++, bOffset += l) {
+                double sum0 = 0.0, sum1 = 0.0, sum2 = 0.0, sum3 = 0.0;
+                for (int j = 0; j < l; j++) {
+                    double weight = b[bOffset + j];
+                    sum0 += weight * a[a0 + j];
+                    sum1 += weight * a[a1 + j];
+                    sum2 += weight * a[a2 + j];
+                    sum3 += weight * a[a3 + j];
+                }
+                c[c0 + i] = sum0;
+                c[c1 + i] = sum1;
+                c[c2 + i] = sum2;
+                c[c3 + i] = sum3;
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * l;
+            int cOffset = s * m;
+            for (int i = 0, bOffset = 0; i < m; i++, bOffset += l) {
+                double sum = 0.0;
+                for (int j = 0; j < l; j++) {
+                    sum += b[bOffset + j] * a[aOffset + j];
+                }
+                c[cOffset + i] = sum;
+            }
+        }
+    }
+
+    // c(n x m) = a(n x l) * b(l x m)
+    @Override
+    public void multiply(double[] a, double[] b, double[] c, int n, int l, int m) {
+        Arrays.fill(c, 0, n * m, 0.0);
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * l, a1 = a0 + l, a2 = a1 + l, a3 = a2 + l;
+            int c0 = s * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m;
+            for (int j = 0, bOffset = 0; j < l; j++, bOffset += m) {
+                double value0 = a[a0 + j], value1 = a[a1 + j], value2 = a[a2 + j], value3 = a[a3 + j];
+                for (int i = 0; i < m; i++) {
+                    double weight = b[bOffset + i];
+                    c[c0 + i] += weight * value0;
+                    c[c1 + i] += weight * value1;
+                    c[c2 + i] += weight * value2;
+                    c[c3 + i] += weight * value3;
+                }
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * l;
+            int cOffset = s * m;
+            for (int j = 0, bOffset = 0; j < l; j++, bOffset += m) {
+                double value = a[aOffset + j];
+                for (int i = 0; i < m; i++) {
+                    c[cOffset + i] += b[bOffset + i] * value;
+                }
+            }
+        }
+    }
+
+    // c(m x l) += alpha * a(n x m)^T * b(n x l) and d(m) += alpha * column sums of a
+    @Override
+    public void multiplyTransposedAdd(double[] a, double[] b, double[] c, double[] d,
+                                      double alpha, int n, int m, int l) {
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * m, a1 = a0 + m, a2 = a1 + m, a3 = a2 + m;
+            int b0 = s * l, b1 = b0 + l, b2 = b1 + l, b3 = b2 + l;
+            for (int i = 0, cOffset = 0; i < m; i++, cOffset += l) {
+                double value0 = alpha * a[a0 + i];
+                double value1 = alpha * a[a1 + i];
+                double value2 = alpha * a[a2 + i];
+                double value3 = alpha * a[a3 + i];
+                for (int j = 0; j < l; j++) {
+                    c[cOffset + j] = c[cOffset + j] + value0 * b[b0 + j] + value1 * b[b1 + j]
+                            + value2 * b[b2 + j] + value3 * b[b3 + j];
+                }
+                d[i] = d[i] + value0 + value1 + value2 + value3;
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * m;
+            int bOffset = s * l;
+            for (int i = 0, cOffset = 0; i < m; i++, cOffset += l) {
+                double value = alpha * a[aOffset + i];
+                for (int j = 0; j < l; j++) {
+                    c[cOffset + j] += value * b[bOffset + j];
+                }
+                d[i] += value;
+            }
+        }
+    }
+
+    @Override
+    public void addRowVector(double[] a, double[] v, int n, int m) {
+        for (int s = 0, offset = 0; s < n; s++, offset += m) {
+            for (int i = 0; i < m; i++) {
+                a[offset + i] += v[i];
+            }
+        }
+    }
+
+    @Override
+    public void add(double[] destination, double[] source) {
+        for (int i = 0; i < destination.length; i++) {
+            destination[i] += source[i];
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] in, double[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = 1 / (1 + Math.exp(-in[i]));
+        }
+    }
+
+    @Override
+    public void tanh(double[] in, double[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = Math.tanh(in[i]);
+        }
+    }
+
+    @Override
+    public void relu(double[] in, double[] out, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out[i] = Math.max(0, in[i]);
+        }
+    }
+
+}
@@ -0,0 +1,8 @@
+/**
+ * This package holds low level kernels for dense matrices and activation functions used by numerical backends. Scalar
+ * kernels are always available, while kernels based on the Vector API are compiled only with the <b>vector</b> Maven
+ * profile.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.ann.kernel;
\ No newline at end of file
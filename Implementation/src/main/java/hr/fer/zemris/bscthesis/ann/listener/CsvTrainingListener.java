@@ -0,0 +1,96 @@
+package hr.fer.zemris.bscthesis.ann.listener;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * {@link TrainingListener} which writes events into a CSV file. First line is a header:
+ * <br>
+ * <code>type,epoch,batch,loss,samples,wall_time_ms,samples_per_second,gradient_norm,weight_norm,dropped</code>
+ * <br>
+ * File is flushed after every training and it needs to be closed when it is no longer used.
+ *
+ * @author dbrcina
+ */
+public class CsvTrainingListener implements TrainingListener, Closeable {
+
+    private static final String HEADER =
+            "type,epoch,batch,loss,samples,wall_time_ms,samples_per_second,gradient_norm,weight_norm,dropped";
+
+    private final BufferedWriter writer;
+    private final boolean batches;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Constructor. Existing file is overwritten.
+     *
+     * @param file    output file.
+     * @param batches whether batch events are written too.
+     * @throws NullPointerException if <code>file</code> is <code>null</code>.
+     * @throws IOException          if the file could not be opened.
+     */
+    public CsvTrainingListener(Path file, boolean batches) throws IOException {
+        Objects.requireNonNull(file,
+                "CsvTrainingListener::CsvTrainingListener(Path,boolean) null values are not permitted!");
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.batches = batches;
+        writer.write(HEADER);
+        writer.newLine();
+    }
+
+    @Override
+    public void epochFinished(TrainingEvent event) {
+        write(event);
+    }
+
+    @Override
+    public void batchFinished(TrainingEvent event) {
+        write(event);
+    }
+
+    @Override
+    public boolean listensToBatches() {
+        return batches;
+    }
+
+    @Override
+    public void trainingFinished() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(TrainingEvent event) {
+        line.setLength(0);
+        line.append(event.getType()).append(',')
+                .append(event.getEpoch()).append(',')
+                .append(event.getBatch()).append(',')
+                .append(event.getLoss()).append(',')
+                .append(event.getSamples()).append(',')
+                .append(event.getWallTimeNanos() / 1e6).append(',')
+                .append(event.getSamplesPerSecond()).append(',')
+                .append(event.getGradientNorm()).append(',')
+                .append(event.getWeightNorm()).append(',')
+                .append(event.getDroppedEvents());
+        try {
+            writer.append(line);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+}
@@ -0,0 +1,98 @@
+package hr.fer.zemris.bscthesis.ann.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link TrainingListener} which keeps the most recent events in memory, for example for plotting the loss while
+ * training is running. Epoch and batch events are kept in separate rings of fixed capacity and older events are
+ * overwritten. Batch events are requested only if batch capacity is positive.
+ *
+ * @author dbrcina
+ */
+public class RingBufferTrainingListener implements TrainingListener {
+
+    private final TrainingEvent[] epochs;
+    private final TrainingEvent[] batches;
+    private long epochCount;
+    private long batchCount;
+
+    /**
+     * Constructor.
+     *
+     * @param epochCapacity maximum number of kept epoch events.
+     * @param batchCapacity maximum number of kept batch events, <code>0</code> for none.
+     * @throws IllegalArgumentException if <code>epochCapacity</code> is not positive or <code>batchCapacity</code>
+     *                                  is negative.
+     */
+    public RingBufferTrainingListener(int epochCapacity, int batchCapacity) {
+        if (epochCapacity < 1 || batchCapacity < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Capacities %d and %d are invalid!", epochCapacity, batchCapacity));
+        }
+        epochs = newRing(epochCapacity);
+        batches = newRing(batchCapacity);
+    }
+
+    private static TrainingEvent[] newRing(int capacity) {
+        TrainingEvent[] ring = new TrainingEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new TrainingEvent();
+        }
+        return ring;
+    }
+
+    @Override
+    public synchronized void epochFinished(TrainingEvent event) {
+        epochs[(int) (epochCount++ % epochs.length)].set(event);
+    }
+
+    @Override
+    public synchronized void batchFinished(TrainingEvent event) {
+        batches[(int) (batchCount++ % batches.length)].set(event);
+    }
+
+    @Override
+    public boolean listensToBatches() {
+        return batches.length > 0;
+    }
+
+    /**
+     * @return copies of kept epoch events, from the oldest to the newest.
+     */
+    public synchronized List<TrainingEvent> getEpochEvents() {
+        return copy(epochs, epochCount);
+    }
+
+    /**
+     * @return copies of kept batch events, from the oldest to the newest.
+     */
+    public synchronized List<TrainingEvent> getBatchEvents() {
+        return copy(batches, batchCount);
+    }
+
+    /**
+     * @return copy of the newest epoch event, or <code>null</code> if there are none.
+     */
+    public synchronized TrainingEvent getLastEpochEvent() {
+        return epochCount == 0 ? null : epochs[(int) ((epochCount - 1) % epochs.length)].copy();
+    }
+
+    /**
+     * Removes all kept events.
+     */
+    public synchronized void clear() {
+        epochCount = 0;
+        batchCount = 0;
+    }
+
+    private static List<TrainingEvent> copy(TrainingEvent[] ring, long count) {
+        long first = Math.max(0, count - ring.length);
+        List<TrainingEvent> events = new ArrayList<>((int) (count - first));
+        for (long i = first; i < count; i++) {
+            events.add(ring[(int) (i % ring.length)].copy());
+        }
+        return events;
+    }
+
+}
@@ -0,0 +1,144 @@
+package hr.fer.zemris.bscthesis.ann.listener;
+
+/**
+ * Event which describes one finished epoch or batch. Events are preallocated and reused, so an event received by a
+ * {@link TrainingListener} needs to be copied through {@link #copy()} if it is kept.
+ * <br>
+ * Gradient norm is the Euclidean norm of updates divided by eta. For epoch events it belongs to the last batch of the
+ * epoch. It is <code>NaN</code> if it is not known, which is the case with asynchronous <i>(Hogwild)</i> training.
+ * <br>
+ * Both norms need a pass over all parameters, which would slow down training with small batches, so batch events
+ * compute them only for every 64th batch of an epoch, starting with the first one. Batch events in between repeat
+ * the last computed norms.
+ *
+ * @author dbrcina
+ */
+public final class TrainingEvent {
+
+    /**
+     * Type of an event.
+     */
+    public enum Type {
+        EPOCH,
+        BATCH
+    }
+
+    private Type type;
+    private int epoch;
+    private int batch;
+    private double loss;
+    private int samples;
+    private long wallTimeNanos;
+    private double gradientNorm;
+    private double weightNorm;
+    private long droppedEvents;
+
+    TrainingEvent() {
+    }
+
+    void set(Type type, int epoch, int batch, double loss, int samples, long wallTimeNanos,
+             double gradientNorm, double weightNorm, long droppedEvents) {
+        this.type = type;
+        this.epoch = epoch;
+        this.batch = batch;
+        this.loss = loss;
+        this.samples = samples;
+        this.wallTimeNanos = wallTimeNanos;
+        this.gradientNorm = gradientNorm;
+        this.weightNorm = weightNorm;
+        this.droppedEvents = droppedEvents;
+    }
+
+    void set(TrainingEvent other) {
+        set(other.type, other.epoch, other.batch, other.loss, other.samples, other.wallTimeNanos,
+                other.gradientNorm, other.weightNorm, other.droppedEvents);
+    }
+
+    /**
+     * @return new copy of this event.
+     */
+    public TrainingEvent copy() {
+        TrainingEvent copy = new TrainingEvent();
+        copy.set(this);
+        return copy;
+    }
+
+    /**
+     * @return type of the event.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return epoch, starting from 1.
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return index of a batch in its epoch, starting from 0, or -1 for epoch events.
+     */
+    public int getBatch() {
+        return batch;
+    }
+
+    /**
+     * @return mean error per sample, as defined by the loss.
+     */
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * @return number of trained samples.
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return wall time of the epoch or batch in nanoseconds.
+     */
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return trained samples per second.
+     */
+    public double getSamplesPerSecond() {
+        return samples / (wallTimeNanos / 1e9);
+    }
+
+    /**
+     * @return Euclidean norm of the gradient, or <code>NaN</code> if it is not known.
+     */
+    public double getGradientNorm() {
+        return gradientNorm;
+    }
+
+    /**
+     * @return Euclidean norm of all weights and biases after the update.
+     */
+    public double getWeightNorm() {
+        return weightNorm;
+    }
+
+    /**
+     * @return number of events dropped so far in this training, because listeners were not keeping up.
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s epoch=%d batch=%d loss=%s samples=%d time=%.3f ms samples/s=%.0f "
+                        + "gradient norm=%s weight norm=%s dropped=%d",
+                type, epoch, batch, loss, samples, wallTimeNanos / 1e6, getSamplesPerSecond(),
+                gradientNorm, weightNorm, droppedEvents);
+    }
+
+}
@@ -0,0 +1,198 @@
+package hr.fer.zemris.bscthesis.ann.listener;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers {@link TrainingEvent}s from the training thread to {@link TrainingListener}s on a separate daemon thread.
+ * <br>
+ * Events are passed through a single producer, single consumer ring of preallocated events, so publishing an event
+ * does not allocate and never blocks. If the ring is full, because listeners are slower than training, the event is
+ * dropped and counted, see {@link TrainingEvent#getDroppedEvents()}.
+ * <br>
+ * Publishing methods need to be called from one thread only.
+ *
+ * @author dbrcina
+ */
+public final class TrainingEventDispatcher implements AutoCloseable {
+
+    /**
+     * Default capacity of the ring.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final TrainingListener[] listeners;
+    private final boolean batchEvents;
+    private final TrainingEvent[] ring;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Thread consumer;
+    private volatile boolean closed;
+    // accessed only by the producer
+    private long head;
+    private long dropped;
+
+    /**
+     * Constructor with {@link #DEFAULT_CAPACITY}.
+     *
+     * @param listeners listeners.
+     * @throws NullPointerException if <code>listeners</code> is <code>null</code>.
+     */
+    public TrainingEventDispatcher(List<TrainingListener> listeners) {
+        this(listeners, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor. It starts the dispatcher thread.
+     *
+     * @param listeners listeners.
+     * @param capacity  capacity of the ring, rounded up to a power of two.
+     * @throws NullPointerException     if <code>listeners</code> is <code>null</code>.
+     * @throws IllegalArgumentException if <code>capacity</code> is not positive.
+     */
+    public TrainingEventDispatcher(List<TrainingListener> listeners, int capacity) {
+        Objects.requireNonNull(listeners,
+                "TrainingEventDispatcher::TrainingEventDispatcher(List,int) null values are not permitted!");
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Capacity %d is invalid!", capacity));
+        }
+        this.listeners = listeners.toArray(new TrainingListener[0]);
+        boolean batchEvents = false;
+        for (TrainingListener listener : this.listeners) {
+            batchEvents |= listener.listensToBatches();
+        }
+        this.batchEvents = batchEvents;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        ring = new TrainingEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new TrainingEvent();
+        }
+        mask = size - 1;
+        consumer = new Thread(this::dispatch, "training-event-dispatcher");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * @return <code>true</code> if at least one listener wants batch events.
+     */
+    public boolean wantsBatchEvents() {
+        return batchEvents;
+    }
+
+    /**
+     * Publishes an epoch event.
+     *
+     * @param epoch         epoch, starting from 1.
+     * @param loss          mean error per sample.
+     * @param samples       number of trained samples.
+     * @param wallTimeNanos wall time of the epoch.
+     * @param gradientNorm  gradient norm of the last batch, or <code>NaN</code>.
+     * @param weightNorm    weight norm after the epoch.
+     */
+    public void epochFinished(int epoch, double loss, int samples, long wallTimeNanos,
+                              double gradientNorm, double weightNorm) {
+        publish(TrainingEvent.Type.EPOCH, epoch, -1, loss, samples, wallTimeNanos, gradientNorm, weightNorm);
+    }
+
+    /**
+     * Publishes a batch event. Nothing is published if no listener wants batch events.
+     *
+     * @param epoch         epoch, starting from 1.
+     * @param batch         index of the batch in its epoch, starting from 0.
+     * @param loss          mean error per sample.
+     * @param samples       number of trained samples.
+     * @param wallTimeNanos wall time of the batch.
+     * @param gradientNorm  gradient norm, or <code>NaN</code>.
+     * @param weightNorm    weight norm after the batch.
+     */
+    public void batchFinished(int epoch, int batch, double loss, int samples, long wallTimeNanos,
+                              double gradientNorm, double weightNorm) {
+        if (batchEvents) {
+            publish(TrainingEvent.Type.BATCH, epoch, batch, loss, samples, wallTimeNanos, gradientNorm, weightNorm);
+        }
+    }
+
+    private void publish(TrainingEvent.Type type, int epoch, int batch, double loss, int samples,
+                         long wallTimeNanos, double gradientNorm, double weightNorm) {
+        if (head - consumed.get() > mask) {
+            dropped++;
+            return;
+        }
+        ring[(int) head & mask].set(type, epoch, batch, loss, samples, wallTimeNanos,
+                gradientNorm, weightNorm, dropped);
+        published.lazySet(++head);
+    }
+
+    private void dispatch() {
+        long tail = 0;
+        while (true) {
+            boolean finished = closed;
+            long available = published.get();
+            if (tail == available) {
+                if (finished) {
+                    break;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+                continue;
+            }
+            for (; tail < available; tail++) {
+                deliver(ring[(int) tail & mask]);
+                consumed.lazySet(tail + 1);
+            }
+        }
+        for (TrainingListener listener : listeners) {
+            try {
+                listener.trainingFinished();
+            } catch (RuntimeException e) {
+                System.out.println("Training listener failed: " + e);
+            }
+        }
+    }
+
+    private void deliver(TrainingEvent event) {
+        boolean epoch = event.getType() == TrainingEvent.Type.EPOCH;
+        for (TrainingListener listener : listeners) {
+            try {
+                if (epoch) {
+                    listener.epochFinished(event);
+                } else if (listener.listensToBatches()) {
+                    listener.batchFinished(event);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Training listener failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Delivers all published events, calls {@link TrainingListener#trainingFinished()} and waits for the dispatcher
+     * thread to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package hr.fer.zemris.bscthesis.ann.listener;
+
+/**
+ * Listener of training events, registered through
+ * {@link hr.fer.zemris.bscthesis.ann.NeuralNetwork#addTrainingListener(TrainingListener)}.
+ * <br>
+ * All methods are called from one dispatcher thread, never from the training thread, and in the order in which
+ * events happened. Provided event is reused afterwards, so it is valid only during the call and it needs to be copied
+ * if it is kept.
+ *
+ * @author dbrcina
+ * @see TrainingEvent
+ */
+public interface TrainingListener {
+
+    /**
+     * Called after every epoch.
+     *
+     * @param event epoch event.
+     */
+    default void epochFinished(TrainingEvent event) {
+    }
+
+    /**
+     * Called after every batch, if {@link #listensToBatches()} returns <code>true</code>.
+     *
+     * @param event batch event.
+     */
+    default void batchFinished(TrainingEvent event) {
+    }
+
+    /**
+     * Called once after all events of one training are delivered.
+     */
+    default void trainingFinished() {
+    }
+
+    /**
+     * Batch events have their cost, mostly in <b>ONLINE</b> learning where every sample is a batch, so they are
+     * produced only if at least one listener wants them.
+     *
+     * @return <code>true</code> if listener wants batch events, default is <code>false</code>.
+     */
+    default boolean listensToBatches() {
+        return false;
+    }
+
+}
@@ -0,0 +1,7 @@
+/**
+ * This package holds the code for observing training of an artificial neural network through
+ * {@link hr.fer.zemris.bscthesis.ann.listener.TrainingListener}s.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.ann.listener;
\ No newline at end of file
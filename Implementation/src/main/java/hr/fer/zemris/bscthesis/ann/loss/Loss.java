@@ -0,0 +1,134 @@
+package hr.fer.zemris.bscthesis.ann.loss;
+
+/**
+ * Enum that models loss functions minimized by Backpropagation algorithm. Output layer always uses softmax, so valid
+ * losses are:
+ * <ul>
+ *     <li>MSE -- Mean squared error, <code>E = sum((t - y)^2) / 2</code>, whose output deltas are
+ *     <code>y * (1 - y) * (t - y)</code>.</li>
+ *     <li>CROSS_ENTROPY -- Cross entropy, <code>E = -sum(t * log(y))</code>, fused with softmax, so output deltas are
+ *     simply <code>t - y</code> and derivatives of the output layer are not needed.</li>
+ * </ul>
+ * Deltas follow the sign convention of the rest of the network, where updates are added to the weights, so
+ * <code>t - y</code> is the negative gradient <code>y - t</code>.
+ * <br>
+ * All methods work on a range of one sample, where <code>expectedOutputs</code>, <code>outputs</code> and other arrays
+ * hold the sample at the same positions.
+ *
+ * @author dbrcina
+ */
+public enum Loss {
+
+    MSE("Mean squared error") {
+        @Override
+        public boolean needsDerivatives() {
+            return true;
+        }
+
+        @Override
+        public double error(double[] expectedOutputs, double[] outputs, double[] weightedSums,
+                            int offset, int length) {
+            double error = 0.0;
+            for (int i = offset; i < offset + length; i++) {
+                double subtract = expectedOutputs[i] - outputs[i];
+                error += subtract * subtract;
+            }
+            return error / 2;
+        }
+
+        @Override
+        public void outputDeltas(double[] expectedOutputs, double[] outputs, double[] derivatives, double[] deltas,
+                                 int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                deltas[i] = derivatives[i] * (expectedOutputs[i] - outputs[i]);
+            }
+        }
+    },
+
+    CROSS_ENTROPY("Cross entropy") {
+        @Override
+        public boolean needsDerivatives() {
+            return false;
+        }
+
+        /**
+         * Error is calculated from weighted sums through log-sum-exp, <code>log(y_i) = z_i - log(sum(exp(z)))</code>,
+         * with the greatest weighted sum subtracted before exponentiation, so it never overflows and it stays finite
+         * even when some outputs are rounded to zero.
+         */
+        @Override
+        public double error(double[] expectedOutputs, double[] outputs, double[] weightedSums,
+                            int offset, int length) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = offset; i < offset + length; i++) {
+                max = Math.max(max, weightedSums[i]);
+            }
+            double sum = 0.0;
+            for (int i = offset; i < offset + length; i++) {
+                sum += Math.exp(weightedSums[i] - max);
+            }
+            double logSumExp = max + Math.log(sum);
+            double error = 0.0;
+            for (int i = offset; i < offset + length; i++) {
+                if (expectedOutputs[i] != 0) {
+                    error += expectedOutputs[i] * (logSumExp - weightedSums[i]);
+                }
+            }
+            return error;
+        }
+
+        @Override
+        public void outputDeltas(double[] expectedOutputs, double[] outputs, double[] derivatives, double[] deltas,
+                                 int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                deltas[i] = expectedOutputs[i] - outputs[i];
+            }
+        }
+    };
+
+    private final String name;
+
+    Loss(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return <code>true</code> if {@link #outputDeltas(double[], double[], double[], double[], int, int)} needs
+     * derivatives of the output layer, otherwise backends can skip calculating them.
+     */
+    public abstract boolean needsDerivatives();
+
+    /**
+     * Calculates error of one sample.
+     *
+     * @param expectedOutputs expected outputs.
+     * @param outputs         outputs of the output layer.
+     * @param weightedSums    weighted sums of the output layer, needed only if {@link #needsDerivatives()} returns
+     *                        <code>false</code>.
+     * @param offset          index of the first output.
+     * @param length          number of outputs.
+     * @return error, which is divided by number of samples to get error of an epoch.
+     */
+    public abstract double error(double[] expectedOutputs, double[] outputs, double[] weightedSums,
+                                 int offset, int length);
+
+    /**
+     * Calculates deltas of the output layer for one sample.
+     *
+     * @param expectedOutputs expected outputs.
+     * @param outputs         outputs of the output layer.
+     * @param derivatives     derivatives of the output layer, needed only if {@link #needsDerivatives()} returns
+     *                        <code>true</code>.
+     * @param deltas          destination for deltas.
+     * @param offset          index of the first output.
+     * @param length          number of outputs.
+     */
+    public abstract void outputDeltas(double[] expectedOutputs, double[] outputs, double[] derivatives,
+                                      double[] deltas, int offset, int length);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,6 @@
+/**
+ * This package holds the code for loss functions which are minimized during training.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.ann.loss;
\ No newline at end of file
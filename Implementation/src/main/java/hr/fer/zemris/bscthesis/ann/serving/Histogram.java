@@ -0,0 +1,144 @@
+package hr.fer.zemris.bscthesis.ann.serving;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values, like latencies or batch sizes, with a fixed number of log-linear buckets. Values
+ * below 32 have their own buckets, and every greater power of two range is split into 16 buckets of equal width, so
+ * reported percentiles are at most 1/16 greater than the exact ones. Memory is fixed regardless of the number and
+ * range of values.
+ * <br>
+ * Values can be recorded and read from any thread without locking. Reading while values are recorded, or calling
+ * {@link #reset()}, can miss values which are recorded at the same time.
+ *
+ * @author dbrcina
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records provided <code>value</code>. Negative values are recorded as <code>0</code>.
+     *
+     * @param value value.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return number of recorded values.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return mean of recorded values or <code>0</code> if there are none.
+     */
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @return greatest recorded value or <code>0</code> if there are none.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket which holds provided percentile, but not more than {@link #max()}.
+     *
+     * @param p percentile, from <code>0.0</code> to <code>1.0</code>.
+     * @return percentile or <code>0</code> if there are no values.
+     * @throws IllegalArgumentException if <code>p</code> is not from <code>0.0</code> to <code>1.0</code>.
+     */
+    public long percentile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException(String.format(
+                    "Histogram::percentile(double) invalid percentile %f!", p));
+        }
+        long total = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long cumulative = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Returns non-empty buckets, one per line, as the range of values followed by the number of values, for example
+     * <code>32-33: 5</code>.
+     *
+     * @return non-empty buckets.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            long n = counts.get(i);
+            if (n == 0) continue;
+            long lower = lowerBound(i);
+            long upper = upperBound(i);
+            sb.append(lower);
+            if (upper != lower) {
+                sb.append('-').append(upper);
+            }
+            sb.append(": ").append(n).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return lowerBound(bucket) + (1L << shift) - 1;
+    }
+
+}
@@ -0,0 +1,251 @@
+package hr.fer.zemris.bscthesis.ann.serving;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Local HTTP endpoint for inference, built on the HTTP server of the JDK. Points of all requests are evaluated through
+ * one {@link MicroBatcher}, so concurrent requests share batched forward passes. Requests are handled by a fixed pool
+ * of threads, which wait for their results, so the pool size limits the number of requests in progress. Endpoints:
+ * <ul>
+ *     <li><code>POST /predict</code> with one point per line, inputs separated by a comma, a semicolon or a tab.
+ *     Response has one line per point: class index followed by the outputs of the network, separated by commas.
+ *     Points of a request are evaluated all or none: invalid points are answered with status 400, more points than
+ *     the queue of the batcher can hold with status 413 and a full queue with status 503.</li>
+ *     <li><code>GET /stats</code> returns latency percentiles in microseconds, batch size percentiles and the
+ *     histogram of batch sizes. With <code>?reset</code> query, statistics are removed after they are returned.</li>
+ * </ul>
+ * Server writes headers and body of a response separately, so with Nagle's algorithm the body of every response on a
+ * keep-alive connection waits for a delayed acknowledgement of the client, which takes tens of milliseconds. To avoid
+ * that, {@link #NODELAY_PROPERTY} system property should be set to <code>true</code>. The HTTP server of the JDK reads
+ * it only once, when the first server of the process is created, so it has to be set before that, for example with
+ * <code>-Dsun.net.httpserver.nodelay=true</code>.
+ * <br>
+ * Class indexes are determined through {@link ClassType#argmaxIndexFor(double[], int, int)}, so class types need to
+ * be initialized through {@link ClassType#init()}.
+ *
+ * @author dbrcina
+ */
+public class InferenceServer implements AutoCloseable {
+
+    /**
+     * System property which disables Nagle's algorithm for connections of the HTTP server of the JDK.
+     */
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private static final int MAX_REQUEST_SIZE = 1 << 20;
+    private static final int BACKLOG = 256;
+
+    private final Supplier<ModelSnapshot> model;
+    private final MicroBatcher batcher;
+    private final ExecutorService handlers;
+    private final HttpServer server;
+
+    /**
+     * Constructor. Starts the server.
+     *
+     * @param model          supplier of the snapshot which is evaluated, for example
+     *                       {@link hr.fer.zemris.bscthesis.ann.NeuralNetwork#getSnapshot()}.
+     * @param address        address of the server.
+     * @param maxBatchSize   maximum number of points per batch.
+     * @param maxWait        maximum time in microseconds which a point waits for other points.
+     * @param handlerThreads number of threads which handle requests.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if some parameter is invalid.
+     * @throws IOException              if the server could not be bound to the address.
+     */
+    public InferenceServer(Supplier<ModelSnapshot> model, InetSocketAddress address, int maxBatchSize, long maxWait,
+                           int handlerThreads) throws IOException {
+        this.model = Objects.requireNonNull(model,
+                "InferenceServer::InferenceServer null values are not permitted!");
+        Objects.requireNonNull(address, "InferenceServer::InferenceServer null values are not permitted!");
+        if (handlerThreads < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "InferenceServer::InferenceServer invalid number of handler threads %d!", handlerThreads));
+        }
+        batcher = new MicroBatcher(model, maxBatchSize, maxWait);
+        try {
+            server = HttpServer.create(address, BACKLOG);
+        } catch (IOException e) {
+            batcher.close();
+            throw e;
+        }
+        handlers = Executors.newFixedThreadPool(handlerThreads, r -> {
+            Thread thread = new Thread(r, "inference-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/predict", this::predict);
+        server.createContext("/stats", this::stats);
+        server.start();
+    }
+
+    /**
+     * @return address which the server is bound to.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * @return batcher of the server, which holds its statistics.
+     */
+    public MicroBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Stops the server. Requests in progress get up to a second to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        batcher.close();
+        handlers.shutdownNow();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Expected POST request.\n");
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_REQUEST_SIZE + 1);
+            if (body.length > MAX_REQUEST_SIZE) {
+                send(exchange, 413, "Request is larger than " + MAX_REQUEST_SIZE + " bytes.\n");
+                return;
+            }
+            List<double[]> points;
+            try {
+                points = parsePoints(new String(body, StandardCharsets.UTF_8), model.get().getLayers()[0]);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            if (points.size() > batcher.getCapacity()) {
+                send(exchange, 413, "Request has more than " + batcher.getCapacity() + " points.\n");
+                return;
+            }
+
+            List<CompletableFuture<double[]>> results = batcher.submit(points);
+            StringBuilder sb = new StringBuilder();
+            for (CompletableFuture<double[]> result : results) {
+                double[] outputs;
+                try {
+                    outputs = result.get();
+                } catch (ExecutionException e) {
+                    cancel(results);
+                    Throwable cause = e.getCause();
+                    int status = cause instanceof IllegalArgumentException ? 400
+                            : cause instanceof RejectedExecutionException ? 503 : 500;
+                    send(exchange, status, cause.getMessage() + "\n");
+                    return;
+                } catch (InterruptedException e) {
+                    cancel(results);
+                    send(exchange, 503, "Server is stopping.\n");
+                    return;
+                }
+                sb.append(ClassType.argmaxIndexFor(outputs, 0, outputs.length));
+                for (double output : outputs) {
+                    sb.append(',').append(output);
+                }
+                sb.append('\n');
+            }
+            send(exchange, 200, sb.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Expected GET request.\n");
+                return;
+            }
+            Histogram latencies = batcher.getLatencies();
+            Histogram batchSizes = batcher.getBatchSizes();
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("layers %s, max batch size %d, max wait %d us%n",
+                    Arrays.toString(model.get().getLayers()), batcher.getMaxBatchSize(), batcher.getMaxWait()));
+            sb.append(String.format("points %d, batches %d, rejected %d%n",
+                    latencies.count(), batchSizes.count(), batcher.getRejected()));
+            sb.append(String.format("latency us: p50 %d, p90 %d, p99 %d, max %d, mean %.1f%n",
+                    latencies.percentile(0.5), latencies.percentile(0.9), latencies.percentile(0.99),
+                    latencies.max(), latencies.mean()));
+            sb.append(String.format("batch size: p50 %d, p90 %d, p99 %d, max %d, mean %.2f%n",
+                    batchSizes.percentile(0.5), batchSizes.percentile(0.9), batchSizes.percentile(0.99),
+                    batchSizes.max(), batchSizes.mean()));
+            sb.append("batch size histogram:\n").append(batchSizes);
+            if ("reset".equals(exchange.getRequestURI().getQuery())) {
+                batcher.resetStatistics();
+            }
+            send(exchange, 200, sb.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static List<double[]> parsePoints(String body, int inputSize) {
+        List<double[]> points = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("[,;\t]");
+            double[] point = new double[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                try {
+                    point[i] = Double.parseDouble(fields[i]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(String.format(
+                            "InferenceServer::predict point %d has invalid input '%s'!", points.size(), fields[i]));
+                }
+            }
+            // Checked here as well, so a request with an invalid point is not evaluated partially. The batcher still
+            // checks every point, since the model can change before the point is evaluated.
+            if (point.length != inputSize) {
+                throw new IllegalArgumentException(String.format(
+                        "InferenceServer::predict point %d has %d inputs instead of %d!",
+                        points.size(), point.length, inputSize));
+            }
+            points.add(point);
+        }
+        return points;
+    }
+
+    private static void cancel(List<CompletableFuture<double[]>> results) {
+        // Remaining points of a failed request are skipped by the batcher instead of being evaluated for nothing.
+        for (CompletableFuture<double[]> result : results) {
+            result.cancel(false);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+}
@@ -0,0 +1,311 @@
+package hr.fer.zemris.bscthesis.ann.serving;
+
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent inference requests into micro-batches, so many small requests are evaluated with one batched
+ * forward pass through {@link ModelSnapshot#feedForwardBatch(double[], int, ModelSnapshot.Workspace)}. Requests are
+ * put into a bounded queue by {@link #submit(List)} and taken by a single batching thread. Points of one request are
+ * queued as a unit, so either all of them are evaluated or none, if the queue doesn't have room for them. A batch is
+ * evaluated as soon as it has <code>maxBatchSize</code> requests or its oldest request has waited for
+ * <code>maxWait</code> microseconds, so a request never waits for more requests longer than that, while requests which
+ * arrive during the evaluation of the previous batch go into the next one without waiting.
+ * <br>
+ * Every batch is evaluated with the latest snapshot of provided model supplier, so a network can be served while it
+ * is trained. Latencies of requests, from submitting until the result is ready, are recorded in microseconds and
+ * sizes of batches are recorded as well.
+ *
+ * @author dbrcina
+ */
+public class MicroBatcher implements AutoCloseable {
+
+    // Queue holds up to this many full batches, further points are rejected.
+    private static final int QUEUED_BATCHES = 64;
+
+    private final Supplier<ModelSnapshot> model;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final int capacity;
+    private final BlockingQueue<Request> queue;
+    // Free places of the queue, reserved for all points of a request at once.
+    private final Semaphore space;
+    private final Thread batcher;
+    private final Histogram latencies = new Histogram();
+    private final Histogram batchSizes = new Histogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Constructor. Starts the batching thread.
+     *
+     * @param model        supplier of the snapshot which is evaluated, called once per batch.
+     * @param maxBatchSize maximum number of requests per batch.
+     * @param maxWait      maximum time in microseconds which a request waits for other requests.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if <code>maxBatchSize</code> is not positive or <code>maxWait</code> is
+     *                                  negative.
+     */
+    public MicroBatcher(Supplier<ModelSnapshot> model, int maxBatchSize, long maxWait) {
+        this.model = Objects.requireNonNull(model,
+                "MicroBatcher::MicroBatcher(Supplier, int, long) null values are not permitted!");
+        if (maxBatchSize < 1 || maxWait < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "MicroBatcher::MicroBatcher(Supplier, int, long) invalid max batch size %d or max wait %d!",
+                    maxBatchSize, maxWait));
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWait);
+        capacity = QUEUED_BATCHES * maxBatchSize;
+        queue = new ArrayBlockingQueue<>(capacity);
+        space = new Semaphore(capacity);
+        batcher = new Thread(this::run, "micro-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    /**
+     * Submits provided <code>inputs</code> of one point for evaluation without waiting.
+     *
+     * @param inputs inputs, which must not be modified afterwards.
+     * @return future outputs.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     * @see #submit(List)
+     */
+    public CompletableFuture<double[]> submit(double[] inputs) {
+        Objects.requireNonNull(inputs, "MicroBatcher::submit(double[]) null values are not permitted!");
+        return submit(List.of(inputs)).get(0);
+    }
+
+    /**
+     * Submits provided <code>points</code> for evaluation without waiting. Either all points are queued, or none if
+     * the queue doesn't have room for all of them. Each returned future completes with outputs of the network, or
+     * exceptionally with {@link IllegalArgumentException} if the number of inputs doesn't fit the model, with
+     * {@link RejectedExecutionException} if the queue is full or the batcher is closed, or with the exception thrown
+     * by the evaluation. Points whose futures are cancelled before their batch is evaluated are skipped.
+     *
+     * @param points inputs of each point, which must not be modified afterwards.
+     * @return future outputs, in the order of points.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if there are more points than {@link #getCapacity()}.
+     */
+    public List<CompletableFuture<double[]>> submit(List<double[]> points) {
+        Objects.requireNonNull(points, "MicroBatcher::submit(List) null values are not permitted!");
+        if (points.size() > capacity) {
+            throw new IllegalArgumentException(String.format(
+                    "MicroBatcher::submit(List) %d points are more than capacity %d!", points.size(), capacity));
+        }
+        List<Request> requests = new ArrayList<>(points.size());
+        List<CompletableFuture<double[]>> results = new ArrayList<>(points.size());
+        for (double[] inputs : points) {
+            Request request = new Request(Objects.requireNonNull(inputs,
+                    "MicroBatcher::submit(List) null values are not permitted!"));
+            requests.add(request);
+            results.add(request.result);
+        }
+        if (closed) {
+            reject(requests, "MicroBatcher is closed!");
+        } else if (!space.tryAcquire(requests.size())) {
+            rejected.addAndGet(requests.size());
+            reject(requests, "MicroBatcher queue is full!");
+        } else {
+            // Room is reserved, so this always succeeds.
+            queue.addAll(requests);
+            if (closed) {
+                // Batcher could have stopped before the points were queued.
+                for (Request request : requests) {
+                    if (queue.remove(request)) {
+                        space.release();
+                        request.result.completeExceptionally(
+                                new RejectedExecutionException("MicroBatcher is closed!"));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void reject(List<Request> requests, String message) {
+        for (Request request : requests) {
+            request.result.completeExceptionally(new RejectedExecutionException(message));
+        }
+    }
+
+    /**
+     * @return maximum number of queued points, which is also the maximum number of points submitted at once.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return maximum number of requests per batch.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return maximum time in microseconds which a request waits for other requests.
+     */
+    public long getMaxWait() {
+        return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos);
+    }
+
+    /**
+     * @return latencies of requests in microseconds.
+     */
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return sizes of evaluated batches.
+     */
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * @return number of points rejected because the queue was full.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Removes recorded latencies, batch sizes and the number of rejected points.
+     */
+    public void resetStatistics() {
+        latencies.reset();
+        batchSizes.reset();
+        rejected.set(0);
+    }
+
+    /**
+     * Stops the batching thread after the current batch. Waiting requests are rejected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        batcher.interrupt();
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            space.release();
+            request.result.completeExceptionally(new RejectedExecutionException("MicroBatcher is closed!"));
+        }
+    }
+
+    private void run() {
+        Request[] batch = new Request[maxBatchSize];
+        double[] inputs = new double[0];
+        ModelSnapshot current = null;
+        ModelSnapshot.Workspace workspace = null;
+        boolean interrupted = false;
+        while (!interrupted) {
+            try {
+                batch[0] = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            space.release();
+            int size = 1;
+            long deadline = batch[0].submitted + maxWaitNanos;
+            while (size < maxBatchSize) {
+                Request next = queue.poll();
+                if (next == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    try {
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    if (next == null) break;
+                }
+                space.release();
+                batch[size++] = next;
+            }
+
+            ModelSnapshot snapshot = model.get();
+            if (snapshot != current) {
+                current = snapshot;
+                workspace = snapshot.newWorkspace();
+            }
+            int[] layers = snapshot.getLayers();
+            int inputSize = layers[0];
+            int outputSize = layers[layers.length - 1];
+            if (inputs.length < maxBatchSize * inputSize) {
+                inputs = new double[maxBatchSize * inputSize];
+            }
+            int valid = 0;
+            for (int i = 0; i < size; i++) {
+                Request request = batch[i];
+                // Cancelled, for example because some other point of its request has failed.
+                if (request.result.isDone()) continue;
+                if (request.inputs.length != inputSize) {
+                    request.result.completeExceptionally(new IllegalArgumentException(String.format(
+                            "MicroBatcher::submit(List) expected %d inputs but received %d!",
+                            inputSize, request.inputs.length)));
+                    continue;
+                }
+                System.arraycopy(request.inputs, 0, inputs, valid * inputSize, inputSize);
+                batch[valid++] = request;
+            }
+            if (valid > 0) {
+                evaluate(snapshot, workspace, inputs, batch, valid, outputSize);
+            }
+            Arrays.fill(batch, 0, size, null);
+        }
+    }
+
+    private void evaluate(ModelSnapshot snapshot, ModelSnapshot.Workspace workspace, double[] inputs,
+                          Request[] batch, int size, int outputSize) {
+        double[] outputs;
+        try {
+            outputs = snapshot.feedForwardBatch(inputs, size, workspace);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < size; i++) {
+                batch[i].result.completeExceptionally(e);
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            // Latency is recorded first, so it is visible once the caller has the result.
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(now - batch[i].submitted));
+            batch[i].result.complete(Arrays.copyOfRange(outputs, i * outputSize, (i + 1) * outputSize));
+        }
+        batchSizes.record(size);
+    }
+
+    private static final class Request {
+
+        private final double[] inputs;
+        private final long submitted = System.nanoTime();
+        private final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        private Request(double[] inputs) {
+            this.inputs = inputs;
+        }
+
+    }
+
+}
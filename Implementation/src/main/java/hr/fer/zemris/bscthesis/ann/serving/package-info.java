@@ -0,0 +1,7 @@
+/**
+ * This package holds the code for serving an artificial neural network over HTTP, with requests coalesced into
+ * micro-batches by {@link hr.fer.zemris.bscthesis.ann.serving.MicroBatcher}.
+ *
+ * @author dbrcina
+ */
+package hr.fer.zemris.bscthesis.ann.serving;
\ No newline at end of file
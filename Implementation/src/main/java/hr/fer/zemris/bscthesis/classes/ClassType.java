@@ -39,10 +39,18 @@ import java.util.stream.Collectors;
  * </p>
  *
  * <p>
+ * Hot paths, like rendering and evaluation, should use primitive API instead, which doesn't allocate anything.
+ * Each class has an index, which is its position in {@link #allClassTypes()}, and outputs are mapped to an index
+ * through {@link #indexFor(double[], int, int)} or {@link #argmaxIndexFor(double[], int, int)}. Cached instances are
+ * returned by {@link #forIndex(int)} and colors are returned by {@link #rgbFor(double[], int, int)} and
+ * {@link #rgbForIndex(int)}.
+ * </p>
+ *
+ * <p>
  * <b>(*)</b> - they are not physically present for each class instance and can be found in
  * {@link #desiredOutputsForClasses} map.
  * <br>
- * <b>(**)</b> - this calculation is supported through {@link #rgb(double[])} method.
+ * <b>(**)</b> - this calculation is supported through {@link #rgbFor(double[], int, int)} method.
  * </p>
  *
  * @author dbrcina
@@ -59,6 +67,27 @@ public abstract class ClassType {
      */
     private static final Map<List<Double>, Class<? extends ClassType>> classesForDesiredOutputs = new HashMap<>();
 
+    /**
+     * Index returned for outputs which don't belong to any class, i.e. for {@link ClassNone}.
+     */
+    public static final int NONE_INDEX = -1;
+
+    // Lookup tables, filled by init().
+    private static int outputsLength;
+    private static ClassType[] classTypesByIndex = new ClassType[0];
+    private static final List<Constructor<? extends ClassType>> constructorsByIndex = new ArrayList<>();
+    private static final Map<Class<? extends ClassType>, Integer> indexesForClasses = new HashMap<>();
+    private static Constructor<ClassNone> noneConstructor;
+    private static ClassType none;
+    // sorted masks of desired outputs, where i-th bit is set if i-th output is 1.0, and index of each mask
+    private static long[] classMasks = new long[0];
+    private static int[] indexesForClassMasks = new int[0];
+    // index for each position of the greatest output
+    private static int[] indexesForPositions = new int[0];
+    // base color of each output
+    private static int[] palette = new int[0];
+    private static int[] colorsByIndex = new int[0];
+
     private final String id;
     private final double[] actualOutputs;
     private final Color color;
@@ -80,28 +109,19 @@ public abstract class ClassType {
     }
 
     /**
-     * Calculates RGB color based on provided array of <code>outputs</code>,
-     * which consists of doubles between <code>0.0</code> and <code>1.0</code> both inclusive.
-     * <hr>
-     * P.S. (FOR NOW) It expects an array with size of 3, so that each output represents RGB component respectively.
-     * This was implemented specifically for the multiclass classification with 3 different classes, so for more generic
-     * problem, new algorithm should be implemented!
+     * Calculates RGB color based on provided array of <code>outputs</code>. Outputs are clamped to
+     * [<code>0.0</code>, <code>1.0</code>] in place.
      *
      * @param outputs an array of doubles.
      * @return RGB color.
+     * @see #rgbFor(double[], int, int)
      */
     private Color rgb(double[] outputs) {
-        if (outputs.length != 3) {
-            throw new RuntimeException("ClassType::rgb(double[]) doesn't support array of length: " + outputs.length);
-        }
         for (int i = 0; i < outputs.length; i++) {
             if (outputs[i] < 0) outputs[i] = 0.0;
             if (outputs[i] > 1) outputs[i] = 1.0;
         }
-        int r = (int) (outputs[0] * 255);
-        int g = (int) (outputs[1] * 255);
-        int b = (int) (outputs[2] * 255);
-        return new Color(r, g, b);
+        return new Color(rgbFor(outputs, 0, outputs.length));
     }
 
     /**
@@ -126,6 +146,13 @@ public abstract class ClassType {
         return desiredOutputsForClasses.get((getClass().getName()));
     }
 
+    /**
+     * @return class index or {@link #NONE_INDEX} for {@link ClassNone}.
+     */
+    public int getIndex() {
+        return indexesForClasses.getOrDefault(getClass(), NONE_INDEX);
+    }
+
     /**
      * @return actual outputs.
      */
@@ -161,21 +188,127 @@ public abstract class ClassType {
     }
 
     /**
-     * @return collection of all class types.
+     * @return collection of cached instances of all class types, sorted by id. Position of a class type is its index.
      */
     public static Collection<ClassType> allClassTypes() {
-        return classesForDesiredOutputs.values().stream()
-                .map(clazz -> {
-                    try {
-                        return clazz.getConstructor().newInstance();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        System.exit(-1);
-                    }
-                    return null;
-                })
-                .sorted(Comparator.comparing(ClassType::getId))
-                .collect(Collectors.toList());
+        return List.of(classTypesByIndex);
+    }
+
+    /**
+     * @return number of class types, without {@link ClassNone}.
+     */
+    public static int numberOfClasses() {
+        return classTypesByIndex.length;
+    }
+
+    /**
+     * Returns cached instance of a class type. Its actual outputs are equal to desired outputs.
+     *
+     * @param index class index or {@link #NONE_INDEX}.
+     * @return an instance of ClassType.
+     * @throws IllegalArgumentException if there is no class with provided <code>index</code>.
+     */
+    public static ClassType forIndex(int index) {
+        if (index == NONE_INDEX) return none;
+        if (index < 0 || index >= classTypesByIndex.length) {
+            throw new IllegalArgumentException(String.format("ClassType::forIndex(int) invalid index %d!", index));
+        }
+        return classTypesByIndex[index];
+    }
+
+    /**
+     * Determines class index the same way as {@link #determineFor(double[])}, so each output is rounded to
+     * <code>0.0</code> or <code>1.0</code>, but without any allocation if there are at most 64 outputs.
+     *
+     * @param outputs array which holds outputs.
+     * @param offset  index of the first output.
+     * @param length  number of outputs.
+     * @return class index or {@link #NONE_INDEX} if rounded outputs don't belong to any class.
+     */
+    public static int indexFor(double[] outputs, int offset, int length) {
+        if (length != outputsLength) return NONE_INDEX;
+        if (length > Long.SIZE) return indexForRounded(outputs, offset, length);
+        long mask = 0;
+        for (int i = 0; i < length; i++) {
+            if (outputs[offset + i] > 0.5) mask |= 1L << i;
+        }
+        int position = Arrays.binarySearch(classMasks, mask);
+        return position < 0 ? NONE_INDEX : indexesForClassMasks[position];
+    }
+
+    // Outputs don't fit in a mask, so they are rounded into a list which is looked up in the map.
+    private static int indexForRounded(double[] outputs, int offset, int length) {
+        List<Double> rounded = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            rounded.add(outputs[offset + i] <= 0.5 ? 0.0 : 1.0);
+        }
+        Class<? extends ClassType> clazz = classesForDesiredOutputs.get(rounded);
+        return clazz == null ? NONE_INDEX : indexesForClasses.get(clazz);
+    }
+
+    /**
+     * Determines class index as the class whose desired output is <code>1.0</code> at the position of the greatest
+     * output. Unlike {@link #indexFor(double[], int, int)}, outputs always belong to some class if all classes are
+     * one-hot encoded.
+     *
+     * @param outputs array which holds outputs.
+     * @param offset  index of the first output.
+     * @param length  number of outputs.
+     * @return class index or {@link #NONE_INDEX} if no class has <code>1.0</code> at the position of the greatest
+     * output.
+     */
+    public static int argmaxIndexFor(double[] outputs, int offset, int length) {
+        if (length != outputsLength) return NONE_INDEX;
+        int position = 0;
+        for (int i = 1; i < length; i++) {
+            if (outputs[offset + i] > outputs[offset + position]) position = i;
+        }
+        return indexesForPositions[position];
+    }
+
+    /**
+     * Calculates RGB color for provided outputs. Each output has a base color, with hues evenly spaced around the
+     * color wheel, which gives red, green and blue for three outputs. Color is a sum of base colors weighted by
+     * outputs clamped to [<code>0.0</code>, <code>1.0</code>], so each class is shown in shades of its own color.
+     * <br>
+     * Outputs are not modified and nothing is allocated.
+     *
+     * @param outputs array which holds outputs.
+     * @param offset  index of the first output.
+     * @param length  number of outputs.
+     * @return RGB color packed into an int.
+     * @throws IllegalArgumentException if <code>length</code> doesn't match number of outputs of class types.
+     */
+    public static int rgbFor(double[] outputs, int offset, int length) {
+        if (length != palette.length) {
+            throw new IllegalArgumentException(String.format(
+                    "ClassType::rgbFor(double[], int, int) expected %d outputs but received %d!",
+                    palette.length, length));
+        }
+        double r = 0.0;
+        double g = 0.0;
+        double b = 0.0;
+        for (int i = 0; i < length; i++) {
+            double value = outputs[offset + i];
+            if (value < 0) value = 0.0;
+            if (value > 1) value = 1.0;
+            r += value * (palette[i] >> 16 & 0xFF);
+            g += value * (palette[i] >> 8 & 0xFF);
+            b += value * (palette[i] & 0xFF);
+        }
+        return Math.min((int) r, 255) << 16 | Math.min((int) g, 255) << 8 | Math.min((int) b, 255);
+    }
+
+    /**
+     * @param index class index.
+     * @return RGB color of desired outputs of the class, packed into an int.
+     * @throws IllegalArgumentException if there is no class with provided <code>index</code>.
+     */
+    public static int rgbForIndex(int index) {
+        if (index < 0 || index >= colorsByIndex.length) {
+            throw new IllegalArgumentException(String.format("ClassType::rgbForIndex(int) invalid index %d!", index));
+        }
+        return colorsByIndex[index];
     }
 
     /**
@@ -189,14 +322,11 @@ public abstract class ClassType {
      * @return an instance of ClassType.
      */
     public static ClassType determineFor(double[] outputs) {
-        List<Double> rounded = Arrays.stream(outputs)
-                .map(value -> value <= 0.5 ? 0.0 : 1.0)
-                .boxed()
-                .collect(Collectors.toUnmodifiableList());
+        int index = indexFor(outputs, 0, outputs.length);
         ClassType classType = null;
-        Class<? extends ClassType> clazz = classesForDesiredOutputs.getOrDefault(rounded, ClassNone.class);
         try {
-            Constructor<? extends ClassType> constructor = clazz.getConstructor(double[].class);
+            Constructor<? extends ClassType> constructor =
+                    index == NONE_INDEX ? noneConstructor : constructorsByIndex.get(index);
             classType = constructor.newInstance(outputs);
         } catch (Exception e) {
             e.printStackTrace();
@@ -232,10 +362,72 @@ public abstract class ClassType {
                         Arrays.stream(entry.getValue()).boxed().collect(Collectors.toList()),
                         clazz);
             }
+            initLookupTables();
         } catch (Exception e) {
             e.printStackTrace();
             System.exit(-1);
         }
     }
 
+    private static void initLookupTables() throws ReflectiveOperationException {
+        List<Class<? extends ClassType>> classes = new ArrayList<>(classesForDesiredOutputs.values());
+        outputsLength = desiredOutputsForClasses.values().iterator().next().length;
+        palette = new int[outputsLength];
+        for (int i = 0; i < outputsLength; i++) {
+            palette[i] = Color.HSBtoRGB(1f * i / outputsLength, 1f, 1f) & 0xFFFFFF;
+        }
+        List<ClassType> instances = new ArrayList<>();
+        for (Class<? extends ClassType> clazz : classes) {
+            instances.add(clazz.getConstructor().newInstance());
+        }
+        instances.sort(Comparator.comparing(ClassType::getId));
+        classTypesByIndex = instances.toArray(new ClassType[0]);
+        // init() can be called again, so tables from the previous call are dropped.
+        constructorsByIndex.clear();
+        indexesForClasses.clear();
+        colorsByIndex = new int[classTypesByIndex.length];
+        long[] masks = new long[classTypesByIndex.length];
+        boolean[] masked = new boolean[classTypesByIndex.length];
+        int numberOfMasks = 0;
+        indexesForPositions = new int[outputsLength];
+        Arrays.fill(indexesForPositions, NONE_INDEX);
+        for (int index = 0; index < classTypesByIndex.length; index++) {
+            ClassType classType = classTypesByIndex[index];
+            double[] desiredOutputs = classType.getDesiredOutputs();
+            constructorsByIndex.add(classType.getClass().getConstructor(double[].class));
+            indexesForClasses.put(classType.getClass(), index);
+            colorsByIndex[index] = classType.getColor().getRGB() & 0xFFFFFF;
+            long mask = 0;
+            int ones = 0;
+            int position = 0;
+            // Rounded outputs can only be equal to desired outputs which are 0.0 or 1.0.
+            boolean rounded = desiredOutputs.length <= Long.SIZE;
+            for (int i = 0; i < desiredOutputs.length; i++) {
+                if (desiredOutputs[i] > 0.5) {
+                    if (i < Long.SIZE) mask |= 1L << i;
+                    ones++;
+                    position = i;
+                }
+                rounded &= desiredOutputs[i] == 0.0 || desiredOutputs[i] == 1.0;
+            }
+            if (rounded) {
+                masks[index] = mask;
+                masked[index] = true;
+                numberOfMasks++;
+            }
+            if (ones == 1) indexesForPositions[position] = index;
+        }
+        classMasks = new long[numberOfMasks];
+        for (int index = 0, i = 0; index < masks.length; index++) {
+            if (masked[index]) classMasks[i++] = masks[index];
+        }
+        Arrays.sort(classMasks);
+        indexesForClassMasks = new int[numberOfMasks];
+        for (int index = 0; index < masks.length; index++) {
+            if (masked[index]) indexesForClassMasks[Arrays.binarySearch(classMasks, masks[index])] = index;
+        }
+        noneConstructor = ClassNone.class.getConstructor(double[].class);
+        none = new ClassNone(new double[outputsLength]);
+    }
+
 }
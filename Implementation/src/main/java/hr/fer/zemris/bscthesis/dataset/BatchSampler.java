@@ -0,0 +1,107 @@
+package hr.fer.zemris.bscthesis.dataset;
+
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Splits samples of a dataset into batches of sample indexes. It keeps one permutation of indexes, which is shuffled
+ * in place by {@link #shuffle()} with <b>Fisher-Yates</b> algorithm, and batch <code>b</code> consists of indexes
+ * <code>indexes()[batchFrom(b)]</code>, ..., <code>indexes()[batchTo(b) - 1]</code>. Each epoch therefore takes
+ * O(n) time and doesn't allocate anything, regardless of the batch size.
+ * <br>
+ * Permutation depends only on the state of provided {@link Random}, so the same seed gives the same batches.
+ *
+ * @author dbrcina
+ * @see ColumnarDataset#copyInputs(int[], int, int, double[])
+ */
+public class BatchSampler {
+
+    private final int[] indexes;
+    private final int batchSize;
+    private final Random random;
+
+    /**
+     * Constructor. Indexes are initially in ascending order.
+     *
+     * @param numberOfSamples number of samples.
+     * @param batchSize       number of samples per batch. The last batch can be smaller.
+     * @param random          random number generator used for shuffling.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if <code>numberOfSamples</code> is negative or <code>batchSize</code> is not
+     *                                  positive.
+     */
+    public BatchSampler(int numberOfSamples, int batchSize, Random random) {
+        if (numberOfSamples < 0 || batchSize <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "BatchSampler::BatchSampler(int, int, Random) invalid number of samples %d or batch size %d!",
+                    numberOfSamples, batchSize));
+        }
+        this.random = Objects.requireNonNull(random,
+                "BatchSampler::BatchSampler(int, int, Random) null values are not permitted!");
+        this.batchSize = batchSize;
+        indexes = new int[numberOfSamples];
+        for (int i = 0; i < numberOfSamples; i++) {
+            indexes[i] = i;
+        }
+    }
+
+    /**
+     * Shuffles indexes in place.
+     */
+    public void shuffle() {
+        for (int i = indexes.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = indexes[i];
+            indexes[i] = indexes[j];
+            indexes[j] = tmp;
+        }
+    }
+
+    /**
+     * Returns permutation of sample indexes. Returned array is not copied and it is changed by every
+     * {@link #shuffle()}, so it must not be modified.
+     *
+     * @return permutation of sample indexes.
+     */
+    public int[] indexes() {
+        return indexes;
+    }
+
+    /**
+     * @return number of samples.
+     */
+    public int numberOfSamples() {
+        return indexes.length;
+    }
+
+    /**
+     * @return number of samples per batch.
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return number of batches, including the last smaller one.
+     */
+    public int numberOfBatches() {
+        return (int) (((long) indexes.length + batchSize - 1) / batchSize);
+    }
+
+    /**
+     * @param batch batch index.
+     * @return position of the first index of the batch, inclusive.
+     */
+    public int batchFrom(int batch) {
+        return (int) Math.min((long) batch * batchSize, indexes.length);
+    }
+
+    /**
+     * @param batch batch index.
+     * @return position of the last index of the batch, exclusive.
+     */
+    public int batchTo(int batch) {
+        return (int) Math.min(((long) batch + 1) * batchSize, indexes.length);
+    }
+
+}
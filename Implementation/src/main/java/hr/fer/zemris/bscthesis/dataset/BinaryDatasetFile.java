@@ -0,0 +1,233 @@
+package hr.fer.zemris.bscthesis.dataset;
+
+import hr.fer.zemris.bscthesis.classes.ClassType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Binary file format of a {@link ColumnarDataset}. All values are little-endian:
+ * <ul>
+ *     <li>header of {@value #HEADER_SIZE} bytes: magic <code>ANND</code>, version (int), number of inputs (int),
+ *     number of classes (int), number of samples (long) and 8 reserved bytes,</li>
+ *     <li>one column of doubles per input,</li>
+ *     <li>column of labels, which are class indexes (int).</li>
+ * </ul>
+ * Files are read by {@link #map(Path)}, which maps each column into memory, so samples are read directly from the
+ * page cache without any parsing or copying. Each column is mapped separately, so a column can have up to 2 GB, i.e.
+ * about 268 million samples. Files which don't fit into memory can be read in blocks through
+ * {@link BinaryDatasetStream}.
+ *
+ * @author dbrcina
+ */
+public final class BinaryDatasetFile {
+
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    private static final int MAGIC = 'A' | 'N' << 8 | 'N' << 16 | 'D' << 24;
+    private static final int VERSION = 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private BinaryDatasetFile() {
+    }
+
+    /**
+     * Writes provided <code>dataset</code> into <code>file</code>. Existing file is overwritten.
+     *
+     * @param dataset dataset.
+     * @param file    output file.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     * @throws IOException          if the file could not be written.
+     */
+    public static void write(ColumnarDataset dataset, Path file) throws IOException {
+        Objects.requireNonNull(dataset,
+                "BinaryDatasetFile::write(ColumnarDataset, Path) null values are not permitted!");
+        Objects.requireNonNull(file,
+                "BinaryDatasetFile::write(ColumnarDataset, Path) null values are not permitted!");
+        int numberOfSamples = dataset.numberOfSamples();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(dataset.inputSize())
+                    .putInt(ClassType.numberOfClasses())
+                    .putLong(numberOfSamples)
+                    .putLong(0L);
+            for (int i = 0; i < dataset.inputSize(); i++) {
+                DoubleBuffer column = dataset.column(i);
+                while (column.hasRemaining()) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        drain(channel, buffer);
+                    }
+                    int count = Math.min(column.remaining(), buffer.remaining() / Double.BYTES);
+                    DoubleBuffer target = buffer.asDoubleBuffer();
+                    int limit = column.limit();
+                    column.limit(column.position() + count);
+                    target.put(column);
+                    column.limit(limit);
+                    buffer.position(buffer.position() + count * Double.BYTES);
+                }
+            }
+            IntBuffer labels = dataset.labels();
+            while (labels.hasRemaining()) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    drain(channel, buffer);
+                }
+                int count = Math.min(labels.remaining(), buffer.remaining() / Integer.BYTES);
+                IntBuffer target = buffer.asIntBuffer();
+                int limit = labels.limit();
+                labels.limit(labels.position() + count);
+                target.put(labels);
+                labels.limit(limit);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Maps provided <code>file</code> into memory. Returned dataset reads its columns directly from the file, which
+     * must not be modified while the dataset is used.
+     *
+     * @param file binary dataset file.
+     * @return dataset backed by the file.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if the file is not a valid dataset file or its number of classes doesn't
+     *                                  match class types.
+     * @throws IOException              if the file could not be read.
+     */
+    public static ColumnarDataset map(Path file) throws IOException {
+        Objects.requireNonNull(file, "BinaryDatasetFile::map(Path) null values are not permitted!");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = Header.read(channel, file);
+            long columnSize = (long) header.numberOfSamples * Double.BYTES;
+            if (columnSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format(
+                        "BinaryDatasetFile::map(Path) %s has too many samples to be mapped!", file.getFileName()));
+            }
+            DoubleBuffer[] columns = new DoubleBuffer[header.inputSize];
+            for (int i = 0; i < header.inputSize; i++) {
+                columns[i] = channel.map(FileChannel.MapMode.READ_ONLY, header.columnOffset(i), columnSize)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+            }
+            IntBuffer labels = channel.map(FileChannel.MapMode.READ_ONLY, header.labelsOffset(),
+                    (long) header.numberOfSamples * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer();
+            return new ColumnarDataset(columns, labels);
+        }
+    }
+
+    /**
+     * @param file file.
+     * @return <code>true</code> if provided <code>file</code> starts with the magic of this format.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     * @throws IOException          if the file could not be read.
+     */
+    public static boolean isBinary(Path file) throws IOException {
+        Objects.requireNonNull(file, "BinaryDatasetFile::isBinary(Path) null values are not permitted!");
+        if (Files.size(file) < HEADER_SIZE) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel);
+            return header != null && header.getInt(0) == MAGIC;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) return null;
+        }
+        return header;
+    }
+
+    /**
+     * Validated header of a dataset file.
+     */
+    static final class Header {
+
+        final int inputSize;
+        final int numberOfSamples;
+
+        private Header(int inputSize, int numberOfSamples) {
+            this.inputSize = inputSize;
+            this.numberOfSamples = numberOfSamples;
+        }
+
+        /**
+         * Reads and validates the header of provided <code>channel</code>.
+         *
+         * @param channel channel of the file.
+         * @param file    file, used for messages.
+         * @return header.
+         * @throws IllegalArgumentException if the file is not a valid dataset file or its number of classes doesn't
+         *                                  match class types.
+         * @throws IOException              if the file could not be read.
+         */
+        static Header read(FileChannel channel, Path file) throws IOException {
+            ByteBuffer header = readHeader(channel);
+            if (header == null || header.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException(String.format(
+                        "BinaryDatasetFile::readHeader %s is not a dataset file!", file.getFileName()));
+            }
+            int version = header.getInt(4);
+            int inputSize = header.getInt(8);
+            int numberOfClasses = header.getInt(12);
+            long numberOfSamples = header.getLong(16);
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "BinaryDatasetFile::readHeader unsupported version %d!", version));
+            }
+            if (numberOfClasses != ClassType.numberOfClasses()) {
+                throw new IllegalArgumentException(String.format(
+                        "BinaryDatasetFile::readHeader file has %d classes, but there are %d class types!",
+                        numberOfClasses, ClassType.numberOfClasses()));
+            }
+            if (inputSize < 0 || numberOfSamples < 0 || numberOfSamples > Integer.MAX_VALUE
+                    || channel.size() != HEADER_SIZE + numberOfSamples * ((long) inputSize * Double.BYTES
+                    + Integer.BYTES)) {
+                throw new IllegalArgumentException(String.format(
+                        "BinaryDatasetFile::readHeader %s has invalid size!", file.getFileName()));
+            }
+            return new Header(inputSize, (int) numberOfSamples);
+        }
+
+        /**
+         * @param input input index.
+         * @return position of the first value of the column of the input.
+         */
+        long columnOffset(int input) {
+            return HEADER_SIZE + (long) input * numberOfSamples * Double.BYTES;
+        }
+
+        /**
+         * @return position of the first label.
+         */
+        long labelsOffset() {
+            return columnOffset(inputSize);
+        }
+
+    }
+
+}
@@ -0,0 +1,254 @@
+package hr.fer.zemris.bscthesis.dataset;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams a file of {@link BinaryDatasetFile} format in blocks of samples, so datasets which don't fit on the heap can
+ * be trained as well. A producer thread reads upcoming blocks from the file into a bounded pool of reusable
+ * {@link Block}s while the consumer trains the current one, so reading overlaps with training.
+ * <br>
+ * Each epoch visits all blocks in a random order and samples of each block are shuffled by its {@link BatchSampler},
+ * both by the producer thread. Epochs follow each other until the stream is closed, so the next epoch is prefetched
+ * too. Consumer takes blocks through {@link #next()}, which returns <code>null</code> at the end of an epoch, and
+ * gives them back through {@link #release(Block)}.
+ *
+ * @author dbrcina
+ */
+public class BinaryDatasetStream implements AutoCloseable {
+
+    /**
+     * Default number of samples per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    /**
+     * Default number of blocks in the pool.
+     */
+    public static final int DEFAULT_CAPACITY = 4;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final BinaryDatasetFile.Header header;
+    private final int blockSize;
+    private final int batchSize;
+    private final int numberOfBlocks;
+    private final Random random;
+    private final BlockingQueue<Block> free;
+    // Every epoch ends with endOfEpoch marker, so there can be more markers than blocks.
+    private final BlockingQueue<Block> filled;
+    private final Block endOfEpoch = new Block();
+    private final Thread producer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    /**
+     * Constructor. Opens provided <code>file</code> and starts reading the first epoch.
+     *
+     * @param file      binary dataset file.
+     * @param blockSize number of samples per block. The last block of an epoch can be smaller.
+     * @param batchSize number of samples per batch of each block.
+     * @param capacity  number of blocks in the pool.
+     * @param random    random number generator used for shuffling, only by the producer thread.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if the file is not a valid dataset file or some size is not positive.
+     * @throws IOException              if the file could not be read.
+     */
+    public BinaryDatasetStream(Path file, int blockSize, int batchSize, int capacity, Random random)
+            throws IOException {
+        this.file = Objects.requireNonNull(file,
+                "BinaryDatasetStream::BinaryDatasetStream null values are not permitted!");
+        this.random = Objects.requireNonNull(random,
+                "BinaryDatasetStream::BinaryDatasetStream null values are not permitted!");
+        if (blockSize <= 0 || batchSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "BinaryDatasetStream::BinaryDatasetStream invalid block size %d, batch size %d or capacity %d!",
+                    blockSize, batchSize, capacity));
+        }
+        this.blockSize = blockSize;
+        this.batchSize = batchSize;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            header = BinaryDatasetFile.Header.read(channel, file);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        numberOfBlocks = (int) (((long) header.numberOfSamples + blockSize - 1) / blockSize);
+        int poolSize = Math.max(1, Math.min(capacity, numberOfBlocks));
+        free = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            free.add(new Block(header.inputSize, Math.min(blockSize, header.numberOfSamples)));
+        }
+        filled = new ArrayBlockingQueue<>(2 * poolSize + 1);
+        producer = new Thread(this::produce, "dataset-stream-" + file.getFileName());
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * @return number of inputs of each sample.
+     */
+    public int inputSize() {
+        return header.inputSize;
+    }
+
+    /**
+     * @return number of samples of one epoch.
+     */
+    public int numberOfSamples() {
+        return header.numberOfSamples;
+    }
+
+    /**
+     * Waits for the next block of the current epoch.
+     *
+     * @return next block or <code>null</code> if the epoch is finished. Following call returns the first block of
+     * the next epoch.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     * @throws UncheckedIOException if the producer could not read the file.
+     */
+    public Block next() throws InterruptedException {
+        Block block = filled.take();
+        if (block != endOfEpoch) {
+            return block;
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("BinaryDatasetStream::next() could not read " + file.getFileName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Gives provided <code>block</code> back to the producer. Block must not be used afterwards.
+     *
+     * @param block block returned by {@link #next()}.
+     */
+    public void release(Block block) {
+        free.add(block);
+    }
+
+    /**
+     * Stops the producer and closes the file.
+     *
+     * @throws IOException if the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        producer.interrupt();
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void produce() {
+        int[] order = new int[numberOfBlocks];
+        for (int i = 0; i < numberOfBlocks; i++) {
+            order[i] = i;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.min(blockSize, header.numberOfSamples) * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (!closed) {
+                for (int i = numberOfBlocks - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                }
+                for (int index : order) {
+                    Block block = free.take();
+                    read(index, block, buffer);
+                    filled.put(block);
+                }
+                filled.put(endOfEpoch);
+            }
+        } catch (InterruptedException | ClosedByInterruptException e) {
+            // Stream is closed.
+        } catch (IOException e) {
+            failure = e;
+            try {
+                filled.put(endOfEpoch);
+            } catch (InterruptedException ignored) {
+                // Stream is closed.
+            }
+        }
+    }
+
+    private void read(int index, Block block, ByteBuffer buffer) throws IOException {
+        int from = index * blockSize;
+        int size = Math.min(blockSize, header.numberOfSamples - from);
+        for (int i = 0; i < header.inputSize; i++) {
+            readFully(buffer, size * Double.BYTES, header.columnOffset(i) + (long) from * Double.BYTES);
+            buffer.asDoubleBuffer().get(block.columns[i], 0, size);
+        }
+        readFully(buffer, size * Integer.BYTES, header.labelsOffset() + (long) from * Integer.BYTES);
+        buffer.asIntBuffer().get(block.labels, 0, size);
+        if (block.sampler == null || block.sampler.numberOfSamples() != size) {
+            block.sampler = new BatchSampler(size, batchSize, random);
+        }
+        block.sampler.shuffle();
+    }
+
+    private void readFully(ByteBuffer buffer, int length, long position) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("BinaryDatasetStream::read unexpected end of " + file.getFileName());
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Reusable block of samples. Only samples whose indexes are in {@link #sampler()} are valid, the rest of
+     * {@link #data()} holds samples of some previous block.
+     */
+    public static final class Block {
+
+        private final double[][] columns;
+        private final int[] labels;
+        private final ColumnarDataset data;
+        private BatchSampler sampler;
+
+        private Block() {
+            this(0, 0);
+        }
+
+        private Block(int inputSize, int size) {
+            columns = new double[inputSize][size];
+            labels = new int[size];
+            data = new ColumnarDataset(columns, labels);
+        }
+
+        /**
+         * @return samples of the block.
+         */
+        public ColumnarDataset data() {
+            return data;
+        }
+
+        /**
+         * @return shuffled batches of the block.
+         */
+        public BatchSampler sampler() {
+            return sampler;
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package hr.fer.zemris.bscthesis.dataset;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
@@ -7,6 +8,8 @@ import java.util.function.Consumer;
 /**
  * An implementation of {@link Dataset}. It receives a collection of {@link Sample}s through
  * {@link #setSamples(List)} method where inputs are represented by 2D points from Cartesian coordinate system.
+ * <br>
+ * Samples can also be loaded from a CSV or TSV file through {@link #loadDataset(Path)}, see {@link TextDatasetLoader}.
  *
  * @author dbrcina
  */
@@ -26,14 +29,28 @@ public class Cartesian2DDataset implements Dataset {
 
     @Override
     public List<Sample> shuffleSamples() {
-        List<Sample> shuffled = new LinkedList<>(samples);
+        List<Sample> shuffled = new ArrayList<>(samples);
         Collections.shuffle(shuffled);
         return shuffled;
     }
 
+    /**
+     * Loads samples from a CSV or TSV file with lines <code>x,y,label</code>, using all available processors.
+     *
+     * @param file dataset definition.
+     * @throws IOException              if the file could not be read.
+     * @throws IllegalArgumentException if some line is invalid or lines don't hold 2D points.
+     * @see TextDatasetLoader
+     */
     @Override
-    public void loadDataset(Path file) {
-        throw new RuntimeException("Cartesian2DDataset::loadDataset(Path) is currently not supported.");
+    public void loadDataset(Path file) throws IOException {
+        List<Sample> loaded = new TextDatasetLoader().load(file);
+        if (!loaded.isEmpty() && loaded.get(0).getInputs().length != 2) {
+            throw new IllegalArgumentException(String.format(
+                    "Cartesian2DDataset::loadDataset(Path) expected 2D points but received %d inputs!",
+                    loaded.get(0).getInputs().length));
+        }
+        setSamples(loaded);
     }
 
     @Override
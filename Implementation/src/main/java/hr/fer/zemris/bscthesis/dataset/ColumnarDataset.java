@@ -0,0 +1,385 @@
+package hr.fer.zemris.bscthesis.dataset;
+
+import hr.fer.zemris.bscthesis.classes.ClassType;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An implementation of {@link Dataset} which stores samples in columns of primitives instead of {@link Sample}
+ * objects. Each input is one column of doubles and labels are one column of class indexes, see
+ * {@link ClassType#getIndex()}. Outputs are not stored, they are desired outputs of the class of each sample, i.e.
+ * one-hot vectors, and they are copied on demand.
+ * <br>
+ * Columns are {@link DoubleBuffer}s and an {@link IntBuffer}, so they can be on the heap, off the heap or in a memory
+ * mapped file, see {@link BinaryDatasetFile}. A sample of two inputs takes 20 bytes, while a {@link Sample} with its
+ * arrays takes about 60 bytes.
+ * <br>
+ * Samples are read through primitive accessors, like {@link #getInput(int, int)} and
+ * {@link #copyInputs(int[], int, int, double[])}, which gather a batch into a row-major matrix, and
+ * {@link #view(int, int)} returns a range of samples which shares the columns. Methods of {@link Dataset} which work
+ * with {@link Sample}s create them on demand.
+ *
+ * @author dbrcina
+ */
+public class ColumnarDataset implements Dataset {
+
+    private DoubleBuffer[] columns;
+    private IntBuffer labels;
+    private int size;
+    // Desired outputs for each class index, cached on the first use.
+    private volatile double[][] outputsForLabels;
+
+    /**
+     * Constructor of an empty dataset. Samples are provided through {@link #setSamples(List)} or
+     * {@link #loadDataset(Path)}.
+     */
+    public ColumnarDataset() {
+        this(new DoubleBuffer[0], IntBuffer.allocate(0));
+    }
+
+    /**
+     * Constructor which wraps provided arrays, without copying them.
+     *
+     * @param columns one array of values per input.
+     * @param labels  class index of each sample.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if columns and labels have different lengths.
+     */
+    public ColumnarDataset(double[][] columns, int[] labels) {
+        this(wrap(columns), IntBuffer.wrap(Objects.requireNonNull(labels,
+                "ColumnarDataset::ColumnarDataset(double[][], int[]) null values are not permitted!")));
+    }
+
+    /**
+     * Constructor which uses remaining elements of provided buffers, without copying them. Buffers must not be
+     * modified afterwards.
+     *
+     * @param columns one buffer of values per input.
+     * @param labels  class index of each sample.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if columns and labels have different lengths.
+     */
+    public ColumnarDataset(DoubleBuffer[] columns, IntBuffer labels) {
+        setColumns(columns, labels);
+    }
+
+    /**
+     * Returns provided <code>dataset</code> if it is already a {@link ColumnarDataset}, otherwise copies its samples
+     * into columns on the heap.
+     *
+     * @param dataset dataset.
+     * @return columnar dataset with the same samples.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalArgumentException if samples have different number of inputs or don't belong to any class.
+     */
+    public static ColumnarDataset of(Dataset dataset) {
+        Objects.requireNonNull(dataset, "ColumnarDataset::of(Dataset) null values are not permitted!");
+        if (dataset instanceof ColumnarDataset) {
+            return (ColumnarDataset) dataset;
+        }
+        ColumnarDataset columnar = new ColumnarDataset();
+        columnar.copySamples(dataset, dataset.numberOfSamples());
+        return columnar;
+    }
+
+    private static DoubleBuffer[] wrap(double[][] columns) {
+        Objects.requireNonNull(columns,
+                "ColumnarDataset::ColumnarDataset(double[][], int[]) null values are not permitted!");
+        DoubleBuffer[] buffers = new DoubleBuffer[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            buffers[i] = DoubleBuffer.wrap(Objects.requireNonNull(columns[i],
+                    "ColumnarDataset::ColumnarDataset(double[][], int[]) null values are not permitted!"));
+        }
+        return buffers;
+    }
+
+    private void setColumns(DoubleBuffer[] columns, IntBuffer labels) {
+        Objects.requireNonNull(columns, "ColumnarDataset::setColumns null values are not permitted!");
+        Objects.requireNonNull(labels, "ColumnarDataset::setColumns null values are not permitted!");
+        DoubleBuffer[] slices = new DoubleBuffer[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Objects.requireNonNull(columns[i], "ColumnarDataset::setColumns null values are not permitted!");
+            if (columns[i].remaining() != labels.remaining()) {
+                throw new IllegalArgumentException(String.format(
+                        "ColumnarDataset::setColumns column %d has %d values, but there are %d labels!",
+                        i, columns[i].remaining(), labels.remaining()));
+            }
+            slices[i] = columns[i].slice();
+        }
+        this.columns = slices;
+        this.labels = labels.slice();
+        this.size = labels.remaining();
+    }
+
+    /**
+     * @return number of inputs of each sample.
+     */
+    public int inputSize() {
+        return columns.length;
+    }
+
+    /**
+     * @param sample sample index.
+     * @param input  input index.
+     * @return value of the input of the sample.
+     */
+    public double getInput(int sample, int input) {
+        return columns[input].get(sample);
+    }
+
+    /**
+     * @param sample sample index.
+     * @return class index of the sample.
+     */
+    public int getLabel(int sample) {
+        return labels.get(sample);
+    }
+
+    /**
+     * @param sample sample index.
+     * @return cached instance of the class of the sample.
+     * @see ClassType#forIndex(int)
+     */
+    public ClassType getClassType(int sample) {
+        return ClassType.forIndex(labels.get(sample));
+    }
+
+    /**
+     * @param input input index.
+     * @return read-only view of the column of the input.
+     */
+    public DoubleBuffer column(int input) {
+        return columns[input].asReadOnlyBuffer();
+    }
+
+    /**
+     * @return read-only view of the column of labels.
+     */
+    public IntBuffer labels() {
+        return labels.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns samples [<code>from</code>, <code>to</code>) as a dataset which shares columns with this one.
+     *
+     * @param from index of the first sample, inclusive.
+     * @param to   index of the last sample, exclusive.
+     * @return view of the samples.
+     * @throws IndexOutOfBoundsException if the range is invalid.
+     */
+    public ColumnarDataset view(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        DoubleBuffer[] viewColumns = new DoubleBuffer[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            viewColumns[i] = columns[i].slice(from, to - from);
+        }
+        return new ColumnarDataset(viewColumns, labels.slice(from, to - from));
+    }
+
+    /**
+     * Copies inputs of samples [<code>from</code>, <code>to</code>) into a row-major matrix with one sample per row.
+     *
+     * @param from        index of the first sample, inclusive.
+     * @param to          index of the last sample, exclusive.
+     * @param destination row-major matrix of inputs.
+     */
+    public void copyInputs(int from, int to, double[] destination) {
+        int inputSize = columns.length;
+        for (int i = 0; i < inputSize; i++) {
+            DoubleBuffer column = columns[i];
+            for (int s = from, offset = i; s < to; s++, offset += inputSize) {
+                destination[offset] = column.get(s);
+            }
+        }
+    }
+
+    /**
+     * Copies inputs of samples <code>indexes[from]</code>, ..., <code>indexes[to - 1]</code> into a row-major matrix
+     * with one sample per row.
+     *
+     * @param indexes     sample indexes.
+     * @param from        position of the first index, inclusive.
+     * @param to          position of the last index, exclusive.
+     * @param destination row-major matrix of inputs.
+     */
+    public void copyInputs(int[] indexes, int from, int to, double[] destination) {
+        int inputSize = columns.length;
+        for (int i = 0; i < inputSize; i++) {
+            DoubleBuffer column = columns[i];
+            for (int s = from, offset = i; s < to; s++, offset += inputSize) {
+                destination[offset] = column.get(indexes[s]);
+            }
+        }
+    }
+
+    /**
+     * Copies desired outputs of samples [<code>from</code>, <code>to</code>) into a row-major matrix with one sample
+     * per row.
+     *
+     * @param from        index of the first sample, inclusive.
+     * @param to          index of the last sample, exclusive.
+     * @param destination row-major matrix of outputs.
+     */
+    public void copyOutputs(int from, int to, double[] destination) {
+        double[][] outputs = outputsForLabels();
+        for (int s = from, offset = 0; s < to; s++) {
+            double[] sampleOutputs = outputs[labels.get(s)];
+            System.arraycopy(sampleOutputs, 0, destination, offset, sampleOutputs.length);
+            offset += sampleOutputs.length;
+        }
+    }
+
+    /**
+     * Copies desired outputs of samples <code>indexes[from]</code>, ..., <code>indexes[to - 1]</code> into a
+     * row-major matrix with one sample per row.
+     *
+     * @param indexes     sample indexes.
+     * @param from        position of the first index, inclusive.
+     * @param to          position of the last index, exclusive.
+     * @param destination row-major matrix of outputs.
+     */
+    public void copyOutputs(int[] indexes, int from, int to, double[] destination) {
+        double[][] outputs = outputsForLabels();
+        for (int s = from, offset = 0; s < to; s++) {
+            double[] sampleOutputs = outputs[labels.get(indexes[s])];
+            System.arraycopy(sampleOutputs, 0, destination, offset, sampleOutputs.length);
+            offset += sampleOutputs.length;
+        }
+    }
+
+    private double[][] outputsForLabels() {
+        double[][] outputs = outputsForLabels;
+        if (outputs == null) {
+            outputs = new double[ClassType.numberOfClasses()][];
+            for (int i = 0; i < outputs.length; i++) {
+                outputs[i] = ClassType.forIndex(i).getDesiredOutputs();
+            }
+            outputsForLabels = outputs;
+        }
+        return outputs;
+    }
+
+    /**
+     * Creates a new {@link Sample} with a copy of inputs of the sample.
+     *
+     * @param sample sample index.
+     * @return new sample.
+     */
+    public Sample getSample(int sample) {
+        double[] inputs = new double[columns.length];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = columns[i].get(sample);
+        }
+        ClassType classType = getClassType(sample);
+        return new Sample(inputs, classType.getDesiredOutputs(), classType);
+    }
+
+    /**
+     * Copies provided samples into columns on the heap.
+     *
+     * @param samples list of samples.
+     * @throws NullPointerException     if provided list is <code>null</code>.
+     * @throws IllegalArgumentException if samples have different number of inputs or don't belong to any class.
+     */
+    @Override
+    public void setSamples(List<Sample> samples) {
+        Objects.requireNonNull(samples, "ColumnarDataset::setSamples(List) null values are not permitted!");
+        copySamples(samples, samples.size());
+    }
+
+    private void copySamples(Iterable<Sample> samples, int numberOfSamples) {
+        double[][] newColumns = new double[0][];
+        int[] newLabels = new int[numberOfSamples];
+        int s = 0;
+        for (Sample sample : samples) {
+            double[] inputs = sample.getInputs();
+            if (s == 0) {
+                newColumns = new double[inputs.length][numberOfSamples];
+            }
+            int inputSize = newColumns.length;
+            if (inputs.length != inputSize) {
+                throw new IllegalArgumentException(String.format(
+                        "ColumnarDataset::copySamples expected %d inputs but sample %d has %d!",
+                        inputSize, s, inputs.length));
+            }
+            int label = sample.getClassType().getIndex();
+            if (label == ClassType.NONE_INDEX) {
+                throw new IllegalArgumentException(String.format(
+                        "ColumnarDataset::copySamples sample %d doesn't belong to any class!", s));
+            }
+            for (int i = 0; i < inputSize; i++) {
+                newColumns[i][s] = inputs[i];
+            }
+            newLabels[s++] = label;
+        }
+        setColumns(wrap(newColumns), IntBuffer.wrap(newLabels));
+    }
+
+    @Override
+    public int numberOfSamples() {
+        return size;
+    }
+
+    /**
+     * Creates new samples and shuffles them. Training shouldn't need this, since it allocates a sample per row.
+     *
+     * @return new shuffled list of samples.
+     */
+    @Override
+    public List<Sample> shuffleSamples() {
+        List<Sample> shuffled = new ArrayList<>(size);
+        for (int s = 0; s < size; s++) {
+            shuffled.add(getSample(s));
+        }
+        Collections.shuffle(shuffled);
+        return shuffled;
+    }
+
+    /**
+     * Maps a binary dataset file into memory, or loads samples from a CSV or TSV file directly into columns on the
+     * heap, using all available processors.
+     *
+     * @param file dataset definition.
+     * @throws IOException              if the file could not be read.
+     * @throws IllegalArgumentException if the file is invalid.
+     * @see BinaryDatasetFile#map(Path)
+     * @see TextDatasetLoader#loadColumnar(Path)
+     */
+    @Override
+    public void loadDataset(Path file) throws IOException {
+        ColumnarDataset loaded = BinaryDatasetFile.isBinary(file) ? BinaryDatasetFile.map(file)
+                : new TextDatasetLoader().loadColumnar(file);
+        setColumns(loaded.columns, loaded.labels);
+    }
+
+    /**
+     * Returned iterator creates a new {@link Sample} for each row.
+     */
+    @Override
+    public Iterator<Sample> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Sample next() {
+                if (next >= size) throw new NoSuchElementException();
+                return getSample(next++);
+            }
+        };
+    }
+
+}
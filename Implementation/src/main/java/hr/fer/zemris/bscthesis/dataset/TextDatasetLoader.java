@@ -0,0 +1,542 @@
+package hr.fer.zemris.bscthesis.dataset;
+
+import hr.fer.zemris.bscthesis.classes.ClassType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads {@link Sample}s from a delimited text file, like CSV or TSV. Each line holds inputs followed by a label:
+ * <br>
+ * <code>0.25,-1.5,CLASS_A</code>
+ * <br>
+ * Fields are separated by a tab, a comma or a semicolon, whichever is found first in the first line. Label is an id
+ * of a {@link ClassType} or its index, so class types need to be initialized through {@link ClassType#init()}. All
+ * lines need to have the same number of fields. Empty lines and lines starting with <code>#</code> are skipped, and
+ * so is the first line if its first field is not a number, i.e. if it is a header.
+ * <br>
+ * File is split into chunks at line ends and chunks are parsed in parallel, directly from bytes. Numbers in common
+ * decimal notation are parsed without allocation whenever the result is exact, others through
+ * {@link Double#parseDouble(String)}, so values are always the same as with {@link Double#parseDouble(String)}.
+ * Samples are returned in the order of lines, either as {@link Sample}s or as a {@link ColumnarDataset}, which needs
+ * a fraction of memory for large files.
+ *
+ * @author dbrcina
+ */
+public class TextDatasetLoader {
+
+    // Chunks are not smaller than 1 MB, and there are up to 4 chunks per thread for balancing.
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Exact powers of ten, used for fast parsing of numbers.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int parallelism;
+
+    /**
+     * Constructor which uses all available processors.
+     */
+    public TextDatasetLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism number of threads used for parsing.
+     * @throws IllegalArgumentException if <code>parallelism</code> is not positive.
+     */
+    public TextDatasetLoader(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "TextDatasetLoader::TextDatasetLoader(int) invalid parallelism %d!", parallelism));
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Loads samples from provided <code>file</code> and prints load throughput.
+     *
+     * @param file dataset file.
+     * @return list of samples, in the order of lines.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalStateException    if class types are not initialized.
+     * @throws IllegalArgumentException if some line is invalid.
+     * @throws IOException              if the file could not be read.
+     */
+    public List<Sample> load(Path file) throws IOException {
+        long start = System.nanoTime();
+        Parsed parsed = parse(file);
+        List<Sample> samples = new ArrayList<>(parsed.numberOfSamples());
+        for (ChunkParser chunk : parsed.chunks) {
+            for (int s = 0, offset = 0; s < chunk.size; s++, offset += parsed.inputSize) {
+                ClassType classType = ClassType.forIndex(chunk.labels[s]);
+                samples.add(new Sample(Arrays.copyOfRange(chunk.inputs, offset, offset + parsed.inputSize),
+                        classType.getDesiredOutputs(), classType));
+            }
+        }
+        parsed.report(file, samples.size(), start);
+        return samples;
+    }
+
+    /**
+     * Loads samples from provided <code>file</code> into columns on the heap, without creating any {@link Sample},
+     * and prints load throughput.
+     *
+     * @param file dataset file.
+     * @return dataset, in the order of lines.
+     * @throws NullPointerException     if <code>null</code> value is provided.
+     * @throws IllegalStateException    if class types are not initialized.
+     * @throws IllegalArgumentException if some line is invalid.
+     * @throws IOException              if the file could not be read.
+     */
+    public ColumnarDataset loadColumnar(Path file) throws IOException {
+        long start = System.nanoTime();
+        Parsed parsed = parse(file);
+        int numberOfSamples = parsed.numberOfSamples();
+        double[][] columns = new double[parsed.inputSize][numberOfSamples];
+        int[] labels = new int[numberOfSamples];
+        int first = 0;
+        for (ChunkParser chunk : parsed.chunks) {
+            for (int i = 0; i < parsed.inputSize; i++) {
+                double[] column = columns[i];
+                for (int s = 0, offset = i; s < chunk.size; s++, offset += parsed.inputSize) {
+                    column[first + s] = chunk.inputs[offset];
+                }
+            }
+            System.arraycopy(chunk.labels, 0, labels, first, chunk.size);
+            first += chunk.size;
+        }
+        parsed.report(file, numberOfSamples, start);
+        return new ColumnarDataset(columns, labels);
+    }
+
+    private Parsed parse(Path file) throws IOException {
+        Objects.requireNonNull(file, "TextDatasetLoader::load(Path) null values are not permitted!");
+        if (ClassType.numberOfClasses() == 0) {
+            throw new IllegalStateException("TextDatasetLoader::load(Path) class types are not initialized!");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Format format = Format.detect(channel, file);
+            if (format == null) {
+                return new Parsed(List.of(), 0, size, 1);
+            }
+            long[] bounds = split(channel, format.dataStart, size);
+            List<ChunkParser> parsers = new ArrayList<>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                parsers.add(new ChunkParser(channel, bounds[i], bounds[i + 1], format));
+            }
+            int threads = Math.min(parallelism, parsers.size());
+            if (threads == 1) {
+                for (ChunkParser parser : parsers) {
+                    parser.call();
+                }
+            } else {
+                parseInParallel(parsers, threads);
+            }
+            return new Parsed(parsers, format.fields - 1, size, threads);
+        }
+    }
+
+    private static void parseInParallel(List<ChunkParser> parsers, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<ChunkParser> result : pool.invokeAll(parsers)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("TextDatasetLoader::load(Path) interrupted!", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Splits range [<code>dataStart</code>, <code>size</code>) into chunks which start right after a line end.
+     *
+     * @return bounds of chunks, where i-th chunk is [bounds[i], bounds[i + 1]).
+     */
+    private long[] split(FileChannel channel, long dataStart, long size) throws IOException {
+        long dataSize = size - dataStart;
+        long chunks = Math.max(1, Math.min(dataSize / MIN_CHUNK_SIZE, (long) parallelism * CHUNKS_PER_THREAD));
+        if (parallelism == 1) chunks = 1;
+        long[] bounds = new long[(int) chunks + 1];
+        bounds[0] = dataStart;
+        bounds[bounds.length - 1] = size;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunks; i++) {
+            long position = Math.max(dataStart + dataSize * i / chunks, bounds[i - 1]);
+            bounds[i] = lineStartAfter(channel, position, size, buffer);
+        }
+        return bounds;
+    }
+
+    // Returns position right after the first line end at or after position - 1.
+    private static long lineStartAfter(FileChannel channel, long position, long size, ByteBuffer buffer)
+            throws IOException {
+        long current = position - 1;
+        while (current < size) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) break;
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') return current + i + 1;
+            }
+            current += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parsed chunks of a file.
+     */
+    private static class Parsed {
+
+        final List<ChunkParser> chunks;
+        final int inputSize;
+        final long size;
+        final int threads;
+
+        Parsed(List<ChunkParser> chunks, int inputSize, long size, int threads) {
+            this.chunks = chunks;
+            this.inputSize = inputSize;
+            this.size = size;
+            this.threads = threads;
+        }
+
+        int numberOfSamples() {
+            long total = 0;
+            for (ChunkParser chunk : chunks) {
+                total += chunk.size;
+            }
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format(
+                        "TextDatasetLoader::load(Path) %d samples are too many!", total));
+            }
+            return (int) total;
+        }
+
+        void report(Path file, int numberOfSamples, long start) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(
+                    "Loaded %d samples (%.1f MB) from %s in %.3f s (%.1f MB/s) with %d thread(s).",
+                    numberOfSamples, size / 1e6, file.getFileName(), seconds, size / 1e6 / seconds, threads));
+        }
+
+    }
+
+    /**
+     * Delimiter and layout of a file, detected from its first line.
+     */
+    private static class Format {
+
+        final byte delimiter;
+        final int fields;
+        // Position of the first line which is not a header.
+        final long dataStart;
+        // Ids of class types as bytes, position is class index.
+        final byte[][] ids;
+
+        Format(byte delimiter, int fields, long dataStart) {
+            this.delimiter = delimiter;
+            this.fields = fields;
+            this.dataStart = dataStart;
+            List<ClassType> classTypes = new ArrayList<>(ClassType.allClassTypes());
+            ids = new byte[classTypes.size()][];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = classTypes.get(i).getId().getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * @return format of the file or <code>null</code> if it holds no lines.
+         */
+        static Format detect(FileChannel channel, Path file) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                // Line is read into the buffer, which grows if the line is longer.
+                buffer.clear();
+                int length = 0;
+                int end = -1;
+                while (end < 0) {
+                    int read = channel.read(buffer, position + length);
+                    if (read <= 0) break;
+                    for (int i = length; i < length + read; i++) {
+                        if (buffer.array()[i] == '\n') {
+                            end = i;
+                            break;
+                        }
+                    }
+                    length += read;
+                    if (end < 0 && !buffer.hasRemaining()) {
+                        buffer = ByteBuffer.allocate(2 * buffer.capacity()).put(buffer.flip());
+                    }
+                }
+                byte[] bytes = buffer.array();
+                int lineEnd = end < 0 ? length : end;
+                long next = position + lineEnd + 1;
+                int from = skipSpaces(bytes, 0, lineEnd);
+                int to = trimEnd(bytes, from, lineEnd);
+                if (from == to || bytes[from] == '#') {
+                    position = next;
+                    continue;
+                }
+                byte delimiter = ',';
+                int fields = 1;
+                for (int i = from; i < to; i++) {
+                    if (bytes[i] == '\t' || bytes[i] == ',' || bytes[i] == ';') {
+                        delimiter = bytes[i];
+                        break;
+                    }
+                }
+                for (int i = from; i < to; i++) {
+                    if (bytes[i] == delimiter) fields++;
+                }
+                if (fields < 2) {
+                    throw new IllegalArgumentException(String.format(
+                            "TextDatasetLoader::load(Path) %s needs at least one input and a label per line!",
+                            file.getFileName()));
+                }
+                int firstEnd = from;
+                while (firstEnd < to && bytes[firstEnd] != delimiter) firstEnd++;
+                boolean header;
+                try {
+                    parseDouble(bytes, from, trimEnd(bytes, from, firstEnd));
+                    header = false;
+                } catch (NumberFormatException e) {
+                    header = true;
+                }
+                return new Format(delimiter, fields, header ? Math.min(next, size) : position);
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * Parses lines of one chunk of the file into a row-major matrix of inputs and an array of class indexes.
+     */
+    private static class ChunkParser implements Callable<ChunkParser> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final Format format;
+        private final int inputSize;
+        double[] inputs;
+        int[] labels;
+        int size;
+
+        ChunkParser(FileChannel channel, long start, long end, Format format) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.format = format;
+            inputSize = format.fields - 1;
+            // Capacity is guessed from the chunk size and grows if needed.
+            int capacity = (int) Math.min((end - start) / (8L * format.fields) + 16, Integer.MAX_VALUE / inputSize);
+            inputs = new double[capacity * inputSize];
+            labels = new int[capacity];
+        }
+
+        @Override
+        public ChunkParser call() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = start;
+            // Bytes [0, filled) of the buffer hold bytes starting at position.
+            int filled = 0;
+            while (position + filled < end) {
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                buffer.position(filled);
+                int read = channel.read(buffer, position + filled);
+                if (read <= 0) break;
+                filled += read;
+                byte[] bytes = buffer.array();
+                boolean last = position + filled >= end;
+                int lineStart = 0;
+                for (int i = 0; i < filled; i++) {
+                    if (bytes[i] == '\n') {
+                        parseLine(bytes, lineStart, i, position + lineStart);
+                        lineStart = i + 1;
+                    }
+                }
+                if (last && lineStart < filled) {
+                    parseLine(bytes, lineStart, filled, position + lineStart);
+                    lineStart = filled;
+                }
+                // Unfinished line is moved to the beginning, buffer grows if the line doesn't fit.
+                System.arraycopy(bytes, lineStart, bytes, 0, filled - lineStart);
+                position += lineStart;
+                filled -= lineStart;
+                if (filled == buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(2 * buffer.capacity()).put(buffer.clear());
+                }
+            }
+            return this;
+        }
+
+        private void parseLine(byte[] bytes, int from, int to, long offset) {
+            from = skipSpaces(bytes, from, to);
+            to = trimEnd(bytes, from, to);
+            if (from == to || bytes[from] == '#') return;
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, 2 * size);
+                inputs = Arrays.copyOf(inputs, 2 * size * inputSize);
+            }
+            int inputsOffset = size * inputSize;
+            int fieldStart = from;
+            for (int field = 0; field < inputSize; field++) {
+                int fieldEnd = fieldStart;
+                while (fieldEnd < to && bytes[fieldEnd] != format.delimiter) fieldEnd++;
+                // Label is after the last input.
+                if (fieldEnd == to) {
+                    throw invalidLine(bytes, from, to, offset, "too few fields");
+                }
+                int s = skipSpaces(bytes, fieldStart, fieldEnd);
+                try {
+                    inputs[inputsOffset + field] = parseDouble(bytes, s, trimEnd(bytes, s, fieldEnd));
+                } catch (NumberFormatException e) {
+                    throw invalidLine(bytes, from, to, offset, "invalid number");
+                }
+                fieldStart = fieldEnd + 1;
+            }
+            int labelStart = skipSpaces(bytes, fieldStart, to);
+            for (int i = labelStart; i < to; i++) {
+                if (bytes[i] == format.delimiter) {
+                    throw invalidLine(bytes, from, to, offset, "too many fields");
+                }
+            }
+            int labelEnd = to;
+            if (labelEnd - labelStart >= 2 && bytes[labelStart] == '"' && bytes[labelEnd - 1] == '"') {
+                labelStart++;
+                labelEnd--;
+            }
+            int label = labelFor(bytes, labelStart, labelEnd);
+            if (label == ClassType.NONE_INDEX) {
+                throw invalidLine(bytes, from, to, offset, "unknown label");
+            }
+            labels[size++] = label;
+        }
+
+        private int labelFor(byte[] bytes, int from, int to) {
+            byte[][] ids = format.ids;
+            int length = to - from;
+            for (int index = 0; index < ids.length; index++) {
+                byte[] label = ids[index];
+                if (label.length != length) continue;
+                int i = 0;
+                while (i < length && label[i] == bytes[from + i]) i++;
+                if (i == length) return index;
+            }
+            if (length == 0 || length > 9) return ClassType.NONE_INDEX;
+            int index = 0;
+            for (int i = from; i < to; i++) {
+                if (bytes[i] < '0' || bytes[i] > '9') return ClassType.NONE_INDEX;
+                index = index * 10 + bytes[i] - '0';
+            }
+            return index < ids.length ? index : ClassType.NONE_INDEX;
+        }
+
+        private static IllegalArgumentException invalidLine(byte[] bytes, int from, int to, long offset,
+                                                            String reason) {
+            return new IllegalArgumentException(String.format(
+                    "TextDatasetLoader::load(Path) %s in line at byte %d: %s",
+                    reason, offset, new String(bytes, from, to - from, StandardCharsets.UTF_8)));
+        }
+
+    }
+
+    private static int skipSpaces(byte[] bytes, int from, int to) {
+        while (from < to && bytes[from] == ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(byte[] bytes, int from, int to) {
+        while (to > from && (bytes[to - 1] == ' ' || bytes[to - 1] == '\r')) to--;
+        return to;
+    }
+
+    /**
+     * Parses a number from bytes [<code>from</code>, <code>to</code>). Numbers with at most 18 significant digits and
+     * a decimal exponent of at most 22 are calculated exactly by one multiplication or division, as in Clinger's fast
+     * path, all others are parsed by {@link Double#parseDouble(String)}.
+     *
+     * @throws NumberFormatException if bytes don't hold a number.
+     */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i++] == '-';
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean digits = false;
+        for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            digits = true;
+            mantissa = mantissa * 10 + bytes[i] - '0';
+            if (mantissa != 0) significantDigits++;
+        }
+        if (i < to && bytes[i] == '.') {
+            for (i++; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                digits = true;
+                mantissa = mantissa * 10 + bytes[i] - '0';
+                if (mantissa != 0) significantDigits++;
+                exponent--;
+            }
+        }
+        if (digits && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i++] == '-';
+            }
+            int value = 0;
+            int exponentStart = i;
+            for (; i < to && bytes[i] >= '0' && bytes[i] <= '9' && i - exponentStart < 5; i++) {
+                value = value * 10 + bytes[i] - '0';
+            }
+            if (i == exponentStart) digits = false;
+            exponent += negativeExponent ? -value : value;
+        }
+        if (digits && i == to && significantDigits <= 18) {
+            if (mantissa == 0) {
+                return negative ? -0.0 : 0.0;
+            }
+            if (mantissa < 1L << 53 && exponent >= -22 && exponent <= 22) {
+                double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+                        : mantissa / POWERS_OF_TEN[-exponent];
+                return negative ? -value : value;
+            }
+        }
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+
+}
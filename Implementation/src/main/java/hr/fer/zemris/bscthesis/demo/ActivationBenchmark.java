@@ -0,0 +1,155 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.afunction.FastSigmoid;
+import hr.fer.zemris.bscthesis.ann.afunction.FastTanh;
+import hr.fer.zemris.bscthesis.ann.afunction.Sigmoid;
+import hr.fer.zemris.bscthesis.ann.afunction.Tanh;
+import hr.fer.zemris.bscthesis.ann.backend.ArrayBackend;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.Dataset;
+import hr.fer.zemris.bscthesis.dataset.Sample;
+
+import java.util.Random;
+
+/**
+ * Compares approximate activation functions with the exact ones. For each pair it prints:
+ * <ol>
+ *     <li>maximum and mean absolute error on a dense grid of points,</li>
+ *     <li>throughput of {@link ActivationFunction#apply(double[], double[], int, int)},</li>
+ *     <li>impact on a decision map, where a network trained with the exact function is evaluated with both functions,
+ *     and accuracy of a network trained with the approximate function.</li>
+ * </ol>
+ * Arguments (all optional): number of samples and number of epochs.
+ *
+ * @author dbrcina
+ */
+public class ActivationBenchmark {
+
+    private static final int[] LAYERS = {2, 32, 32, 3};
+    private static final double ETA = 0.01;
+    private static final int BATCH_SIZE = 32;
+    private static final double ERROR_RANGE = 20;
+    private static final double ERROR_STEP = 1e-4;
+    private static final int BENCHMARK_LENGTH = 1 << 16;
+    private static final int BENCHMARK_REPETITIONS = 500;
+    private static final int MAP_SIZE = 256;
+
+    public static void main(String[] args) {
+        int numberOfSamples = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        ClassType.init();
+        Dataset dataset = Spirals.generate(numberOfSamples, new Random(42));
+
+        compare(new Sigmoid(), new FastSigmoid(), dataset, epochs);
+        compare(new Tanh(), new FastTanh(), dataset, epochs);
+    }
+
+    private static void compare(ActivationFunction exact, ActivationFunction fast, Dataset dataset, int epochs) {
+        System.out.println("---------- " + exact.getId() + " vs " + fast.getId() + " ----------");
+
+        // Approximation error.
+        double maxError = 0.0;
+        double sumError = 0.0;
+        long points = 0;
+        for (double x = -ERROR_RANGE; x <= ERROR_RANGE; x += ERROR_STEP, points++) {
+            double error = Math.abs(exact.value(x) - fast.value(x));
+            maxError = Math.max(maxError, error);
+            sumError += error;
+        }
+        System.out.println(String.format("Error on [%.0f, %.0f]: max = %.3e, mean = %.3e",
+                -ERROR_RANGE, ERROR_RANGE, maxError, sumError / points));
+
+        // Throughput.
+        double exactThroughput = throughput(exact);
+        double fastThroughput = throughput(fast);
+        System.out.println(String.format("Throughput: %s = %.1f M/s, %s = %.1f M/s, speedup = %.2fx",
+                exact.getId(), exactThroughput / 1e6, fast.getId(), fastThroughput / 1e6,
+                fastThroughput / exactThroughput));
+
+        // Impact on accuracy.
+        NeuralNetwork nn = train(exact, dataset, epochs);
+        double[][] weightsPerLayer = new double[LAYERS.length - 1][];
+        double[][] biasesPerLayer = new double[LAYERS.length - 1][];
+        for (int k = 0; k < LAYERS.length - 1; k++) {
+            weightsPerLayer[k] = new double[LAYERS[k + 1] * LAYERS[k]];
+            biasesPerLayer[k] = new double[LAYERS[k + 1]];
+        }
+        nn.getSnapshot().getParameters(weightsPerLayer, biasesPerLayer);
+        ArrayBackend backend = new ArrayBackend();
+        backend.setup(LAYERS);
+        backend.setParameters(weightsPerLayer, biasesPerLayer);
+
+        double[] grid = new double[MAP_SIZE * MAP_SIZE * 2];
+        for (int y = 0, i = 0; y < MAP_SIZE; y++) {
+            for (int x = 0; x < MAP_SIZE; x++, i += 2) {
+                grid[i] = 2.0 * x / (MAP_SIZE - 1) - 1;
+                grid[i + 1] = 2.0 * y / (MAP_SIZE - 1) - 1;
+            }
+        }
+        int outputSize = LAYERS[LAYERS.length - 1];
+        double[] exactOutputs = backend.feedForwardBatch(grid, MAP_SIZE * MAP_SIZE, exact).clone();
+        double[] fastOutputs = backend.feedForwardBatch(grid, MAP_SIZE * MAP_SIZE, fast);
+        int differentPixels = 0;
+        double maxOutputError = 0.0;
+        for (int offset = 0; offset < MAP_SIZE * MAP_SIZE * outputSize; offset += outputSize) {
+            if (ClassType.argmaxIndexFor(exactOutputs, offset, outputSize)
+                    != ClassType.argmaxIndexFor(fastOutputs, offset, outputSize)) {
+                differentPixels++;
+            }
+            for (int i = offset; i < offset + outputSize; i++) {
+                maxOutputError = Math.max(maxOutputError, Math.abs(exactOutputs[i] - fastOutputs[i]));
+            }
+        }
+        System.out.println(String.format(
+                "Decision map %dx%d of %s network evaluated with %s: %d different pixels, max output error = %.3e",
+                MAP_SIZE, MAP_SIZE, exact.getId(), fast.getId(), differentPixels, maxOutputError));
+
+        double exactAccuracy = accuracy(nn, dataset);
+        double fastAccuracy = accuracy(train(fast, dataset, epochs), dataset);
+        System.out.println(String.format("Accuracy after training: %s = %.2f%%, %s = %.2f%%",
+                exact.getId(), exactAccuracy, fast.getId(), fastAccuracy));
+    }
+
+    private static double throughput(ActivationFunction aFunction) {
+        Random rand = new Random(1);
+        double[] in = new double[BENCHMARK_LENGTH];
+        double[] out = new double[BENCHMARK_LENGTH];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = rand.nextGaussian() * 4;
+        }
+        // Warm up, so that the method is compiled.
+        for (int i = 0; i < BENCHMARK_REPETITIONS; i++) {
+            aFunction.apply(in, out, 0, in.length);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_REPETITIONS; i++) {
+            aFunction.apply(in, out, 0, in.length);
+        }
+        return (double) BENCHMARK_LENGTH * BENCHMARK_REPETITIONS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static NeuralNetwork train(ActivationFunction aFunction, Dataset dataset, int epochs) {
+        NeuralNetwork nn = new NeuralNetwork(LAYERS, aFunction, dataset);
+        nn.setLearningType(NeuralNetwork.LearningType.MINI_BATCH);
+        nn.setBatchSize(BATCH_SIZE);
+        nn.setLoss(Loss.CROSS_ENTROPY);
+        nn.train(epochs, 0.0, ETA);
+        return nn;
+    }
+
+    private static double accuracy(NeuralNetwork nn, Dataset dataset) {
+        int correct = 0;
+        for (Sample sample : dataset) {
+            double[] outputs = nn.feedForward(sample.getInputs());
+            if (ClassType.argmaxIndexFor(outputs, 0, outputs.length) == sample.getClassType().getIndex()) {
+                correct++;
+            }
+        }
+        return 100.0 * correct / dataset.numberOfSamples();
+    }
+
+}
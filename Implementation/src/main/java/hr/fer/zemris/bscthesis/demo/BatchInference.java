@@ -0,0 +1,301 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.ann.ModelCheckpoint;
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.BinaryDatasetFile;
+import hr.fer.zemris.bscthesis.dataset.ColumnarDataset;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Classifies points of a file with a model saved through {@link ModelCheckpoint}, without the GUI. Input is either a
+ * delimited text file with inputs of one point per line, or a file of {@link BinaryDatasetFile} format. Text lines
+ * can also hold a label after the inputs, which is ignored, so datasets can be classified directly. Empty lines and
+ * lines starting with <code>#</code> are skipped, and so is the first line if its first field is not a number.
+ * <br>
+ * Input is read in chunks of points by the main thread. Each chunk is parsed, feed forwarded as one batch through
+ * {@link ModelSnapshot#feedForwardBatch(double[], int, ModelSnapshot.Workspace)} and formatted by a pool of workers.
+ * At most two chunks per worker are in progress at once, so memory is bounded regardless of the file size. Results
+ * are written in the order of input, one line per point: class index followed by the outputs of the network.
+ * Throughput and latency of chunks are printed at the end.
+ * <br>
+ * Arguments: model file, input file, output file and optionally number of threads and chunk size.
+ *
+ * @author dbrcina
+ */
+public class BatchInference {
+
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+    private static final int CHUNKS_PER_THREAD = 2;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3 || args.length > 5) {
+            System.out.println("Expected arguments: <model file> <input file> <output file> [threads] [chunk size]");
+            return;
+        }
+        Path modelFile = Paths.get(args[0]);
+        Path input = Paths.get(args[1]);
+        Path output = Paths.get(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int chunkSize = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_CHUNK_SIZE;
+        if (threads < 1 || chunkSize < 1) {
+            System.out.println("Number of threads and chunk size must be positive.");
+            return;
+        }
+
+        ModelSnapshot snapshot;
+        try {
+            snapshot = ModelCheckpoint.load(modelFile).getSnapshot();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        ClassType.init();
+        int[] layers = snapshot.getLayers();
+        System.out.println(String.format("Loaded model %s with layers %s.",
+                modelFile.getFileName(), Arrays.toString(layers)));
+
+        BatchInference inference = new BatchInference(snapshot, threads, chunkSize);
+        long start = System.nanoTime();
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+            if (BinaryDatasetFile.isBinary(input)) {
+                inference.classify(BinaryDatasetFile.map(input), writer);
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                    inference.classify(reader, writer);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        } finally {
+            inference.shutdown();
+        }
+        inference.printSummary(System.nanoTime() - start, output);
+    }
+
+    private final ModelSnapshot snapshot;
+    private final int inputSize;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final ExecutorService pool;
+    private final ThreadLocal<ModelSnapshot.Workspace> workspaces;
+    private final Deque<Future<Chunk>> inProgress = new ArrayDeque<>();
+    private long[] latencies = new long[64];
+    private int numberOfChunks;
+    private long numberOfPoints;
+
+    private BatchInference(ModelSnapshot snapshot, int threads, int chunkSize) {
+        this.snapshot = snapshot;
+        this.inputSize = snapshot.getLayers()[0];
+        this.chunkSize = chunkSize;
+        maxChunks = CHUNKS_PER_THREAD * threads;
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-inference");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workspaces = ThreadLocal.withInitial(snapshot::newWorkspace);
+    }
+
+    private void classify(BufferedReader reader, Writer writer) throws IOException, InterruptedException {
+        String[] lines = new String[chunkSize];
+        int size = 0;
+        int points = 0;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            if (first) {
+                first = false;
+                if (!startsWithNumber(line)) continue;
+            }
+            lines[size++] = line;
+            if (size == chunkSize) {
+                submit(new Chunk(lines, points, size), writer);
+                points += size;
+                lines = new String[chunkSize];
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            submit(new Chunk(lines, points, size), writer);
+        }
+        drain(writer, 0);
+    }
+
+    private void classify(ColumnarDataset data, Writer writer) throws IOException, InterruptedException {
+        if (data.inputSize() != inputSize) {
+            throw new IllegalArgumentException(String.format(
+                    "BatchInference::classify dataset has %d inputs but model expects %d!",
+                    data.inputSize(), inputSize));
+        }
+        for (int from = 0; from < data.numberOfSamples(); from += chunkSize) {
+            int size = Math.min(chunkSize, data.numberOfSamples() - from);
+            submit(new Chunk(data, from, size), writer);
+        }
+        drain(writer, 0);
+    }
+
+    private void submit(Chunk chunk, Writer writer) throws IOException, InterruptedException {
+        drain(writer, maxChunks - 1);
+        chunk.submitted = System.nanoTime();
+        inProgress.add(pool.submit(() -> classify(chunk)));
+    }
+
+    // Writes finished chunks in order until at most provided number of chunks is in progress.
+    private void drain(Writer writer, int maxInProgress) throws IOException, InterruptedException {
+        while (inProgress.size() > maxInProgress) {
+            Chunk chunk;
+            try {
+                chunk = inProgress.remove().get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            writer.write(chunk.results);
+            if (numberOfChunks == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * numberOfChunks);
+            }
+            latencies[numberOfChunks++] = chunk.finished - chunk.submitted;
+            numberOfPoints += chunk.size;
+        }
+    }
+
+    private Chunk classify(Chunk chunk) {
+        double[] inputs = new double[chunk.size * inputSize];
+        if (chunk.lines != null) {
+            for (int i = 0; i < chunk.size; i++) {
+                parseInputs(chunk.lines[i], chunk.from + i, inputs, i * inputSize);
+            }
+        } else {
+            chunk.data.copyInputs(chunk.from, chunk.from + chunk.size, inputs);
+        }
+        double[] outputs = snapshot.feedForwardBatch(inputs, chunk.size, workspaces.get());
+
+        int outputSize = snapshot.getLayers()[snapshot.getLayers().length - 1];
+        StringBuilder sb = new StringBuilder(chunk.size * (outputSize + 1) * 12);
+        for (int i = 0; i < chunk.size; i++) {
+            int offset = i * outputSize;
+            sb.append(ClassType.argmaxIndexFor(outputs, offset, outputSize));
+            for (int j = 0; j < outputSize; j++) {
+                sb.append(',').append(outputs[offset + j]);
+            }
+            sb.append('\n');
+        }
+        chunk.results = sb.toString();
+        chunk.finished = System.nanoTime();
+        return chunk;
+    }
+
+    private void parseInputs(String line, long point, double[] inputs, int offset) {
+        int from = 0;
+        for (int i = 0; i < inputSize; i++) {
+            // Previous field ended with the line, or with a delimiter at its end.
+            if (from >= line.length()) {
+                throw new IllegalArgumentException(String.format(
+                        "BatchInference::parseInputs point %d has less than %d inputs!", point, inputSize));
+            }
+            int to = from;
+            while (to < line.length() && !isDelimiter(line.charAt(to))) {
+                to++;
+            }
+            try {
+                inputs[offset + i] = Double.parseDouble(line.substring(from, to));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format(
+                        "BatchInference::parseInputs point %d has invalid input '%s'!",
+                        point, line.substring(from, to)));
+            }
+            from = to + 1;
+        }
+    }
+
+    private void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void printSummary(long nanos, Path output) {
+        double seconds = nanos * 1e-9;
+        System.out.println(String.format("Classified %d points into %s in %.3f s, %.0f points/s.",
+                numberOfPoints, output.getFileName(), seconds, numberOfPoints / seconds));
+        if (numberOfChunks == 0) return;
+        long[] sorted = Arrays.copyOf(latencies, numberOfChunks);
+        Arrays.sort(sorted);
+        System.out.println(String.format(
+                "Latency of %d chunks of up to %d points: p50 %.3f ms, p99 %.3f ms, max %.3f ms.",
+                numberOfChunks, chunkSize, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6,
+                sorted[sorted.length - 1] / 1e6));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static boolean startsWithNumber(String line) {
+        int to = 0;
+        while (to < line.length() && !isDelimiter(line.charAt(to))) {
+            to++;
+        }
+        try {
+            Double.parseDouble(line.substring(0, to));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || c == ';' || c == '\t';
+    }
+
+    /**
+     * Chunk of points, either lines of a text file or a range of a dataset, and its results. <code>from</code> is
+     * index of the first point of the chunk.
+     */
+    private static final class Chunk {
+
+        private final String[] lines;
+        private final ColumnarDataset data;
+        private final int from;
+        private final int size;
+        private long submitted;
+        private long finished;
+        private String results;
+
+        private Chunk(String[] lines, int from, int size) {
+            this.lines = lines;
+            this.data = null;
+            this.from = from;
+            this.size = size;
+        }
+
+        private Chunk(ColumnarDataset data, int from, int size) {
+            this.lines = null;
+            this.data = data;
+            this.from = from;
+            this.size = size;
+        }
+
+    }
+
+}
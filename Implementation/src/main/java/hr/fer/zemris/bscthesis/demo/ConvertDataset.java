@@ -0,0 +1,46 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.BinaryDatasetFile;
+import hr.fer.zemris.bscthesis.dataset.ColumnarDataset;
+import hr.fer.zemris.bscthesis.dataset.TextDatasetLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts a CSV or TSV dataset into the binary format of {@link BinaryDatasetFile} and maps the result back to
+ * show how long it takes.
+ * <br>
+ * Arguments: input text file and output binary file.
+ *
+ * @author dbrcina
+ */
+public class ConvertDataset {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Expected arguments: <input text file> <output binary file>");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+
+        ClassType.init();
+        ColumnarDataset dataset = new TextDatasetLoader().loadColumnar(input);
+
+        long start = System.nanoTime();
+        BinaryDatasetFile.write(dataset, output);
+        double writeSeconds = (System.nanoTime() - start) * 1e-9;
+        System.out.printf("Wrote %s (%.1f MB) in %.3f s.%n", output.getFileName(), Files.size(output) / 1e6,
+                writeSeconds);
+
+        start = System.nanoTime();
+        ColumnarDataset mapped = BinaryDatasetFile.map(output);
+        double mapSeconds = (System.nanoTime() - start) * 1e-9;
+        System.out.printf("Mapped %d samples in %.3f ms.%n", mapped.numberOfSamples(), mapSeconds * 1e3);
+    }
+
+}
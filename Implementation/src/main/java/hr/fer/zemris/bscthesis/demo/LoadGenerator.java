@@ -0,0 +1,116 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.ann.serving.Histogram;
+import hr.fer.zemris.bscthesis.ann.serving.InferenceServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates load for an {@link InferenceServer}, so its batching parameters can be tuned on one machine. A number of
+ * clients send requests with random points from [<code>-1.0</code>, <code>1.0</code>] back to back for a given time,
+ * so the number of clients is the number of concurrent requests. Statistics of the server are reset at the start and
+ * printed at the end, together with throughput and latency percentiles of the clients, which include HTTP overhead.
+ * <br>
+ * Arguments (all optional): server URL, number of clients, duration in seconds, points per request and input size.
+ *
+ * @author dbrcina
+ */
+public class LoadGenerator {
+
+    private static final String DEFAULT_URL = "http://localhost:8080";
+    private static final int DEFAULT_CLIENTS = 32;
+    private static final int DEFAULT_DURATION = 10;
+    private static final int DEFAULT_POINTS_PER_REQUEST = 1;
+    private static final int DEFAULT_INPUT_SIZE = 2;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 5) {
+            System.out.println("Expected arguments: [server URL] [clients] [duration s] [points per request] "
+                    + "[input size]");
+            return;
+        }
+        String url = args.length > 0 ? args[0] : DEFAULT_URL;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+        int duration = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DURATION;
+        int pointsPerRequest = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_POINTS_PER_REQUEST;
+        int inputSize = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_INPUT_SIZE;
+        if (clients < 1 || duration < 1 || pointsPerRequest < 1 || inputSize < 1) {
+            System.out.println("All arguments must be positive.");
+            return;
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI predict = URI.create(url + "/predict");
+        URI stats = URI.create(url + "/stats");
+        client.send(HttpRequest.newBuilder(URI.create(url + "/stats?reset")).build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        Histogram latencies = new Histogram();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(duration);
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            threads[c] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    HttpRequest request = HttpRequest.newBuilder(predict)
+                            .POST(HttpRequest.BodyPublishers.ofString(randomPoints(random, pointsPerRequest,
+                                    inputSize)))
+                            .build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                        continue;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                }
+            }, "load-generator-" + c);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) * 1e-9;
+
+        System.out.println(String.format("%d clients, %d points per request, %.1f s:", clients, pointsPerRequest,
+                seconds));
+        System.out.println(String.format("requests %d (%.0f/s), points %.0f/s, errors %d",
+                latencies.count(), latencies.count() / seconds, latencies.count() * pointsPerRequest / seconds,
+                errors.get()));
+        System.out.println(String.format("client latency us: p50 %d, p90 %d, p99 %d, max %d, mean %.1f",
+                latencies.percentile(0.5), latencies.percentile(0.9), latencies.percentile(0.99),
+                latencies.max(), latencies.mean()));
+        System.out.println("Server statistics:");
+        System.out.print(client.send(HttpRequest.newBuilder(stats).build(),
+                HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private static String randomPoints(Random random, int numberOfPoints, int inputSize) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < numberOfPoints; p++) {
+            for (int i = 0; i < inputSize; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(2 * random.nextDouble() - 1);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+}
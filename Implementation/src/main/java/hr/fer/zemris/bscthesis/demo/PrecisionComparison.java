@@ -0,0 +1,82 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
+import hr.fer.zemris.bscthesis.ann.afunction.Tanh;
+import hr.fer.zemris.bscthesis.ann.backend.ArrayBackend;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.backend.FloatArrayBackend;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.Dataset;
+import hr.fer.zemris.bscthesis.dataset.Sample;
+
+import java.util.Random;
+
+/**
+ * Trains the same network on the same generated dataset with a double precision backend and with a single precision
+ * backend, with and without a master copy of weights, and prints accuracy and throughput of each of them.
+ * <br>
+ * Arguments (all optional): number of samples, number of epochs and batch size.
+ *
+ * @author dbrcina
+ */
+public class PrecisionComparison {
+
+    private static final int[] LAYERS = {2, 32, 32, 3};
+    private static final double ETA = 0.01;
+    private static final int INFERENCE_REPETITIONS = 200;
+
+    public static void main(String[] args) {
+        int numberOfSamples = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+        int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        ClassType.init();
+        Dataset dataset = Spirals.generate(numberOfSamples, new Random(42));
+
+        compare("double", new ArrayBackend(), dataset, epochs, batchSize);
+        compare("float", new FloatArrayBackend(), dataset, epochs, batchSize);
+        compare("float + master copy", new FloatArrayBackend(true), dataset, epochs, batchSize);
+    }
+
+    private static void compare(String name, Backend backend, Dataset dataset, int epochs, int batchSize) {
+        System.out.println("---------- " + name + " ----------");
+        NeuralNetwork nn = new NeuralNetwork(LAYERS, new Tanh(), dataset);
+        nn.setLearningType(NeuralNetwork.LearningType.MINI_BATCH);
+        nn.setBatchSize(batchSize);
+        nn.setLoss(Loss.CROSS_ENTROPY);
+        nn.setBackend(backend);
+        nn.train(epochs, 0.0, ETA);
+
+        // Evaluate the whole dataset as one batch.
+        ModelSnapshot snapshot = nn.getSnapshot();
+        ModelSnapshot.Workspace workspace = snapshot.newWorkspace();
+        int inputSize = LAYERS[0];
+        int outputSize = LAYERS[LAYERS.length - 1];
+        int n = dataset.numberOfSamples();
+        double[] inputs = new double[n * inputSize];
+        int[] expected = new int[n];
+        int s = 0;
+        for (Sample sample : dataset) {
+            System.arraycopy(sample.getInputs(), 0, inputs, s * inputSize, inputSize);
+            expected[s++] = sample.getClassType().getIndex();
+        }
+        double[] outputs = snapshot.feedForwardBatch(inputs, n, workspace);
+        int correct = 0;
+        for (s = 0; s < n; s++) {
+            if (ClassType.argmaxIndexFor(outputs, s * outputSize, outputSize) == expected[s]) {
+                correct++;
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < INFERENCE_REPETITIONS; i++) {
+            snapshot.feedForwardBatch(inputs, n, workspace);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Accuracy = %.2f%%, inference = %.0f samples/s",
+                100.0 * correct / n, (double) n * INFERENCE_REPETITIONS / seconds));
+    }
+
+}
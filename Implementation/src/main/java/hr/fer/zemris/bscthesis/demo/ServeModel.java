@@ -0,0 +1,65 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.ann.ModelCheckpoint;
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.ann.serving.InferenceServer;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Serves a model saved through {@link ModelCheckpoint} on a local {@link InferenceServer} until the process is
+ * stopped. {@link LoadGenerator} can be used to measure it.
+ * <br>
+ * Arguments: model file and optionally port, max batch size, max wait in microseconds and number of handler threads.
+ * Nagle's algorithm is disabled for connections of the server, unless {@link InferenceServer#NODELAY_PROPERTY} system
+ * property is set explicitly.
+ *
+ * @author dbrcina
+ */
+public class ServeModel {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    private static final long DEFAULT_MAX_WAIT = 1000;
+    private static final int DEFAULT_HANDLER_THREADS = 64;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 5) {
+            System.out.println("Expected arguments: <model file> [port] [max batch size] [max wait us] "
+                    + "[handler threads]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_BATCH_SIZE;
+        long maxWait = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_WAIT;
+        int handlerThreads = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_HANDLER_THREADS;
+
+        ModelSnapshot snapshot;
+        try {
+            snapshot = ModelCheckpoint.load(Paths.get(args[0])).getSnapshot();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        ClassType.init();
+
+        // Read when the first HTTP server of the process is created.
+        if (System.getProperty(InferenceServer.NODELAY_PROPERTY) == null) {
+            System.setProperty(InferenceServer.NODELAY_PROPERTY, "true");
+        }
+        InferenceServer server = new InferenceServer(() -> snapshot,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxBatchSize, maxWait, handlerThreads);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println(String.format("Serving model with layers %s on http://%s:%d/predict, stats on /stats.",
+                Arrays.toString(snapshot.getLayers()), server.getAddress().getHostString(),
+                server.getAddress().getPort()));
+        System.out.println(String.format("Max batch size %d, max wait %d us, %d handler threads.",
+                maxBatchSize, maxWait, handlerThreads));
+    }
+
+}
@@ -0,0 +1,45 @@
+package hr.fer.zemris.bscthesis.demo;
+
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.Cartesian2DDataset;
+import hr.fer.zemris.bscthesis.dataset.Dataset;
+import hr.fer.zemris.bscthesis.dataset.Sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of a dataset used by benchmarks. It expects that {@link ClassType#init()} was called before.
+ *
+ * @author dbrcina
+ */
+final class Spirals {
+
+    private Spirals() {
+    }
+
+    /**
+     * Generates interleaved spirals, one per class, with inputs in <code>[-1, 1]</code>.
+     *
+     * @param numberOfSamples number of samples.
+     * @param rand            random number generator.
+     * @return new dataset.
+     */
+    static Dataset generate(int numberOfSamples, Random rand) {
+        List<ClassType> classTypes = new ArrayList<>(ClassType.allClassTypes());
+        List<Sample> samples = new ArrayList<>(numberOfSamples);
+        for (int i = 0; i < numberOfSamples; i++) {
+            ClassType classType = classTypes.get(i % classTypes.size());
+            double radius = rand.nextDouble();
+            double angle = 3 * radius + 2 * Math.PI * classType.getIndex() / classTypes.size()
+                    + rand.nextGaussian() * 0.15;
+            double[] inputs = {radius * Math.cos(angle), radius * Math.sin(angle)};
+            samples.add(new Sample(inputs, classType.getDesiredOutputs(), classType));
+        }
+        Dataset dataset = new Cartesian2DDataset();
+        dataset.setSamples(samples);
+        return dataset;
+    }
+
+}
@@ -0,0 +1,438 @@
+package hr.fer.zemris.bscthesis.gui;
+
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
+import hr.fer.zemris.bscthesis.ann.jfr.DecisionMapEvent;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Renders decision map of a {@link ModelSnapshot} into a {@link BufferedImage} outside of the Event Dispatch Thread.
+ * <br>
+ * Map is rendered progressively, from coarse to fine. At first, the network is evaluated only at the corners of
+ * square cells of {@value #INITIAL_CELL_SIZE} pixels. Cells whose corners belong to the same {@link ClassType} are
+ * finished and their pixels are interpolated from colors of the corners. Other cells are split into four smaller
+ * cells, quadtree style, until cells of one pixel are reached. After each level a frame is passed to the callback,
+ * so a usable image is available almost immediately. Since most of the plane is deep inside one class, only a small
+ * part of the pixels is ever evaluated.
+ * <br>
+ * Points of one level are evaluated in parallel, in batches of {@value #CHUNK_SIZE} points. Requests are rendered
+ * one at a time, and if more requests arrive while a frame is being rendered, only the latest one is rendered next.
+ * Refinement of a frame is abandoned if a newer request arrives.
+ * <br>
+ * During training a map is rendered for every published snapshot, so complete maps are reported on the standard
+ * output at most once per second. Timings of every frame are available through {@link Frame} and
+ * {@link DecisionMapEvent}.
+ *
+ * @author dbrcina
+ */
+public class DecisionMapRenderer {
+
+    private static final int INITIAL_CELL_SIZE = 16;
+    private static final int CHUNK_SIZE = 256;
+    private static final int CELLS_PER_TASK = 64;
+    private static final long REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final ForkJoinPool pool;
+    private final ExecutorService coordinator;
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    // Inputs of one chunk, they don't depend on the snapshot.
+    private final ThreadLocal<double[]> inputs = ThreadLocal.withInitial(() -> new double[2 * CHUNK_SIZE]);
+    // Used only by the coordinator thread.
+    private long lastReportTime = System.nanoTime() - REPORT_INTERVAL_NANOS;
+    private int completedSinceReport;
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism number of threads used for rendering.
+     */
+    public DecisionMapRenderer(int parallelism) {
+        pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setDaemon(true);
+            thread.setName("decision-map-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        coordinator = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "decision-map-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests rendering of a decision map for provided <code>snapshot</code>. Method returns immediately and
+     * <code>callback</code> is invoked from a rendering thread after each refinement level, with the finest frame
+     * being the last one. If a newer request arrives before this one is started, this one is skipped.
+     *
+     * @param snapshot snapshot.
+     * @param width    width of the map in pixels.
+     * @param height   height of the map in pixels.
+     * @param callback receives rendered frames.
+     * @throws NullPointerException if <code>null</code> value is provided.
+     */
+    public void render(ModelSnapshot snapshot, int width, int height, Consumer<Frame> callback) {
+        Request request = new Request(
+                Objects.requireNonNull(snapshot, "DecisionMapRenderer::render snapshot must not be null!"),
+                width, height,
+                Objects.requireNonNull(callback, "DecisionMapRenderer::render callback must not be null!"));
+        if (pending.getAndSet(request) == null) {
+            coordinator.execute(this::renderPending);
+        }
+    }
+
+    /**
+     * Stops rendering threads.
+     */
+    public void shutdown() {
+        coordinator.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private void renderPending() {
+        Request request = pending.getAndSet(null);
+        if (request == null || request.width <= 0 || request.height <= 0) return;
+        new Rendering(request).run();
+    }
+
+    /**
+     * Action over a range of indexes.
+     */
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a range in halves until it is small enough.
+     */
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeTask(RangeAction action, int from, int to, int grain) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                action.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new RangeTask(action, from, middle, grain),
+                    new RangeTask(action, middle, to, grain)
+            );
+        }
+
+    }
+
+    /**
+     * State of rendering of one request. Values of evaluated points are stored in a lattice which covers the whole
+     * image, rounded up to a multiple of {@value #INITIAL_CELL_SIZE}.
+     */
+    private class Rendering {
+
+        private final Request request;
+        private final int latticeWidth;
+        private final int[] pixels;
+        private final int[] classes;
+        private final int[] colors;
+        private final boolean[] scheduled;
+        // Each thread needs its own workspace for this snapshot.
+        private final ThreadLocal<ModelSnapshot.Workspace> workspaces;
+        private int[] points = new int[0];
+        private int[] cells;
+        private int cellsCount;
+        private int cellSize = INITIAL_CELL_SIZE;
+        private int evaluations;
+
+        Rendering(Request request) {
+            this.request = request;
+            int cellsX = (request.width + INITIAL_CELL_SIZE - 1) / INITIAL_CELL_SIZE;
+            int cellsY = (request.height + INITIAL_CELL_SIZE - 1) / INITIAL_CELL_SIZE;
+            latticeWidth = cellsX * INITIAL_CELL_SIZE + 1;
+            int latticeSize = latticeWidth * (cellsY * INITIAL_CELL_SIZE + 1);
+            pixels = new int[request.width * request.height];
+            classes = new int[latticeSize];
+            colors = new int[latticeSize];
+            scheduled = new boolean[latticeSize];
+            workspaces = ThreadLocal.withInitial(request.snapshot::newWorkspace);
+            cells = new int[cellsX * cellsY];
+            for (int y = 0; y < cellsY; y++) {
+                for (int x = 0; x < cellsX; x++) {
+                    cells[cellsCount++] = y * INITIAL_CELL_SIZE * latticeWidth + x * INITIAL_CELL_SIZE;
+                }
+            }
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            DecisionMapEvent event = DecisionMapEvent.start(request.snapshot.getLayers(), request.width,
+                    request.height, request.snapshot.getVersion());
+            int frames = 0;
+            while (true) {
+                evaluateCorners();
+                pool.invoke(new RangeTask(this::fillCells, 0, cellsCount, CELLS_PER_TASK));
+                boolean complete = !splitCells();
+                Frame frame = new Frame(createImage(), request.snapshot.getVersion(),
+                        System.nanoTime() - start, evaluations, complete);
+                if (complete) {
+                    report(frame);
+                }
+                request.callback.accept(frame);
+                frames++;
+                // Newer request is more important than a finer frame of this one.
+                if (complete || pending.get() != null) {
+                    DecisionMapEvent.finish(event, evaluations, frames, complete);
+                    return;
+                }
+            }
+        }
+
+        private void report(Frame frame) {
+            completedSinceReport++;
+            long now = System.nanoTime();
+            if (now - lastReportTime < REPORT_INTERVAL_NANOS) return;
+            System.out.println(String.format("Decision map %dx%d rendered in %.2f ms with %d evaluations"
+                            + " (%.1f%% of pixels, %.0f pixels/s), %d map(s) rendered since the last report.",
+                    request.width, request.height, frame.getFrameTimeNanos() / 1e6, evaluations,
+                    100.0 * evaluations / pixels.length, frame.getPixelsPerSecond(), completedSinceReport));
+            lastReportTime = now;
+            completedSinceReport = 0;
+        }
+
+        /**
+         * Evaluates all corners of current cells which are not evaluated yet.
+         */
+        private void evaluateCorners() {
+            int count = 0;
+            if (points.length < 4 * cellsCount) {
+                points = new int[4 * cellsCount];
+            }
+            int down = cellSize * latticeWidth;
+            for (int c = 0; c < cellsCount; c++) {
+                int cell = cells[c];
+                count = schedule(cell, count);
+                count = schedule(cell + cellSize, count);
+                count = schedule(cell + down, count);
+                count = schedule(cell + down + cellSize, count);
+            }
+            pool.invoke(new RangeTask(this::evaluatePoints, 0, count, CHUNK_SIZE));
+            evaluations += count;
+        }
+
+        private int schedule(int point, int count) {
+            if (!scheduled[point]) {
+                scheduled[point] = true;
+                points[count++] = point;
+            }
+            return count;
+        }
+
+        private void evaluatePoints(int from, int to) {
+            double[] chunkInputs = inputs.get();
+            int outputSize = request.outputSize;
+            for (int start = from; start < to; start += CHUNK_SIZE) {
+                int batchSize = Math.min(CHUNK_SIZE, to - start);
+                for (int i = 0; i < batchSize; i++) {
+                    int point = points[start + i];
+                    chunkInputs[2 * i] = 1.0 * (point % latticeWidth) / request.width;
+                    chunkInputs[2 * i + 1] = 1.0 * (point / latticeWidth) / request.height;
+                }
+                double[] outputs = request.snapshot.feedForwardBatch(chunkInputs, batchSize, workspaces.get());
+                for (int i = 0; i < batchSize; i++) {
+                    int point = points[start + i];
+                    classes[point] = ClassType.indexFor(outputs, i * outputSize, outputSize);
+                    colors[point] = ClassType.rgbFor(outputs, i * outputSize, outputSize);
+                }
+            }
+        }
+
+        /**
+         * Fills pixels of current cells by bilinear interpolation of colors of their corners.
+         */
+        private void fillCells(int from, int to) {
+            int down = cellSize * latticeWidth;
+            for (int c = from; c < to; c++) {
+                int cell = cells[c];
+                int x0 = cell % latticeWidth;
+                int y0 = cell / latticeWidth;
+                int c00 = colors[cell];
+                int c10 = colors[cell + cellSize];
+                int c01 = colors[cell + down];
+                int c11 = colors[cell + down + cellSize];
+                int xEnd = Math.min(x0 + cellSize, request.width);
+                int yEnd = Math.min(y0 + cellSize, request.height);
+                for (int y = y0; y < yEnd; y++) {
+                    double fy = 1.0 * (y - y0) / cellSize;
+                    for (int x = x0; x < xEnd; x++) {
+                        double fx = 1.0 * (x - x0) / cellSize;
+                        pixels[y * request.width + x] = interpolate(c00, c10, c01, c11, fx, fy);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Replaces current cells with four children of each cell whose corners don't agree on the class.
+         *
+         * @return <code>true</code> if there are cells left for the next level.
+         */
+        private boolean splitCells() {
+            if (cellSize == 1) return false;
+            int down = cellSize * latticeWidth;
+            int half = cellSize / 2;
+            int halfDown = half * latticeWidth;
+            int[] children = new int[4 * cellsCount];
+            int count = 0;
+            for (int c = 0; c < cellsCount; c++) {
+                int cell = cells[c];
+                int classIndex = classes[cell];
+                if (classIndex == classes[cell + cellSize]
+                        && classIndex == classes[cell + down]
+                        && classIndex == classes[cell + down + cellSize]) {
+                    continue;
+                }
+                // Children outside of the image are not needed.
+                int x = cell % latticeWidth;
+                int y = cell / latticeWidth;
+                boolean right = x + half < request.width;
+                boolean bottom = y + half < request.height;
+                children[count++] = cell;
+                if (right) children[count++] = cell + half;
+                if (bottom) children[count++] = cell + halfDown;
+                if (right && bottom) children[count++] = cell + halfDown + half;
+            }
+            cells = children;
+            cellsCount = count;
+            cellSize = half;
+            return count > 0;
+        }
+
+        private BufferedImage createImage() {
+            BufferedImage image = new BufferedImage(request.width, request.height, BufferedImage.TYPE_INT_RGB);
+            int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            System.arraycopy(pixels, 0, data, 0, pixels.length);
+            return image;
+        }
+
+    }
+
+    private static int interpolate(int c00, int c10, int c01, int c11, double fx, double fy) {
+        double w00 = (1 - fx) * (1 - fy);
+        double w10 = fx * (1 - fy);
+        double w01 = (1 - fx) * fy;
+        double w11 = fx * fy;
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            double channel = w00 * (c00 >> shift & 0xFF) + w10 * (c10 >> shift & 0xFF)
+                    + w01 * (c01 >> shift & 0xFF) + w11 * (c11 >> shift & 0xFF);
+            rgb |= (int) (channel + 0.5) << shift;
+        }
+        return rgb;
+    }
+
+    private static class Request {
+
+        private final ModelSnapshot snapshot;
+        private final int width;
+        private final int height;
+        private final Consumer<Frame> callback;
+        private final int outputSize;
+
+        private Request(ModelSnapshot snapshot, int width, int height, Consumer<Frame> callback) {
+            this.snapshot = snapshot;
+            this.width = width;
+            this.height = height;
+            this.callback = callback;
+            int[] layers = snapshot.getLayers();
+            outputSize = layers[layers.length - 1];
+        }
+
+    }
+
+    /**
+     * One rendered decision map together with its statistics.
+     */
+    public static final class Frame {
+
+        private final BufferedImage image;
+        private final long snapshotVersion;
+        private final long frameTimeNanos;
+        private final int evaluations;
+        private final boolean complete;
+
+        private Frame(BufferedImage image, long snapshotVersion, long frameTimeNanos, int evaluations,
+                      boolean complete) {
+            this.image = image;
+            this.snapshotVersion = snapshotVersion;
+            this.frameTimeNanos = frameTimeNanos;
+            this.evaluations = evaluations;
+            this.complete = complete;
+        }
+
+        /**
+         * @return rendered image.
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * @return version of the snapshot used for rendering.
+         */
+        public long getSnapshotVersion() {
+            return snapshotVersion;
+        }
+
+        /**
+         * @return time from the start of rendering until this frame was ready, in nanoseconds.
+         */
+        public long getFrameTimeNanos() {
+            return frameTimeNanos;
+        }
+
+        /**
+         * @return number of network evaluations used for this frame.
+         */
+        public int getEvaluations() {
+            return evaluations;
+        }
+
+        /**
+         * @return <code>true</code> if this is the finest frame of the map.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return rendered pixels per second.
+         */
+        public double getPixelsPerSecond() {
+            return 1e9 * image.getWidth() * image.getHeight() / Math.max(1, frameTimeNanos);
+        }
+
+    }
+
+}
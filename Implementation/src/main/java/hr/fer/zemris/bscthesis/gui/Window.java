@@ -1,7 +1,9 @@
 package hr.fer.zemris.bscthesis.gui;
 
+import hr.fer.zemris.bscthesis.ann.ModelSnapshot;
 import hr.fer.zemris.bscthesis.ann.NeuralNetwork;
 import hr.fer.zemris.bscthesis.ann.afunction.ActivationFunction;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
 import hr.fer.zemris.bscthesis.classes.ClassType;
 import hr.fer.zemris.bscthesis.dataset.Cartesian2DDataset;
 import hr.fer.zemris.bscthesis.dataset.Dataset;
@@ -15,6 +17,7 @@ import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
 import java.util.List;
 import java.util.*;
 
@@ -46,12 +49,16 @@ public class Window extends JFrame {
     private static final int CANVAS_WIDTH = 500;
     private static final int CANVAS_HEIGHT = 400;
     private JComponent canvas;
+    private final DecisionMapRenderer renderer =
+            new DecisionMapRenderer(Runtime.getRuntime().availableProcessors());
     /* ----------------------------------------------- */
 
     /* ---------------- OPTIONS PANEL ---------------- */
     private JPanel panelOptions;
     private JLabel lblBPType;
     private JComboBox<String> boxBPType;
+    private JLabel lblLoss;
+    private JComboBox<Loss> boxLoss;
     private JLabel lblHiddenLayers;
     private JTextField fldHiddenLayers;
     private JLabel lblEta;
@@ -68,6 +75,7 @@ public class Window extends JFrame {
     private JButton btnStop;
     private JButton btnDeleteLast;
     private JButton btnClearAll;
+    private JButton btnSaveModel;
     /* ----------------------------------------------- */
 
     /* --------------- HELPER VARIABLES -------------- */
@@ -85,6 +93,12 @@ public class Window extends JFrame {
     }
     /* ----------------------------------------------- */
 
+    @Override
+    public void dispose() {
+        renderer.shutdown();
+        super.dispose();
+    }
+
     /* ---------- INITIALIZE GUI COMPONENTS ---------- */
     private void initGUI() {
         initPanelOptions();
@@ -106,8 +120,12 @@ public class Window extends JFrame {
         JPanel panelComboBox = new JPanel();
         lblBPType = new JLabel("Backpropagation type:");
         boxBPType = new JComboBox<>(learningTypes.keySet().toArray(new String[0]));
+        lblLoss = new JLabel("Loss:");
+        boxLoss = new JComboBox<>(Loss.values());
         panelComboBox.add(lblBPType);
         panelComboBox.add(boxBPType);
+        panelComboBox.add(lblLoss);
+        panelComboBox.add(boxLoss);
         panelOptions.add(panelComboBox);
     }
 
@@ -188,10 +206,14 @@ public class Window extends JFrame {
         btnClearAll = new JButton("Clear all samples");
         btnClearAll.setFocusPainted(false);
         btnClearAll.setEnabled(false);
+        btnSaveModel = new JButton("Save model");
+        btnSaveModel.setFocusPainted(false);
+        btnSaveModel.setEnabled(false);
         panelButtons.add(btnTrain);
         panelButtons.add(btnStop);
         panelButtons.add(btnDeleteLast);
         panelButtons.add(btnClearAll);
+        panelButtons.add(btnSaveModel);
         panelOptions.add(panelButtons);
         addActionsToButtons();
     }
@@ -217,11 +239,27 @@ public class Window extends JFrame {
             parseAndSetAFunction();
             parseAndSetDatasetSamples();
             parseAndSetLearningType();
+            parseAndSetLoss();
             parseAndSetBatchSize();
             parseAndSetVisualisationParams();
             parseAndStartTraining();
         });
         btnStop.addActionListener(evt -> nn.stop());
+        btnSaveModel.addActionListener(evt -> saveModel());
+    }
+
+    private void saveModel() {
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Save model");
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            nn.saveCheckpoint(fc.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Model could not be saved: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     private void parseAndSetLayers() {
@@ -272,6 +310,10 @@ public class Window extends JFrame {
         nn.setLearningType(learningType);
     }
 
+    private void parseAndSetLoss() {
+        nn.setLoss((Loss) boxLoss.getSelectedItem());
+    }
+
     private void parseAndSetBatchSize() {
         if (learningType == NeuralNetwork.LearningType.MINI_BATCH) {
             do {
@@ -303,6 +345,7 @@ public class Window extends JFrame {
             training = true;
             nn.train(epochs, maxError, eta);
             btnStop.setEnabled(false);
+            btnSaveModel.setEnabled(true);
             canvas.repaint();
         }).start();
         btnStop.setEnabled(true);
@@ -359,6 +402,11 @@ public class Window extends JFrame {
     private static class CanvasComponent extends JComponent {
 
         private final Window window;
+        // Last finished decision map and the request which is being rendered, accessed only from the EDT.
+        private DecisionMapRenderer.Frame frame;
+        private long requestedVersion = -1;
+        private Dimension requestedSize;
+        private boolean rendering;
 
         public CanvasComponent(Window window, int width, int height) {
             this.window = window;
@@ -375,10 +423,12 @@ public class Window extends JFrame {
             g2d.setColor(Color.WHITE);
             g2d.fillRect(0, 0, grid.width, grid.height);
 
-            if (window.training) {
-                drawTraining(g2d, grid);
+            // The same weights are used for the whole frame, even if training publishes new ones meanwhile.
+            ModelSnapshot snapshot = window.training ? window.nn.getSnapshot() : null;
+            if (snapshot != null) {
+                drawTraining(g2d, grid, snapshot);
             }
-            drawControlPoints(g2d, grid, window.training);
+            drawControlPoints(g2d, grid, snapshot);
         }
 
         private Rectangle rectangularGrid() {
@@ -391,19 +441,31 @@ public class Window extends JFrame {
             return new Rectangle(x, y, width, height);
         }
 
-        private void drawTraining(Graphics2D g2d, Rectangle grid) {
-            for (int x = 0; x < grid.width; x++) {
-                for (int y = 0; y < grid.height; y++) {
-                    double[] inputs = {1.0 * x / grid.width, 1.0 * y / grid.height};
-                    double[] outputs = window.nn.feedForward(inputs);
-                    ClassType classType = ClassType.determineFor(outputs);
-                    g2d.setColor(classType.getColor());
-                    g2d.fillRect(x, y, 2, 2);
-                }
+        private void drawTraining(Graphics2D g2d, Rectangle grid, ModelSnapshot snapshot) {
+            // Map is rendered in the background and the canvas is repainted after each refinement level. Training
+            // publishes snapshots faster than maps are refined, so a newer snapshot is rendered only after the last
+            // map is complete, otherwise maps would never get past the coarsest level.
+            Dimension size = grid.getSize();
+            boolean resized = !size.equals(requestedSize);
+            if (resized || snapshot.getVersion() != requestedVersion && !rendering) {
+                requestedVersion = snapshot.getVersion();
+                requestedSize = size;
+                rendering = true;
+                window.renderer.render(snapshot, size.width, size.height, rendered ->
+                        SwingUtilities.invokeLater(() -> {
+                            frame = rendered;
+                            if (rendered.isComplete()) {
+                                rendering = false;
+                            }
+                            repaint();
+                        }));
+            }
+            if (frame != null) {
+                g2d.drawImage(frame.getImage(), 0, 0, null);
             }
         }
 
-        private void drawControlPoints(Graphics2D g2d, Rectangle grid, boolean training) {
+        private void drawControlPoints(Graphics2D g2d, Rectangle grid, ModelSnapshot snapshot) {
             g2d.setStroke(new BasicStroke(2));
             for (Sample sample : window.samples) {
                 double[] inputs = sample.getInputs();
@@ -414,13 +476,12 @@ public class Window extends JFrame {
                 ClassType classType = sample.getClassType();
                 Shape shape = classType.createShape(new Rectangle(
                         x - width / 2, y - height / 2, width, height));
-                if (training) {
+                if (snapshot != null) {
                     g2d.setColor(Color.WHITE);
                     g2d.draw(shape);
-                    double[] outputs = window.nn.feedForward(
+                    double[] outputs = snapshot.feedForward(
                             new double[]{window.transformX(inputs[0]), window.transformY(inputs[1])});
-                    ClassType actualClass = ClassType.determineFor(outputs);
-                    if (!classType.equals(actualClass)) {
+                    if (classType.getIndex() != ClassType.indexFor(outputs, 0, outputs.length)) {
                         g2d.setColor(Color.BLACK);
                     }
                 } else {
@@ -0,0 +1,180 @@
+package hr.fer.zemris.bscthesis.ann;
+
+import hr.fer.zemris.bscthesis.ann.NeuralNetwork.LearningType;
+import hr.fer.zemris.bscthesis.ann.afunction.Sigmoid;
+import hr.fer.zemris.bscthesis.ann.backend.ArrayBackend;
+import hr.fer.zemris.bscthesis.ann.backend.Backend;
+import hr.fer.zemris.bscthesis.ann.backend.RealMatrixBackend;
+import hr.fer.zemris.bscthesis.ann.loss.Loss;
+import hr.fer.zemris.bscthesis.classes.ClassType;
+import hr.fer.zemris.bscthesis.dataset.ColumnarDataset;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that training with the same seed gives the same weights. With the same number of workers, weights must be
+ * bit-identical from run to run, while a different number of workers or a different backend only changes the order
+ * of summation, so weights have to match within a small tolerance. Batched methods of {@link ArrayBackend} keep the
+ * summation order of samples, so they must give exactly the same results as training sample by sample.
+ *
+ * @author dbrcina
+ */
+public class TrainingDeterminismTest {
+
+    private static final int[] LAYERS = {2, 7, 5, 3};
+    private static final int NUMBER_OF_SAMPLES = 203;
+    private static final int BATCH_SIZE = 10;
+    private static final int EPOCHS = 20;
+    private static final double ETA = 0.1;
+    private static final long SEED = 42;
+    private static final double TOLERANCE = 1e-12;
+    // Odd sizes, so rows which are not a multiple of four are covered as well.
+    private static final int[] BATCH_SIZES = {1, 3, 5, 17};
+
+    private static ColumnarDataset dataset;
+
+    @BeforeClass
+    public static void createDataset() {
+        ClassType.init();
+        Random random = new Random(1);
+        double[][] columns = new double[2][NUMBER_OF_SAMPLES];
+        int[] labels = new int[NUMBER_OF_SAMPLES];
+        for (int s = 0; s < NUMBER_OF_SAMPLES; s++) {
+            double x = random.nextDouble() * 2 - 1;
+            double y = random.nextDouble() * 2 - 1;
+            columns[0][s] = x;
+            columns[1][s] = y;
+            labels[s] = x < 0 ? 0 : y < 0 ? 1 : 2;
+        }
+        dataset = new ColumnarDataset(columns, labels);
+    }
+
+    @Test
+    public void sameWorkersGiveIdenticalWeights() {
+        for (LearningType learningType : batchedLearningTypes()) {
+            double[] first = train(new ArrayBackend(), 4, learningType);
+            double[] second = train(new ArrayBackend(), 4, learningType);
+            assertArrayEquals(learningType.toString(), first, second, 0.0);
+        }
+    }
+
+    @Test
+    public void numberOfWorkersDoesNotChangeWeights() {
+        for (LearningType learningType : batchedLearningTypes()) {
+            double[] sequential = train(new ArrayBackend(), 1, learningType);
+            double[] parallel = train(new ArrayBackend(), 4, learningType);
+            assertArrayEquals(learningType.toString(), sequential, parallel, TOLERANCE);
+        }
+    }
+
+    @Test
+    public void backendsGiveSameWeights() {
+        for (LearningType learningType : batchedLearningTypes()) {
+            double[] array = train(new ArrayBackend(), 1, learningType);
+            double[] realMatrix = train(new RealMatrixBackend(), 1, learningType);
+            assertArrayEquals(learningType.toString(), array, realMatrix, TOLERANCE);
+        }
+    }
+
+    @Test
+    public void batchedArrayBackendMatchesSampleBySample() {
+        Sigmoid aFunction = new Sigmoid();
+        int inputSize = LAYERS[0];
+        int outputSize = LAYERS[LAYERS.length - 1];
+        for (Loss loss : Loss.values()) {
+            ArrayBackend batched = new ArrayBackend();
+            ArrayBackend single = new ArrayBackend();
+            for (ArrayBackend backend : new ArrayBackend[]{batched, single}) {
+                backend.setup(LAYERS);
+                backend.setLoss(loss);
+                backend.randomize(new Random(SEED));
+            }
+            Random random = new Random(2);
+            for (int batchSize : BATCH_SIZES) {
+                String message = loss + ", batch size " + batchSize;
+                double[] inputs = new double[batchSize * inputSize];
+                double[] expectedOutputs = new double[batchSize * outputSize];
+                for (int s = 0; s < batchSize; s++) {
+                    for (int i = 0; i < inputSize; i++) {
+                        inputs[s * inputSize + i] = random.nextDouble() * 2 - 1;
+                    }
+                    expectedOutputs[s * outputSize + random.nextInt(outputSize)] = 1.0;
+                }
+
+                batched.resetUpdates();
+                double[] batchOutputs = batched.feedForwardBatch(inputs, batchSize, aFunction).clone();
+                double batchError = batched.errorBatch(expectedOutputs, batchSize);
+                batched.calculateDeltasBatch(expectedOutputs, batchSize);
+                batched.updateWeightsBiasesBatch(ETA, batchSize);
+                batched.applyUpdates();
+
+                single.resetUpdates();
+                double error = 0.0;
+                for (int s = 0; s < batchSize; s++) {
+                    double[] sampleExpected = Arrays.copyOfRange(expectedOutputs, s * outputSize,
+                            (s + 1) * outputSize);
+                    double[] outputs = single.feedForward(
+                            Arrays.copyOfRange(inputs, s * inputSize, (s + 1) * inputSize), aFunction);
+                    assertArrayEquals(message + ", sample " + s, outputs,
+                            Arrays.copyOfRange(batchOutputs, s * outputSize, (s + 1) * outputSize), 0.0);
+                    error += single.error(sampleExpected);
+                    single.calculateDeltas(sampleExpected);
+                    single.updateWeightsBiases(ETA);
+                }
+                single.applyUpdates();
+
+                assertEquals(message, error, batchError, 0.0);
+                assertArrayEquals(message, parameters(single::getParameters), parameters(batched::getParameters),
+                        0.0);
+            }
+        }
+    }
+
+    private static LearningType[] batchedLearningTypes() {
+        return new LearningType[]{LearningType.MINI_BATCH, LearningType.BATCH};
+    }
+
+    private static double[] train(Backend backend, int parallelism, LearningType learningType) {
+        NeuralNetwork network = new NeuralNetwork();
+        network.setBackend(backend);
+        network.setLayers(LAYERS);
+        network.setAFunction(new Sigmoid());
+        network.setDataset(dataset);
+        network.setLearningType(learningType);
+        network.setBatchSize(BATCH_SIZE);
+        network.setParallelism(parallelism);
+        network.setSeed(SEED);
+        network.train(EPOCHS, 0.0, ETA);
+        return parameters(network.getSnapshot()::getParameters);
+    }
+
+    // Weights and biases of all layers in one array.
+    private static double[] parameters(BiConsumer<double[][], double[][]> source) {
+        double[][] weightsPerLayer = new double[LAYERS.length - 1][];
+        double[][] biasesPerLayer = new double[LAYERS.length - 1][];
+        int size = 0;
+        for (int k = 0; k < LAYERS.length - 1; k++) {
+            weightsPerLayer[k] = new double[LAYERS[k + 1] * LAYERS[k]];
+            biasesPerLayer[k] = new double[LAYERS[k + 1]];
+            size += weightsPerLayer[k].length + biasesPerLayer[k].length;
+        }
+        source.accept(weightsPerLayer, biasesPerLayer);
+        double[] parameters = new double[size];
+        int position = 0;
+        for (int k = 0; k < LAYERS.length - 1; k++) {
+            System.arraycopy(weightsPerLayer[k], 0, parameters, position, weightsPerLayer[k].length);
+            position += weightsPerLayer[k].length;
+            System.arraycopy(biasesPerLayer[k], 0, parameters, position, biasesPerLayer[k].length);
+            position += biasesPerLayer[k].length;
+        }
+        return parameters;
+    }
+
+}
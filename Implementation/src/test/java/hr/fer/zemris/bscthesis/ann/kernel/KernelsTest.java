@@ -0,0 +1,216 @@
+package hr.fer.zemris.bscthesis.ann.kernel;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link ScalarKernels} with <code>VectorKernels</code> on shapes which are not multiples of four or of the
+ * vector length, so the remainder loops are covered as well. Kernels which only add products element by element must
+ * give exactly the same results, the others have to match within a small relative tolerance.
+ * <br>
+ * Vector kernels are compiled only with the <b>vector</b> profile, so these tests are skipped without it.
+ *
+ * @author dbrcina
+ */
+public class KernelsTest {
+
+    private static final String VECTOR_KERNELS = "hr.fer.zemris.bscthesis.ann.kernel.VectorKernels";
+    private static final int[] ROWS = {1, 2, 3, 5, 7, 9};
+    private static final int[] COLUMNS = {1, 2, 3, 5, 7, 9, 15, 17, 31, 33};
+    private static final double TOLERANCE = 1e-12;
+
+    private static Kernels scalar;
+    private static Kernels vector;
+
+    @BeforeClass
+    public static void loadKernels() {
+        scalar = new ScalarKernels();
+        try {
+            vector = (Kernels) Class.forName(VECTOR_KERNELS).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            vector = null;
+        }
+    }
+
+    @Test
+    public void multiplyTransposedMatches() {
+        Random random = assumeVector(1);
+        for (int n : ROWS) {
+            for (int l : COLUMNS) {
+                for (int m : COLUMNS) {
+                    double[] a = randomArray(random, n * l);
+                    double[] b = randomArray(random, m * l);
+                    double[] expected = new double[n * m];
+                    double[] actual = new double[n * m];
+                    scalar.multiplyTransposed(a, b, expected, n, l, m);
+                    vector.multiplyTransposed(a, b, actual, n, l, m);
+                    assertClose(shape(n, l, m), expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void multiplyIsExact() {
+        Random random = assumeVector(2);
+        for (int n : ROWS) {
+            for (int l : COLUMNS) {
+                for (int m : COLUMNS) {
+                    double[] a = randomArray(random, n * l);
+                    double[] b = randomArray(random, l * m);
+                    double[] expected = randomArray(random, n * m);
+                    double[] actual = expected.clone();
+                    scalar.multiply(a, b, expected, n, l, m);
+                    vector.multiply(a, b, actual, n, l, m);
+                    assertArrayEquals(shape(n, l, m), expected, actual, 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void multiplyTransposedAddIsExact() {
+        Random random = assumeVector(3);
+        for (int n : ROWS) {
+            for (int m : COLUMNS) {
+                for (int l : COLUMNS) {
+                    double[] a = randomArray(random, n * m);
+                    double[] b = randomArray(random, n * l);
+                    double[] expectedC = randomArray(random, m * l);
+                    double[] expectedD = randomArray(random, m);
+                    double[] actualC = expectedC.clone();
+                    double[] actualD = expectedD.clone();
+                    scalar.multiplyTransposedAdd(a, b, expectedC, expectedD, -0.25, n, m, l);
+                    vector.multiplyTransposedAdd(a, b, actualC, actualD, -0.25, n, m, l);
+                    assertArrayEquals(shape(n, m, l), expectedC, actualC, 0.0);
+                    assertArrayEquals(shape(n, m, l), expectedD, actualD, 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void addRowVectorIsExact() {
+        Random random = assumeVector(4);
+        for (int n : ROWS) {
+            for (int m : COLUMNS) {
+                double[] v = randomArray(random, m);
+                double[] expected = randomArray(random, n * m);
+                double[] actual = expected.clone();
+                scalar.addRowVector(expected, v, n, m);
+                vector.addRowVector(actual, v, n, m);
+                assertArrayEquals(shape(n, m), expected, actual, 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void addIsExact() {
+        Random random = assumeVector(5);
+        for (int length : COLUMNS) {
+            double[] source = randomArray(random, length);
+            double[] expected = randomArray(random, length);
+            double[] actual = expected.clone();
+            scalar.add(expected, source);
+            vector.add(actual, source);
+            assertArrayEquals("length " + length, expected, actual, 0.0);
+        }
+    }
+
+    @Test
+    public void reluIsExact() {
+        Random random = assumeVector(6);
+        compareElementwise(random, Function.RELU, true);
+    }
+
+    @Test
+    public void sigmoidMatches() {
+        Random random = assumeVector(7);
+        compareElementwise(random, Function.SIGMOID, false);
+    }
+
+    @Test
+    public void tanhMatches() {
+        Random random = assumeVector(8);
+        compareElementwise(random, Function.TANH, false);
+    }
+
+    private enum Function {
+        RELU, SIGMOID, TANH
+    }
+
+    private static void compareElementwise(Random random, Function function, boolean exact) {
+        for (int offset : new int[]{0, 1, 3}) {
+            for (int length : COLUMNS) {
+                double[] in = randomArray(random, offset + length + 2);
+                double[] expected = new double[in.length];
+                double[] actual = new double[in.length];
+                apply(scalar, function, in, expected, offset, length);
+                apply(vector, function, in, actual, offset, length);
+                String message = function + " offset " + offset + ", length " + length;
+                if (exact) {
+                    assertArrayEquals(message, expected, actual, 0.0);
+                } else {
+                    assertClose(message, expected, actual);
+                }
+                // Elements outside of the range must not be touched.
+                for (int i = 0; i < offset; i++) {
+                    assertEquals(message, 0.0, actual[i], 0.0);
+                }
+                for (int i = offset + length; i < actual.length; i++) {
+                    assertEquals(message, 0.0, actual[i], 0.0);
+                }
+            }
+        }
+    }
+
+    private static void apply(Kernels kernels, Function function, double[] in, double[] out, int offset,
+                              int length) {
+        switch (function) {
+            case RELU:
+                kernels.relu(in, out, offset, length);
+                break;
+            case SIGMOID:
+                kernels.sigmoid(in, out, offset, length);
+                break;
+            default:
+                kernels.tanh(in, out, offset, length);
+        }
+    }
+
+    private static Random assumeVector(long seed) {
+        Assume.assumeTrue("Vector kernels are not available.", vector != null);
+        return new Random(seed);
+    }
+
+    private static double[] randomArray(Random random, int length) {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = 4 * random.nextGaussian();
+        }
+        return array;
+    }
+
+    private static void assertClose(String message, double[] expected, double[] actual) {
+        assertEquals(message, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            double scale = Math.max(1.0, Math.abs(expected[i]));
+            assertEquals(message + ", element " + i, expected[i], actual[i], TOLERANCE * scale);
+        }
+    }
+
+    private static String shape(int... dimensions) {
+        StringBuilder sb = new StringBuilder("shape");
+        for (int dimension : dimensions) {
+            sb.append(' ').append(dimension);
+        }
+        return sb.toString();
+    }
+
+}
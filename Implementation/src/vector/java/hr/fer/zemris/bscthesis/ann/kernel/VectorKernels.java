@@ -0,0 +1,252 @@
+package hr.fer.zemris.bscthesis.ann.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of {@link Kernels} based on the Vector API <i>(jdk.incubator.vector)</i>. It uses the widest
+ * vectors supported by the CPU and falls back to loops of {@link ScalarKernels} for the remaining elements.
+ * <br>
+ * It is compiled only with the <b>vector</b> Maven profile and needs <code>--add-modules jdk.incubator.vector</code>
+ * at runtime. Sums of products are split into lanes, so {@link #multiplyTransposed(double[], double[], double[], int,
+ * int, int)} and activation functions can differ from scalar kernels in the last few bits. All other kernels give the
+ * same results as scalar kernels.
+ *
+ * @author dbrcina
+ */
+public class VectorKernels extends ScalarKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Constructor.
+     *
+     * @throws UnsupportedOperationException if the CPU has no vectors of at least two doubles.
+     */
+    public VectorKernels() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("VectorKernels::VectorKernels() CPU has no vectors of doubles!");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.vectorBitSize() + " bit)";
+    }
+
+    // c(n x m) = a(n x l) * b(m x l)^T
+    @Override
+    public void multiplyTransposed(double[] a, double[] b, double[] c, int n, int l, int m) {
+        int upper = SPECIES.loopBound(l);
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * l, a1 = a0 + l, a2 = a1 + l, a3 = a2 + l;
+            int c0 = s * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m;
+            for (int i = 0, bOffset = 0; i < m; i++, bOffset += l) {
+                DoubleVector sum0 = DoubleVector.zero(SPECIES), sum1 = sum0, sum2 = sum0, sum3 = sum0;
+                int j = 0;
+                for (; j < upper; j += SPECIES.length()) {
+                    DoubleVector weight = DoubleVector.fromArray(SPECIES, b, bOffset + j);
+                    sum0 = weight.fma(DoubleVector.fromArray(SPECIES, a, a0 + j), sum0);
+                    sum1 = weight.fma(DoubleVector.fromArray(SPECIES, a, a1 + j), sum1);
+                    sum2 = weight.fma(DoubleVector.fromArray(SPECIES, a, a2 + j), sum2);
+                    sum3 = weight.fma(DoubleVector.fromArray(SPECIES, a, a3 + j), sum3);
+                }
+                double value0 = sum0.reduceLanes(VectorOperators.ADD);
+                double value1 = sum1.reduceLanes(VectorOperators.ADD);
+                double value2 = sum2.reduceLanes(VectorOperators.ADD);
+                double value3 = sum3.reduceLanes(VectorOperators.ADD);
+                for (; j < l; j++) {
+                    double weight = b[bOffset + j];
+                    value0 += weight * a[a0 + j];
+                    value1 += weight * a[a1 + j];
+                    value2 += weight * a[a2 + j];
+                    value3 += weight * a[a3 + j];
+                }
+                c[c0 + i] = value0;
+                c[c1 + i] = value1;
+                c[c2 + i] = value2;
+                c[c3 + i] = value3;
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * l;
+            int cOffset = s * m;
+            for (int i = 0, bOffset = 0; i < m; i++, bOffset += l) {
+                DoubleVector sum = DoubleVector.zero(SPECIES);
+                int j = 0;
+                for (; j < upper; j += SPECIES.length()) {
+                    sum = DoubleVector.fromArray(SPECIES, b, bOffset + j)
+                            .fma(DoubleVector.fromArray(SPECIES, a, aOffset + j), sum);
+                }
+                double value = sum.reduceLanes(VectorOperators.ADD);
+                for (; j < l; j++) {
+                    value += b[bOffset + j] * a[aOffset + j];
+                }
+                c[cOffset + i] = value;
+            }
+        }
+    }
+
+    // c(n x m) = a(n x l) * b(l x m), products are added in the same order as in scalar kernels
+    @Override
+    public void multiply(double[] a, double[] b, double[] c, int n, int l, int m) {
+        int upper = SPECIES.loopBound(m);
+        Arrays.fill(c, 0, n * m, 0.0);
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * l, a1 = a0 + l, a2 = a1 + l, a3 = a2 + l;
+            int c0 = s * m, c1 = c0 + m, c2 = c1 + m, c3 = c2 + m;
+            for (int j = 0, bOffset = 0; j < l; j++, bOffset += m) {
+                double value0 = a[a0 + j], value1 = a[a1 + j], value2 = a[a2 + j], value3 = a[a3 + j];
+                int i = 0;
+                for (; i < upper; i += SPECIES.length()) {
+                    DoubleVector weight = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+                    addProduct(c, c0 + i, weight, value0);
+                    addProduct(c, c1 + i, weight, value1);
+                    addProduct(c, c2 + i, weight, value2);
+                    addProduct(c, c3 + i, weight, value3);
+                }
+                for (; i < m; i++) {
+                    double weight = b[bOffset + i];
+                    c[c0 + i] += weight * value0;
+                    c[c1 + i] += weight * value1;
+                    c[c2 + i] += weight * value2;
+                    c[c3 + i] += weight * value3;
+                }
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * l;
+            int cOffset = s * m;
+            for (int j = 0, bOffset = 0; j < l; j++, bOffset += m) {
+                double value = a[aOffset + j];
+                int i = 0;
+                for (; i < upper; i += SPECIES.length()) {
+                    addProduct(c, cOffset + i, DoubleVector.fromArray(SPECIES, b, bOffset + i), value);
+                }
+                for (; i < m; i++) {
+                    c[cOffset + i] += b[bOffset + i] * value;
+                }
+            }
+        }
+    }
+
+    // c[offset..] += vector * value, without fused multiply-add so rounding is the same as in scalar kernels
+    private static void addProduct(double[] c, int offset, DoubleVector vector, double value) {
+        DoubleVector.fromArray(SPECIES, c, offset).add(vector.mul(value)).intoArray(c, offset);
+    }
+
+    // c(m x l) += alpha * a(n x m)^T * b(n x l) and d(m) += alpha * column sums of a
+    @Override
+    public void multiplyTransposedAdd(double[] a, double[] b, double[] c, double[] d,
+                                      double alpha, int n, int m, int l) {
+        int upper = SPECIES.loopBound(l);
+        int s = 0;
+        for (; s + 3 < n; s += 4) {
+            int a0 = s * m, a1 = a0 + m, a2 = a1 + m, a3 = a2 + m;
+            int b0 = s * l, b1 = b0 + l, b2 = b1 + l, b3 = b2 + l;
+            for (int i = 0, cOffset = 0; i < m; i++, cOffset += l) {
+                double value0 = alpha * a[a0 + i];
+                double value1 = alpha * a[a1 + i];
+                double value2 = alpha * a[a2 + i];
+                double value3 = alpha * a[a3 + i];
+                int j = 0;
+                for (; j < upper; j += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, c, cOffset + j)
+                            .add(DoubleVector.fromArray(SPECIES, b, b0 + j).mul(value0))
+                            .add(DoubleVector.fromArray(SPECIES, b, b1 + j).mul(value1))
+                            .add(DoubleVector.fromArray(SPECIES, b, b2 + j).mul(value2))
+                            .add(DoubleVector.fromArray(SPECIES, b, b3 + j).mul(value3))
+                            .intoArray(c, cOffset + j);
+                }
+                for (; j < l; j++) {
+                    c[cOffset + j] = c[cOffset + j] + value0 * b[b0 + j] + value1 * b[b1 + j]
+                            + value2 * b[b2 + j] + value3 * b[b3 + j];
+                }
+                d[i] = d[i] + value0 + value1 + value2 + value3;
+            }
+        }
+        for (; s < n; s++) {
+            int aOffset = s * m;
+            int bOffset = s * l;
+            for (int i = 0, cOffset = 0; i < m; i++, cOffset += l) {
+                double value = alpha * a[aOffset + i];
+                int j = 0;
+                for (; j < upper; j += SPECIES.length()) {
+                    addProduct(c, cOffset + j, DoubleVector.fromArray(SPECIES, b, bOffset + j), value);
+                }
+                for (; j < l; j++) {
+                    c[cOffset + j] += value * b[bOffset + j];
+                }
+                d[i] += value;
+            }
+        }
+    }
+
+    @Override
+    public void addRowVector(double[] a, double[] v, int n, int m) {
+        int upper = SPECIES.loopBound(m);
+        for (int s = 0, offset = 0; s < n; s++, offset += m) {
+            int i = 0;
+            for (; i < upper; i += SPECIES.length()) {
+                DoubleVector.fromArray(SPECIES, a, offset + i)
+                        .add(DoubleVector.fromArray(SPECIES, v, i))
+                        .intoArray(a, offset + i);
+            }
+            for (; i < m; i++) {
+                a[offset + i] += v[i];
+            }
+        }
+    }
+
+    @Override
+    public void add(double[] destination, double[] source) {
+        int upper = SPECIES.loopBound(destination.length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, destination, i)
+                    .add(DoubleVector.fromArray(SPECIES, source, i))
+                    .intoArray(destination, i);
+        }
+        for (; i < destination.length; i++) {
+            destination[i] += source[i];
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] in, double[] out, int offset, int length) {
+        int upper = offset + SPECIES.loopBound(length);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        int i = offset;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector exp = DoubleVector.fromArray(SPECIES, in, i).neg().lanewise(VectorOperators.EXP);
+            one.div(exp.add(1.0)).intoArray(out, i);
+        }
+        super.sigmoid(in, out, i, offset + length - i);
+    }
+
+    @Override
+    public void tanh(double[] in, double[] out, int offset, int length) {
+        int upper = offset + SPECIES.loopBound(length);
+        int i = offset;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, in, i).lanewise(VectorOperators.TANH).intoArray(out, i);
+        }
+        super.tanh(in, out, i, offset + length - i);
+    }
+
+    @Override
+    public void relu(double[] in, double[] out, int offset, int length) {
+        int upper = offset + SPECIES.loopBound(length);
+        int i = offset;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, in, i).max(0.0).intoArray(out, i);
+        }
+        super.relu(in, out, i, offset + length - i);
+    }
+
+}